@@ -1,23 +1,46 @@
 package ru.minimalprice.minimalprice;
 
+import java.io.File;
 import java.util.Objects;
 
+import org.bukkit.plugin.ServicePriority;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import ru.minimalprice.minimalprice.api.MinimalPriceAPI;
+import ru.minimalprice.minimalprice.api.SnapshotPriceAPI;
 import ru.minimalprice.minimalprice.configuration.ConfigManager;
 import ru.minimalprice.minimalprice.database.DatabaseManager;
+import ru.minimalprice.minimalprice.database.StorageExecutor;
+import ru.minimalprice.minimalprice.database.dialect.SqlDialect;
 import ru.minimalprice.minimalprice.features.discord.DiscordManager;
+import ru.minimalprice.minimalprice.features.history.HistoryManager;
+import ru.minimalprice.minimalprice.features.history.storage.HistoryRepository;
 import ru.minimalprice.minimalprice.features.price.PriceCommand;
 import ru.minimalprice.minimalprice.features.price.PriceManager;
 import ru.minimalprice.minimalprice.features.price.PriceTabCompleter;
-import ru.minimalprice.minimalprice.features.price.storage.PriceRepository;
+import ru.minimalprice.minimalprice.features.price.storage.ChangeLog;
+import ru.minimalprice.minimalprice.features.price.storage.SqlPriceStorage;
+import ru.minimalprice.minimalprice.features.price.transfer.CatalogTransfer;
+import ru.minimalprice.minimalprice.features.price.view.CategoryPages;
+import ru.minimalprice.minimalprice.features.price.view.PriceMenu;
+import ru.minimalprice.minimalprice.features.search.SearchManager;
+import ru.minimalprice.minimalprice.features.watch.WatchManager;
+import ru.minimalprice.minimalprice.features.watch.storage.WatchRepository;
 
 public final class MinimalPrice extends JavaPlugin {
 
     private DatabaseManager databaseManager;
+    private StorageExecutor storageExecutor;
     private ConfigManager configManager;
     private PriceManager priceManager;
+    private HistoryManager historyManager;
+    private CatalogTransfer catalogTransfer;
+    private SearchManager searchManager;
+    private CategoryPages categoryPages;
+    private PriceMenu priceMenu;
+    private WatchManager watchManager;
     private DiscordManager discordManager;
+    private SnapshotPriceAPI api;
 
     @Override
     public void onEnable() {
@@ -31,23 +54,76 @@ public final class MinimalPrice extends JavaPlugin {
         this.configManager = new ConfigManager(this);
 
         // 2. Database
-        this.databaseManager = new DatabaseManager(getDataFolder().getAbsolutePath() + "/database_v2.db");
+        String databaseType = getConfig().getString("database.type", "sqlite");
+        SqlDialect dialect = SqlDialect.byName(databaseType);
+        if (dialect == null) {
+            getLogger().severe("Unknown database.type '" + databaseType + "' (use sqlite, mysql, mariadb or h2). Disabling.");
+            getServer().getPluginManager().disablePlugin(this);
+            return;
+        }
+        this.databaseManager = new DatabaseManager(dialect, getDataFolder(),
+                getConfig().getConfigurationSection("database." + dialect.getName()), getConfig().getInt("price_scale", 2), getLogger());
         this.databaseManager.initDatabase();
+        // Discord sync state used to live in its own file
+        this.databaseManager.importLegacyTable(new File(getDataFolder(), "discord.db"), "discord_sync");
+        // Blocking database work of commands and features; kept off the common pool
+        this.storageExecutor = new StorageExecutor(getConfig().getInt("storage.max_pending_reads", 256),
+                getConfig().getInt("storage.max_pending_writes", 1024), getLogger());
 
         // 3. Features
-        this.priceManager = new PriceManager(new PriceRepository(databaseManager)); // Updated PriceManager initialization
+        // Local database files have a single server, so no change log is written or polled for them
+        long syncInterval = dialect.isShared() ? getConfig().getLong("sync.poll_interval_ms", 1000L) : 0L;
+        ChangeLog changeLog = new ChangeLog(databaseManager, syncInterval > 0);
+        this.priceManager = new PriceManager(this, new SqlPriceStorage(databaseManager, changeLog), storageExecutor); // Updated PriceManager initialization
+        this.historyManager = new HistoryManager(this, priceManager, new HistoryRepository(databaseManager), storageExecutor);
+        this.catalogTransfer = new CatalogTransfer(this, priceManager, storageExecutor);
+        this.searchManager = new SearchManager(this, priceManager);
+        this.categoryPages = new CategoryPages(this, configManager);
+        this.priceMenu = new PriceMenu(this, priceManager, configManager, categoryPages);
+        this.watchManager = new WatchManager(this, priceManager, configManager, new WatchRepository(databaseManager), storageExecutor);
         // Events... // Placeholder for future events
 
+        // Read API for other plugins, backed by the cached catalog
+        this.api = new SnapshotPriceAPI(priceManager);
+        getServer().getServicesManager().register(MinimalPriceAPI.class, api, this, ServicePriority.Normal);
+
+        // Periodic cache/database comparison; mutations update the cache in place, so this only catches external edits
+        long consistencyInterval = getConfig().getLong("cache.consistency_check_interval", 300L);
+        if (consistencyInterval > 0) {
+            getServer().getScheduler().runTaskTimerAsynchronously(this, () -> priceManager.verifyConsistency(),
+                    consistencyInterval * 20L, consistencyInterval * 20L);
+        }
+
+        // Changes written by other servers sharing the database
+        if (syncInterval > 0) {
+            long syncTicks = Math.max(1L, syncInterval / 50L);
+            getServer().getScheduler().runTaskTimerAsynchronously(this, () -> priceManager.pollChanges(), syncTicks, syncTicks);
+        }
+
+        // Binary catalog copy for fast startup; also written on shutdown
+        long snapshotInterval = getConfig().getLong("cache.snapshot_interval", 300L);
+        if (snapshotInterval > 0) {
+            getServer().getScheduler().runTaskTimerAsynchronously(this, () -> storageExecutor.runInternalRead(priceManager::saveSnapshotFile),
+                    snapshotInterval * 20L, snapshotInterval * 20L);
+        }
+
+        // Price history rollups and compaction of old raw samples
+        long rollupInterval = getConfig().getLong("history.rollup_interval", 60L);
+        if (rollupInterval > 0) {
+            getServer().getScheduler().runTaskTimerAsynchronously(this, () -> historyManager.runMaintenance(),
+                    rollupInterval * 20L, rollupInterval * 20L);
+        }
+
         // 4. Commands
-        Objects.requireNonNull(getCommand("minimal")).setExecutor(new PriceCommand(this, priceManager, configManager)); // Updated command registration
-        Objects.requireNonNull(getCommand("minimal")).setTabCompleter(new PriceTabCompleter(priceManager)); // Updated command registration
+        Objects.requireNonNull(getCommand("minimal")).setExecutor(new PriceCommand(this, priceManager, configManager, historyManager, catalogTransfer, searchManager, categoryPages, watchManager, priceMenu, storageExecutor)); // Updated command registration
+        Objects.requireNonNull(getCommand("minimal")).setTabCompleter(new PriceTabCompleter(this, priceManager, catalogTransfer)); // Updated command registration
 
         // Alias /price
-        Objects.requireNonNull(getCommand("price")).setExecutor(new PriceCommand(this, priceManager, configManager)); // Updated command registration
+        Objects.requireNonNull(getCommand("price")).setExecutor(new PriceCommand(this, priceManager, configManager, historyManager, catalogTransfer, searchManager, categoryPages, watchManager, priceMenu, storageExecutor)); // Updated command registration
 
         // 5. Discord Integration
         if (getServer().getPluginManager().isPluginEnabled("DiscordSRV")) {
-            this.discordManager = new ru.minimalprice.minimalprice.features.discord.DiscordManager(this, priceManager, getDataFolder().getAbsolutePath() + "/discord.db");
+            this.discordManager = new ru.minimalprice.minimalprice.features.discord.DiscordManager(this, priceManager, databaseManager, storageExecutor);
             getLogger().info("DiscordSRV integration enabled!");
         } else {
             getLogger().warning("DiscordSRV plugin not found or not enabled! Integration disabled.");
@@ -58,12 +134,19 @@ public final class MinimalPrice extends JavaPlugin {
 
     @Override
     public void onDisable() {
+        getServer().getServicesManager().unregisterAll(this);
+        if (this.api != null) {
+            this.api.close();
+        }
+        if (this.priceManager != null) {
+            this.priceManager.close(); // Queued price updates are flushed through the storage writer
+        }
+        if (this.storageExecutor != null) {
+            this.storageExecutor.close(); // Accepted writes finish before the database is closed
+        }
         if (this.databaseManager != null) { // Changed to this.databaseManager for consistency
             this.databaseManager.close();
         }
-        if (this.discordManager != null) { // Added discordManager close
-            this.discordManager.close();
-        }
         getLogger().info("MinimalPrice disabled!");
     }
 }
@@ -0,0 +1,7 @@
+package ru.minimalprice.minimalprice.api;
+
+// See MinimalPriceAPI#addChangeListener; the catalog is the generation current at the time of the call
+@FunctionalInterface
+public interface CatalogChangeListener {
+    void onCatalogChanged(CatalogView catalog);
+}
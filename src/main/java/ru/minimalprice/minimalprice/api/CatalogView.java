@@ -0,0 +1,57 @@
+package ru.minimalprice.minimalprice.api;
+
+import ru.minimalprice.minimalprice.features.price.models.Category;
+import ru.minimalprice.minimalprice.features.price.models.Money;
+import ru.minimalprice.minimalprice.features.price.models.Product;
+
+import java.util.List;
+
+/**
+ * One read-only generation of the price catalog. Names are matched case-insensitively, as in commands.
+ * Prices are in minor units of {@link #getPriceScale()} fraction digits unless returned as {@link Money}.
+ */
+public interface CatalogView {
+
+    // Returned by the getPriceMinor lookups when there is no such product
+    long NO_PRICE = Long.MIN_VALUE;
+
+    // Grows with every change of the catalog
+    long getVersion();
+
+    int getPriceScale();
+
+    List<Category> getCategories();
+
+    // Null if absent
+    Category getCategory(int categoryId);
+
+    // Null if absent
+    Category getCategory(String name);
+
+    int getProductCount();
+
+    // Allocation-free lookups; NO_PRICE if absent
+    long getPriceMinor(int categoryId, String productName);
+
+    long getPriceMinor(String categoryName, String productName);
+
+    long getPriceMinorById(int productId);
+
+    // Null if absent
+    Money getPrice(String categoryName, String productName);
+
+    // Null if absent
+    Product getProduct(int productId);
+
+    // Null if absent
+    Product getProduct(String categoryName, String productName);
+
+    // Allocation-free iteration over one category, in catalog order
+    void forEachProduct(int categoryId, CategoryVisitor visitor);
+
+    // Allocation-free iteration over the whole catalog, category by category
+    void forEachProduct(CatalogVisitor visitor);
+
+    // Min/max/mean/median/percentiles of the category's prices; empty for an unknown category
+    PriceStatistics getStatistics(int categoryId);
+}
@@ -0,0 +1,7 @@
+package ru.minimalprice.minimalprice.api;
+
+// Callback for iterating the whole catalog without materializing Product objects
+@FunctionalInterface
+public interface CatalogVisitor {
+    void visit(int categoryId, int productId, String name, long priceMinor);
+}
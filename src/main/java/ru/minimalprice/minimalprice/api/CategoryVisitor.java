@@ -0,0 +1,7 @@
+package ru.minimalprice.minimalprice.api;
+
+// Callback for iterating one category without materializing Product objects
+@FunctionalInterface
+public interface CategoryVisitor {
+    void visit(int productId, String name, long priceMinor);
+}
@@ -0,0 +1,25 @@
+package ru.minimalprice.minimalprice.api;
+
+/**
+ * Read-only access to the price catalog for other plugins, registered with the Bukkit ServicesManager:
+ * <pre>
+ * MinimalPriceAPI api = Bukkit.getServicesManager().load(MinimalPriceAPI.class);
+ * </pre>
+ * Every call reads the current in-memory catalog generation without locking and from any thread.
+ * Separate calls may see different generations; for several reads that must agree, take
+ * {@link #getSnapshot()} once and read from it.
+ */
+public interface MinimalPriceAPI extends CatalogView {
+
+    // The current generation itself: immutable, safe to keep and read from any thread
+    CatalogView getSnapshot();
+
+    /**
+     * Called after the catalog changed (price updates, renames, imports, changes from other servers),
+     * on a MinimalPrice thread of its own, never the main thread. Changes in quick succession may be
+     * reported once, with the latest generation.
+     */
+    void addChangeListener(CatalogChangeListener listener);
+
+    void removeChangeListener(CatalogChangeListener listener);
+}
@@ -0,0 +1,20 @@
+package ru.minimalprice.minimalprice.api;
+
+// Price statistics of one category in minor units; all values are 0 for an empty category
+public interface PriceStatistics {
+
+    int count();
+
+    boolean isEmpty();
+
+    long minMinor();
+
+    long maxMinor();
+
+    long meanMinor();
+
+    long medianMinor();
+
+    // percent from 0 to 100, nearest rank
+    long percentileMinor(double percent);
+}
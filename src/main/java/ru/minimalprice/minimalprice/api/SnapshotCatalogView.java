@@ -0,0 +1,126 @@
+package ru.minimalprice.minimalprice.api;
+
+import ru.minimalprice.minimalprice.features.price.cache.CatalogSnapshot;
+import ru.minimalprice.minimalprice.features.price.cache.ProductColumns;
+import ru.minimalprice.minimalprice.features.price.models.Category;
+import ru.minimalprice.minimalprice.features.price.models.Money;
+import ru.minimalprice.minimalprice.features.price.models.Product;
+
+import java.util.List;
+
+// CatalogView of one immutable generation
+final class SnapshotCatalogView implements CatalogView {
+
+    private final CatalogSnapshot snapshot;
+
+    SnapshotCatalogView(CatalogSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    boolean isOf(CatalogSnapshot other) {
+        return snapshot == other;
+    }
+
+    @Override
+    public long getVersion() {
+        return snapshot.getVersion();
+    }
+
+    @Override
+    public int getPriceScale() {
+        return snapshot.getPriceScale();
+    }
+
+    @Override
+    public List<Category> getCategories() {
+        return snapshot.getCategories();
+    }
+
+    @Override
+    public Category getCategory(int categoryId) {
+        return snapshot.getCategory(categoryId);
+    }
+
+    @Override
+    public Category getCategory(String name) {
+        return snapshot.findCategoryIgnoreCase(name);
+    }
+
+    @Override
+    public int getProductCount() {
+        return snapshot.getProductCount();
+    }
+
+    @Override
+    public long getPriceMinor(int categoryId, String productName) {
+        int row = snapshot.findProductRowIgnoreCase(categoryId, productName);
+        return row < 0 ? NO_PRICE : snapshot.getColumns().priceMinor(row);
+    }
+
+    @Override
+    public long getPriceMinor(String categoryName, String productName) {
+        int row = findRow(categoryName, productName);
+        return row < 0 ? NO_PRICE : snapshot.getColumns().priceMinor(row);
+    }
+
+    @Override
+    public long getPriceMinorById(int productId) {
+        int row = snapshot.findProductRowById(productId);
+        return row < 0 ? NO_PRICE : snapshot.getColumns().priceMinor(row);
+    }
+
+    @Override
+    public Money getPrice(String categoryName, String productName) {
+        int row = findRow(categoryName, productName);
+        return row < 0 ? null : Money.ofMinor(snapshot.getColumns().priceMinor(row), snapshot.getPriceScale());
+    }
+
+    @Override
+    public Product getProduct(int productId) {
+        int row = snapshot.findProductRowById(productId);
+        return row < 0 ? null : product(row);
+    }
+
+    @Override
+    public Product getProduct(String categoryName, String productName) {
+        int row = findRow(categoryName, productName);
+        return row < 0 ? null : product(row);
+    }
+
+    @Override
+    public void forEachProduct(int categoryId, CategoryVisitor visitor) {
+        ProductColumns columns = snapshot.getColumns();
+        int end = columns.rowEnd(categoryId);
+        for (int row = columns.rowStart(categoryId); row < end; row++) {
+            visitor.visit(columns.productId(row), columns.productName(row), columns.priceMinor(row));
+        }
+    }
+
+    @Override
+    public void forEachProduct(CatalogVisitor visitor) {
+        ProductColumns columns = snapshot.getColumns();
+        for (Category category : snapshot.getCategories()) {
+            int categoryId = category.getId();
+            int end = columns.rowEnd(categoryId);
+            for (int row = columns.rowStart(categoryId); row < end; row++) {
+                visitor.visit(categoryId, columns.productId(row), columns.productName(row), columns.priceMinor(row));
+            }
+        }
+    }
+
+    @Override
+    public PriceStatistics getStatistics(int categoryId) {
+        return snapshot.getStatistics(categoryId);
+    }
+
+    private int findRow(String categoryName, String productName) {
+        Category category = snapshot.findCategoryIgnoreCase(categoryName);
+        return category == null ? -1 : snapshot.findProductRowIgnoreCase(category.getId(), productName);
+    }
+
+    private Product product(int row) {
+        ProductColumns columns = snapshot.getColumns();
+        return new Product(columns.productId(row), columns.categoryIdOf(row), columns.productName(row),
+                Money.ofMinor(columns.priceMinor(row), snapshot.getPriceScale()));
+    }
+}
@@ -0,0 +1,166 @@
+package ru.minimalprice.minimalprice.api;
+
+import ru.minimalprice.minimalprice.features.price.PriceManager;
+import ru.minimalprice.minimalprice.features.price.cache.CatalogSnapshot;
+import ru.minimalprice.minimalprice.features.price.models.Category;
+import ru.minimalprice.minimalprice.features.price.models.Money;
+import ru.minimalprice.minimalprice.features.price.models.Product;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// MinimalPriceAPI over the published snapshot: one volatile read per call, never blocks writers
+public final class SnapshotPriceAPI implements MinimalPriceAPI {
+
+    private final PriceManager priceManager;
+    private final List<CatalogChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final ExecutorService notifier;
+    private final AtomicBoolean notifyScheduled = new AtomicBoolean();
+
+    // View of the last generation asked for; replaced only when the snapshot changes
+    private volatile SnapshotCatalogView view;
+
+    public SnapshotPriceAPI(PriceManager priceManager) {
+        this.priceManager = priceManager;
+        this.view = new SnapshotCatalogView(priceManager.getSnapshot());
+        this.notifier = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "MinimalPrice-API");
+            thread.setDaemon(true);
+            return thread;
+        });
+        priceManager.addSnapshotListener(snapshot -> scheduleNotify());
+    }
+
+    @Override
+    public CatalogView getSnapshot() {
+        return view();
+    }
+
+    @Override
+    public long getVersion() {
+        return view().getVersion();
+    }
+
+    @Override
+    public int getPriceScale() {
+        return view().getPriceScale();
+    }
+
+    @Override
+    public List<Category> getCategories() {
+        return view().getCategories();
+    }
+
+    @Override
+    public Category getCategory(int categoryId) {
+        return view().getCategory(categoryId);
+    }
+
+    @Override
+    public Category getCategory(String name) {
+        return view().getCategory(name);
+    }
+
+    @Override
+    public int getProductCount() {
+        return view().getProductCount();
+    }
+
+    @Override
+    public long getPriceMinor(int categoryId, String productName) {
+        return view().getPriceMinor(categoryId, productName);
+    }
+
+    @Override
+    public long getPriceMinor(String categoryName, String productName) {
+        return view().getPriceMinor(categoryName, productName);
+    }
+
+    @Override
+    public long getPriceMinorById(int productId) {
+        return view().getPriceMinorById(productId);
+    }
+
+    @Override
+    public Money getPrice(String categoryName, String productName) {
+        return view().getPrice(categoryName, productName);
+    }
+
+    @Override
+    public Product getProduct(int productId) {
+        return view().getProduct(productId);
+    }
+
+    @Override
+    public Product getProduct(String categoryName, String productName) {
+        return view().getProduct(categoryName, productName);
+    }
+
+    @Override
+    public void forEachProduct(int categoryId, CategoryVisitor visitor) {
+        view().forEachProduct(categoryId, visitor);
+    }
+
+    @Override
+    public void forEachProduct(CatalogVisitor visitor) {
+        view().forEachProduct(visitor);
+    }
+
+    @Override
+    public PriceStatistics getStatistics(int categoryId) {
+        return view().getStatistics(categoryId);
+    }
+
+    @Override
+    public void addChangeListener(CatalogChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeChangeListener(CatalogChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Stops notifying listeners; pending notifications are dropped
+    public void close() {
+        notifier.shutdownNow();
+    }
+
+    private SnapshotCatalogView view() {
+        CatalogSnapshot snapshot = priceManager.getSnapshot();
+        SnapshotCatalogView current = view;
+        if (!current.isOf(snapshot)) {
+            current = new SnapshotCatalogView(snapshot);
+            view = current;
+        }
+        return current;
+    }
+
+    // Listeners of other plugins run off the publishing thread; a burst of generations is reported once
+    private void scheduleNotify() {
+        if (listeners.isEmpty() || !notifyScheduled.compareAndSet(false, true)) return;
+        try {
+            notifier.execute(this::notifyChanged);
+        } catch (RejectedExecutionException e) {
+            // Closed
+            notifyScheduled.set(false);
+        }
+    }
+
+    // A failing listener of another plugin must not keep the rest from being notified
+    private void notifyChanged() {
+        notifyScheduled.set(false);
+        CatalogView catalog = view();
+        for (CatalogChangeListener listener : listeners) {
+            try {
+                listener.onCatalogChanged(catalog);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -1,9 +1,16 @@
 package ru.minimalprice.minimalprice.configuration;
 
 import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 
-import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.command.CommandSender;
 import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
 
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.minimessage.MiniMessage;
@@ -13,7 +20,8 @@ public class ConfigManager {
 
     private final MinimalPrice plugin;
     private final MiniMessage miniMessage;
-    private FileConfiguration languageConfig;
+    // Replaced as a whole on reload, so a message is never rendered from a half-loaded set
+    private volatile Messages messages;
 
     public ConfigManager(MinimalPrice plugin) {
         this.plugin = plugin;
@@ -23,65 +31,122 @@ public class ConfigManager {
 
     public void loadLocale() {
         String locale = plugin.getConfig().getString("locale", "en");
-        File langFile = new File(plugin.getDataFolder(), "languages/messages_" + locale + ".yml");
-        
-        if (!langFile.exists()) {
-            plugin.getLogger().warning("Language file not found: " + langFile.getName() + ". Falling back to en.");
-            langFile = new File(plugin.getDataFolder(), "languages/messages_en.yml");
+        MessageBundle bundle = loadBundle(locale, false);
+        if (bundle == null) {
+            plugin.getLogger().warning("Language file not found: messages_" + locale + ".yml. Falling back to en.");
+            bundle = loadBundle("en", true);
         }
-        
-        this.languageConfig = YamlConfiguration.loadConfiguration(langFile);
+        boolean perPlayer = plugin.getConfig().getBoolean("per_player_locale", true);
+        this.messages = new Messages(bundle, perPlayer, perPlayer ? loadOtherBundles(bundle.getLocale()) : Map.of());
     }
 
-    public Component getMessage(String key) {
-        String msg = languageConfig.getString(key);
-        if (msg == null) return Component.text("Message not found: " + key);
-        
-        // Append prefix if it exists and we aren't asking for the prefix itself
-        if (!key.equals("prefix")) {
-            String prefix = languageConfig.getString("prefix");
-            if (prefix != null) {
-                msg = prefix + msg;
+    // Every language file present at load; clients asking for any other language get the default
+    private Map<String, MessageBundle> loadOtherBundles(String defaultLocale) {
+        Map<String, MessageBundle> bundles = new HashMap<>();
+        File[] files = new File(plugin.getDataFolder(), "languages").listFiles();
+        if (files == null) {
+            return bundles;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (!file.isFile() || !name.startsWith("messages_") || !name.endsWith(".yml")) continue;
+            String language = name.substring("messages_".length(), name.length() - ".yml".length()).toLowerCase(Locale.ROOT);
+            if (!language.matches("[a-z]{2,8}") || language.equals(defaultLocale)) continue;
+            MessageBundle bundle = loadBundle(language, false);
+            if (bundle != null) {
+                bundles.put(language, bundle);
             }
         }
-        
-        // Replace currency placeholder
-        String currency = plugin.getConfig().getString("currency", "$");
-        msg = msg.replace("%currency%", currency);
-        
-        return miniMessage.deserialize(msg);
+        return bundles;
     }
-    
-    public Component getMessage(String key, String... placeholders) {
-        String msg = languageConfig.getString(key);
-        if (msg == null) return Component.text("Message not found: " + key);
-
-        // Append prefix if it exists and we aren't asking for the prefix itself
-        if (!key.equals("prefix")) {
-            String prefix = languageConfig.getString("prefix");
-            if (prefix != null) {
-                msg = prefix + msg;
-            }
+
+    // Compiles languages/messages_<locale>.yml; a missing file gives null unless required (bundled texts only)
+    private MessageBundle loadBundle(String locale, boolean required) {
+        File langFile = new File(plugin.getDataFolder(), "languages/messages_" + locale + ".yml");
+        if (!langFile.exists() && !required) {
+            return null;
         }
-        
-        // Replace currency placeholder
-        String currency = plugin.getConfig().getString("currency", "$");
-        msg = msg.replace("%currency%", currency);
-        
-        for (int i = 0; i < placeholders.length; i += 2) {
-            if (i + 1 < placeholders.length) {
-                msg = msg.replace(placeholders[i], placeholders[i + 1]);
-            }
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(langFile);
+
+        // Keys added in newer versions are missing from language files saved by older ones
+        InputStream bundled = plugin.getResource("languages/" + langFile.getName());
+        if (bundled != null) {
+            config.setDefaults(YamlConfiguration.loadConfiguration(new InputStreamReader(bundled, StandardCharsets.UTF_8)));
         }
-        return miniMessage.deserialize(msg);
+        String currency = plugin.getConfig().getString("currency", "$");
+        return MessageBundle.compile(locale, config, currency, miniMessage);
+    }
+
+    public Component getMessage(String key) {
+        return messages.defaultBundle.render(key, true);
+    }
+
+    public Component getMessage(String key, String... placeholders) {
+        return messages.defaultBundle.render(key, true, placeholders);
+    }
+
+    // In the sender's client language when a language file exists for it
+    public Component getMessage(CommandSender sender, String key, String... placeholders) {
+        return bundleFor(sender).render(key, true, placeholders);
     }
-    
+
+    // A message without the prefix, for lines joined into a larger component
+    public Component getLine(String key, String... placeholders) {
+        return messages.defaultBundle.render(key, false, placeholders);
+    }
+
+    public Component getLine(CommandSender sender, String key, String... placeholders) {
+        return bundleFor(sender).render(key, false, placeholders);
+    }
+
+    // Locale of the default language file (after the fallback to en)
+    public String getLocale() {
+        return messages.defaultBundle.getLocale();
+    }
+
+    // Locale the sender's messages are rendered in
+    public String getLocale(CommandSender sender) {
+        return bundleFor(sender).getLocale();
+    }
+
+    // For placeholder values that come from outside the language files, so they are not parsed as tags
+    public String escape(String text) {
+        return text == null ? "" : miniMessage.escapeTags(text);
+    }
+
     public String getRawMessage(String key) {
-         return languageConfig.getString(key, "");
+        return messages.defaultBundle.raw(key);
+    }
+
+    public String getRawMessage(CommandSender sender, String key) {
+        return bundleFor(sender).raw(key);
     }
 
     public void reload() {
         plugin.reloadConfig();
         loadLocale();
     }
+
+    private MessageBundle bundleFor(CommandSender sender) {
+        Messages current = messages;
+        if (!current.perPlayer || !(sender instanceof Player player)) {
+            return current.defaultBundle;
+        }
+        // Client locales are like en_us / ru_ru; language files are per language
+        String language = player.locale().getLanguage().toLowerCase(Locale.ROOT);
+        return current.byLanguage.getOrDefault(language, current.defaultBundle);
+    }
+
+    // One loaded generation of messages; never modified after load
+    private static final class Messages {
+        private final MessageBundle defaultBundle;
+        private final boolean perPlayer;
+        private final Map<String, MessageBundle> byLanguage;
+
+        private Messages(MessageBundle defaultBundle, boolean perPlayer, Map<String, MessageBundle> byLanguage) {
+            this.defaultBundle = defaultBundle;
+            this.perPlayer = perPlayer;
+            this.byLanguage = byLanguage;
+        }
+    }
 }
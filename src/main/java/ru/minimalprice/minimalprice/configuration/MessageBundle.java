@@ -0,0 +1,105 @@
+package ru.minimalprice.minimalprice.configuration;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.bukkit.configuration.Configuration;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+
+/**
+ * The compiled messages of one locale. Built once per load and never modified afterwards,
+ * except for the bounded cache of parsed messages; components are immutable, so cached ones are shared.
+ */
+final class MessageBundle {
+
+    private static final int RENDER_CACHE_SIZE = 512;
+
+    private final String locale;
+    private final MiniMessage miniMessage;
+    private final String prefix;
+    private final Map<String, String> raw;
+    private final Map<String, MessageTemplate> templates;
+    // Messages without placeholders, parsed once (prefixed and without prefix)
+    private final Map<String, Component> constants;
+    private final Map<String, Component> constantLines;
+    // Filled MiniMessage source -> parsed message, least recently used evicted
+    private final Map<String, Component> rendered = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Component> eldest) {
+            return size() > RENDER_CACHE_SIZE;
+        }
+    };
+
+    private MessageBundle(String locale, MiniMessage miniMessage, String prefix, Map<String, String> raw,
+                          Map<String, MessageTemplate> templates) {
+        this.locale = locale;
+        this.miniMessage = miniMessage;
+        this.prefix = prefix;
+        this.raw = raw;
+        this.templates = templates;
+        this.constants = new HashMap<>();
+        this.constantLines = new HashMap<>();
+        for (Map.Entry<String, MessageTemplate> entry : templates.entrySet()) {
+            if (!entry.getValue().isConstant()) continue;
+            String body = entry.getValue().fill("");
+            constantLines.put(entry.getKey(), miniMessage.deserialize(body));
+            constants.put(entry.getKey(), entry.getKey().equals("prefix")
+                    ? constantLines.get(entry.getKey()) : miniMessage.deserialize(prefix + body));
+        }
+    }
+
+    // The currency symbol is fixed per load, so it is substituted here rather than per message
+    static MessageBundle compile(String locale, YamlConfiguration config, String currency, MiniMessage miniMessage) {
+        Set<String> keys = new HashSet<>(config.getKeys(true));
+        Configuration defaults = config.getDefaults();
+        if (defaults != null) {
+            keys.addAll(defaults.getKeys(true));
+        }
+
+        Map<String, String> raw = new HashMap<>();
+        Map<String, MessageTemplate> templates = new HashMap<>();
+        for (String key : keys) {
+            // Sections and non-text values are not messages; isString also sees the defaults
+            if (!config.isString(key)) continue;
+            String value = config.getString(key);
+            raw.put(key, value);
+            templates.put(key, MessageTemplate.compile(value.replace("%currency%", currency)));
+        }
+        String prefix = raw.containsKey("prefix") ? raw.get("prefix").replace("%currency%", currency) : "";
+        return new MessageBundle(locale, miniMessage, prefix, raw, templates);
+    }
+
+    String getLocale() {
+        return locale;
+    }
+
+    String raw(String key) {
+        return raw.getOrDefault(key, "");
+    }
+
+    Component render(String key, boolean prefixed, String... placeholders) {
+        MessageTemplate template = templates.get(key);
+        if (template == null) return Component.text("Message not found: " + key);
+        if (template.isConstant()) {
+            return prefixed ? constants.get(key) : constantLines.get(key);
+        }
+
+        // The prefix is never prepended to itself
+        String source = template.fill(prefixed && !key.equals("prefix") ? prefix : "", placeholders);
+        synchronized (rendered) {
+            Component cached = rendered.get(source);
+            if (cached != null) return cached;
+        }
+        Component parsed = miniMessage.deserialize(source);
+        synchronized (rendered) {
+            rendered.put(source, parsed);
+        }
+        return parsed;
+    }
+}
@@ -0,0 +1,78 @@
+package ru.minimalprice.minimalprice.configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A message split once into literal text and placeholder slots ({@code %name%}).
+ * Filling it is a single pass over the parts; a value is never searched for further placeholders.
+ */
+final class MessageTemplate {
+
+    private final String[] literals; // one more than slots: literal, slot, literal, ...
+    private final String[] slots;    // placeholder tokens including the percent signs
+    private final int length;        // total length of the literals
+
+    private MessageTemplate(String[] literals, String[] slots) {
+        this.literals = literals;
+        this.slots = slots;
+        int total = 0;
+        for (String literal : literals) {
+            total += literal.length();
+        }
+        this.length = total;
+    }
+
+    static MessageTemplate compile(String source) {
+        List<String> literals = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+        int literalStart = 0;
+        int i = 0;
+        while (i < source.length()) {
+            int end = source.charAt(i) == '%' ? slotEnd(source, i) : -1;
+            if (end < 0) {
+                i++;
+                continue;
+            }
+            literals.add(source.substring(literalStart, i));
+            slots.add(source.substring(i, end));
+            literalStart = end;
+            i = end;
+        }
+        literals.add(source.substring(literalStart));
+        return new MessageTemplate(literals.toArray(new String[0]), slots.toArray(new String[0]));
+    }
+
+    // End (exclusive) of a %name% token starting at start, or -1
+    private static int slotEnd(String source, int start) {
+        int i = start + 1;
+        while (i < source.length()) {
+            char c = source.charAt(i);
+            if (c == '%') return i > start + 1 ? i + 1 : -1;
+            if (!(c >= 'a' && c <= 'z' || c >= '0' && c <= '9' || c == '_')) return -1;
+            i++;
+        }
+        return -1;
+    }
+
+    boolean isConstant() {
+        return slots.length == 0;
+    }
+
+    // Pairs of (token, value); a slot without a value keeps its token, as String#replace would
+    String fill(String prefix, String... placeholders) {
+        StringBuilder out = new StringBuilder(prefix.length() + length + 16 * slots.length);
+        out.append(prefix).append(literals[0]);
+        for (int s = 0; s < slots.length; s++) {
+            out.append(valueOf(slots[s], placeholders)).append(literals[s + 1]);
+        }
+        return out.toString();
+    }
+
+    private static String valueOf(String slot, String[] placeholders) {
+        for (int i = 0; i + 1 < placeholders.length; i += 2) {
+            if (placeholders[i].equals(slot)) return placeholders[i + 1];
+        }
+        return slot;
+    }
+}
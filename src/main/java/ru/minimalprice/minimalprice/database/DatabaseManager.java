@@ -1,86 +1,204 @@
 package ru.minimalprice.minimalprice.database;
 
+import java.io.File;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.logging.Logger;
+
+import org.bukkit.configuration.ConfigurationSection;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 
+import ru.minimalprice.minimalprice.database.dialect.SqlDialect;
+import ru.minimalprice.minimalprice.database.dialect.SqliteDialect;
+import ru.minimalprice.minimalprice.database.migration.MigrationRunner;
+import ru.minimalprice.minimalprice.features.price.models.Money;
+
 public class DatabaseManager {
 
-    private final String url;
-    private HikariDataSource dataSource;
+    private final SqlDialect dialect;
+    private final File dataFolder;
+    private final ConfigurationSection settings;
+    private final Logger logger;
+    private int priceScale;
+    // Writes go through a single dedicated connection on every backend: SQLite allows one writer at a time,
+    // and elsewhere it keeps this server's writes in submission order. Readers use their own read-only pool.
+    private HikariDataSource writeDataSource;
+    private HikariDataSource readDataSource;
 
     public HikariDataSource getDataSource() {
-        return dataSource;
+        return readDataSource;
     }
 
-    public DatabaseManager(String path) {
-        this.url = "jdbc:sqlite:" + path;
+    /**
+     * @param settings the backend's section of the config (e.g. database.sqlite), may be null
+     */
+    public DatabaseManager(SqlDialect dialect, File dataFolder, ConfigurationSection settings, int priceScale, Logger logger) {
+        this.dialect = dialect;
+        this.dataFolder = dataFolder;
+        this.settings = settings;
+        this.logger = logger;
+        if (priceScale < 0 || priceScale > Money.MAX_SCALE) {
+            logger.warning("price_scale must be between 0 and " + Money.MAX_SCALE + ", using 2");
+            priceScale = 2;
+        }
+        this.priceScale = priceScale;
     }
 
     public void initDatabase() {
+        // Writer first: it creates the database (and on SQLite switches it to WAL) before any reader opens it
+        HikariConfig writerConfig = baseConfig("MinimalPrice-Writer");
+        writerConfig.setMaximumPoolSize(1);
+        dialect.configureWriter(writerConfig, settings);
+        this.writeDataSource = new HikariDataSource(writerConfig);
+
+        migrateSchema();
+
+        HikariConfig readerConfig = baseConfig("MinimalPrice-Reader");
+        readerConfig.setMaximumPoolSize(Math.max(1, getInt("reader_pool_size", 4)));
+        dialect.configureReader(readerConfig, settings);
+        this.readDataSource = new HikariDataSource(readerConfig);
+        logger.info("Storage backend: " + dialect.getName());
+    }
+
+    private HikariConfig baseConfig(String poolName) {
         HikariConfig config = new HikariConfig();
-        config.setJdbcUrl(url);
-        config.setMaximumPoolSize(10);
-        
-        this.dataSource = new HikariDataSource(config);
-        
-        createTables();
+        config.setPoolName(poolName);
+        dialect.configure(config, dataFolder, settings);
+        return config;
     }
 
-    private void createTables() {
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement()) {
+    private int getInt(String key, int def) {
+        return settings != null ? settings.getInt(key, def) : def;
+    }
+
+    public SqlDialect getDialect() {
+        return dialect;
+    }
+
+    private void migrateSchema() {
+        try {
+            int version = new MigrationRunner(this, logger).migrate(dialect.migrations(priceScale));
+            logger.info("Database schema version: " + version);
+            loadPriceScale();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
 
-            // Dropping tables to ensure schema is updated.
-            // WARNING: This deletes data on every restart if not handled carefully.
-            // But since we are in dev and schema is broken, let's just make sure we have the right tables.
-            // For production plugin, we should use migration or check columns.
-            // However, the error suggests table exists but column missing.
-            // To fix it now without wiping, we can use try-catch or just wipe it once.
-            // Given "minimal-price" dev status, I will wipe it once or just alter.
-            
-            // Actually, best approach for dev: Drop if exists to fix schema.
-            // User just started server, no critical data.
-            // stmt.execute("DROP TABLE IF EXISTS mp_items");
-            // stmt.execute("DROP TABLE IF EXISTS mp_categories");
-            
-            // Wait, if I drop every time, data is lost.
-            // I should check if column exists or just run this once.
-            // But I cannot run SQL manually easily.
-            // I'll add the check for now.
-             
-            stmt.execute("CREATE TABLE IF NOT EXISTS mp_categories (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "name VARCHAR(255) NOT NULL UNIQUE" +
-                    ");");
-
-            stmt.execute("CREATE TABLE IF NOT EXISTS mp_items (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "category_id INTEGER NOT NULL," +
-                    "name VARCHAR(255) NOT NULL," +
-                    "price DOUBLE NOT NULL," +
-                    "FOREIGN KEY(category_id) REFERENCES mp_categories(id) ON DELETE CASCADE ON UPDATE CASCADE," +
-                    "UNIQUE(category_id, name)" +
-                    ");");
+    // Stored prices are only meaningful with the scale they were written with
+    private void loadPriceScale() throws SQLException {
+        try (Connection conn = getWriteConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT meta_value FROM mp_meta WHERE meta_key = 'price_scale'");
+             ResultSet rs = stmt.executeQuery()) {
+            if (!rs.next()) return;
+            int stored = Integer.parseInt(rs.getString(1));
+            if (stored != priceScale) {
+                logger.warning("Configured price_scale " + priceScale + " differs from the stored scale " + stored
+                        + "; keeping " + stored + " to preserve existing prices.");
+            }
+            this.priceScale = stored;
+        }
+    }
+
+    // Fraction digits of every stored price (see Money)
+    public int getPriceScale() {
+        return priceScale;
+    }
+
+    /**
+     * Runs the work on the writer connection in one transaction.
+     * Commits when it returns normally, rolls back when it throws.
+     */
+    public <T> T inTransaction(UnitOfWork<T> work) throws SQLException {
+        try (Connection conn = getWriteConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                T result = work.execute(conn);
+                conn.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * One-time import of a table from a database file written by an older version.
+     * Rows are copied into the table of the same name (existing keys win), then the file is renamed
+     * to {@code <name>.migrated} so the import does not run again.
+     */
+    public void importLegacyTable(File legacyFile, String table) {
+        // Legacy files are SQLite databases, attachable only to an SQLite connection
+        if (!legacyFile.isFile() || !(dialect instanceof SqliteDialect)) return;
 
+        try (Connection conn = getWriteConnection();
+             Statement stmt = conn.createStatement()) {
+            try (PreparedStatement attach = conn.prepareStatement("ATTACH DATABASE ? AS legacy")) {
+                attach.setString(1, legacyFile.getAbsolutePath());
+                attach.execute();
+            }
+            try {
+                boolean exists;
+                try (PreparedStatement check = conn.prepareStatement(
+                        "SELECT 1 FROM legacy.sqlite_master WHERE type = 'table' AND name = ?")) {
+                    check.setString(1, table);
+                    try (ResultSet rs = check.executeQuery()) {
+                        exists = rs.next();
+                    }
+                }
+                if (exists) {
+                    int copied = stmt.executeUpdate("INSERT OR IGNORE INTO main." + table + " SELECT * FROM legacy." + table);
+                    logger.info("Imported " + copied + " rows of " + table + " from " + legacyFile.getName());
+                }
+            } finally {
+                stmt.execute("DETACH DATABASE legacy");
+            }
         } catch (SQLException e) {
             e.printStackTrace();
+            return;
+        }
+
+        File migrated = new File(legacyFile.getParentFile(), legacyFile.getName() + ".migrated");
+        if (!legacyFile.renameTo(migrated)) {
+            logger.warning("Could not rename " + legacyFile.getName() + " after import");
         }
     }
 
+    // Read-only connection from the reader pool
     public Connection getConnection() throws SQLException {
-        if (dataSource == null) {
+        if (readDataSource == null) {
+            throw new SQLException("Database not initialized");
+        }
+        return readDataSource.getConnection();
+    }
+
+    // The single writer connection; callers queue in the pool until it is free
+    public Connection getWriteConnection() throws SQLException {
+        if (writeDataSource == null) {
             throw new SQLException("Database not initialized");
         }
-        return dataSource.getConnection();
+        return writeDataSource.getConnection();
     }
 
     public void close() {
-        if (dataSource != null) {
-            dataSource.close();
+        if (readDataSource != null) {
+            readDataSource.close();
+        }
+        if (writeDataSource != null) {
+            try (Connection conn = writeDataSource.getConnection()) {
+                dialect.beforeClose(conn);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            writeDataSource.close();
         }
     }
 }
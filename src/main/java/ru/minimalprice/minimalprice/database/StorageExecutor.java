@@ -0,0 +1,224 @@
+package ru.minimalprice.minimalprice.database;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Threads for blocking database work, so JDBC calls never run on the common pool that other plugins and
+ * parallel streams share. Reads run on virtual threads: they mostly wait for a pooled connection or the
+ * database. Writes run one at a time on a single platform thread, like the single write connection they use.
+ * <p>
+ * Both sides have a bounded backlog (waiting plus running tasks). Work beyond it is rejected at once and its
+ * future fails with a {@link RejectedExecutionException}, instead of queueing without limit under overload.
+ * The plugin's own background work (cache reloads, change log sync, alert bookkeeping) has a reserve on top of
+ * that limit, so a flood of player commands cannot starve it.
+ * Futures complete like {@code CompletableFuture.supplyAsync}: failures arrive wrapped in a CompletionException.
+ */
+public class StorageExecutor {
+
+    private final Logger logger;
+    private final ExecutorService readers;
+    private final ThreadPoolExecutor writer;
+    private final Lane reads;
+    private final Lane writes;
+
+    public StorageExecutor(int maxPendingReads, int maxPendingWrites, Logger logger) {
+        this.logger = logger;
+        this.reads = new Lane("reads", Math.max(1, maxPendingReads));
+        this.writes = new Lane("writes", Math.max(1, maxPendingWrites));
+        this.readers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("MinimalPrice-Read-", 0).factory());
+        // Admission is bounded by the lane, so the queue itself needs no capacity
+        this.writer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "MinimalPrice-Write");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public <T> CompletableFuture<T> supplyRead(Supplier<T> task) {
+        return submit(reads, readers, task, false);
+    }
+
+    public CompletableFuture<Void> runRead(Runnable task) {
+        return submit(reads, readers, asSupplier(task), false);
+    }
+
+    // Writes run in submission order
+    public <T> CompletableFuture<T> supplyWrite(Supplier<T> task) {
+        return submit(writes, writer, task, false);
+    }
+
+    public CompletableFuture<Void> runWrite(Runnable task) {
+        return submit(writes, writer, asSupplier(task), false);
+    }
+
+    // Background work of the plugin itself: may use the lane's reserve, so only shutdown rejects it
+    public <T> CompletableFuture<T> supplyInternalRead(Supplier<T> task) {
+        return submit(reads, readers, task, true);
+    }
+
+    public CompletableFuture<Void> runInternalRead(Runnable task) {
+        return submit(reads, readers, asSupplier(task), true);
+    }
+
+    public <T> CompletableFuture<T> supplyInternalWrite(Supplier<T> task) {
+        return submit(writes, writer, task, true);
+    }
+
+    public CompletableFuture<Void> runInternalWrite(Runnable task) {
+        return submit(writes, writer, asSupplier(task), true);
+    }
+
+    // Whether a future failed because its task was never run (overload or shutdown)
+    public static boolean isRejected(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof RejectedExecutionException;
+    }
+
+    public Lane getReads() {
+        return reads;
+    }
+
+    public Lane getWrites() {
+        return writes;
+    }
+
+    // Stops taking work; writes already accepted still run (bounded wait), reads are abandoned
+    public void close() {
+        readers.shutdownNow();
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warning("Storage writer did not finish within 10 s; " + writes.getPending() + " writes dropped");
+                writer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Supplier<Void> asSupplier(Runnable task) {
+        return () -> {
+            task.run();
+            return null;
+        };
+    }
+
+    private <T> CompletableFuture<T> submit(Lane lane, ExecutorService executor, Supplier<T> task, boolean internal) {
+        if (!lane.admit(internal ? lane.limit + lane.reserve : lane.limit)) {
+            if (lane.overloaded.compareAndSet(false, true)) {
+                logger.warning("Storage overloaded: " + lane.name + " backlog of " + lane.limit + " is full, rejecting new work");
+            }
+            return CompletableFuture.failedFuture(new CompletionException(new RejectedExecutionException(
+                    "Storage overloaded: " + lane.name + " backlog of " + lane.limit + " is full")));
+        }
+        lane.overloaded.set(false);
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long queuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                lane.started(System.nanoTime() - queuedAt);
+                try {
+                    future.complete(task.get());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e instanceof CompletionException ? e : new CompletionException(e));
+                } finally {
+                    lane.pending.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shut down
+            lane.pending.decrementAndGet();
+            lane.rejected.incrementAndGet();
+            future.completeExceptionally(new CompletionException(e));
+        }
+        return future;
+    }
+
+    // Backlog and wait-time metrics of one side
+    public static final class Lane {
+        private final String name;
+        private final int limit;
+        private final int reserve;
+        private final AtomicBoolean overloaded = new AtomicBoolean();
+
+        // Metrics
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicInteger maxPending = new AtomicInteger();
+        private final AtomicLong started = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        private Lane(String name, int limit) {
+            this.name = name;
+            this.limit = limit;
+            this.reserve = Math.max(16, limit / 4);
+        }
+
+        private boolean admit(int max) {
+            int now = pending.incrementAndGet();
+            if (now > max) {
+                pending.decrementAndGet();
+                rejected.incrementAndGet();
+                return false;
+            }
+            maxPending.accumulateAndGet(now, Math::max);
+            return true;
+        }
+
+        private void started(long waitNanos) {
+            started.incrementAndGet();
+            totalWaitNanos.addAndGet(waitNanos);
+            maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        }
+
+        public int getLimit() {
+            return limit;
+        }
+
+        // Extra backlog only internal work may use
+        public int getReserve() {
+            return reserve;
+        }
+
+        // Waiting plus running
+        public int getPending() {
+            return pending.get();
+        }
+
+        public int getMaxPending() {
+            return maxPending.get();
+        }
+
+        public long getStartedCount() {
+            return started.get();
+        }
+
+        public long getRejectedCount() {
+            return rejected.get();
+        }
+
+        // Time from submission until a thread picked the task up
+        public double getAverageWaitMillis() {
+            long count = started.get();
+            return count == 0 ? 0.0 : totalWaitNanos.get() / (double) count / 1_000_000.0;
+        }
+
+        public double getMaxWaitMillis() {
+            return maxWaitNanos.get() / 1_000_000.0;
+        }
+    }
+}
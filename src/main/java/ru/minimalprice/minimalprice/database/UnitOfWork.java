@@ -0,0 +1,10 @@
+package ru.minimalprice.minimalprice.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+// Work executed on the writer connection inside a single transaction, see DatabaseManager#inTransaction
+@FunctionalInterface
+public interface UnitOfWork<T> {
+    T execute(Connection conn) throws SQLException;
+}
@@ -0,0 +1,41 @@
+package ru.minimalprice.minimalprice.database.dialect;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+// Statement fragments shared by the dialects
+final class DialectSupport {
+
+    private DialectSupport() {
+    }
+
+    // INSERT INTO table (a, b) VALUES (?, ?)
+    static StringBuilder insertInto(String table, List<String> columns) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table)
+                .append(" (").append(String.join(", ", columns)).append(") VALUES (");
+        for (int i = 0; i < columns.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        return sql.append(')');
+    }
+
+    static List<String> nonKeyColumns(List<String> keyColumns, List<String> columns) {
+        List<String> updated = new ArrayList<>(columns);
+        updated.removeAll(keyColumns);
+        return updated;
+    }
+
+    static String getString(ConfigurationSection settings, String key, String def) {
+        return settings != null ? settings.getString(key, def) : def;
+    }
+
+    static int getInt(ConfigurationSection settings, String key, int def) {
+        return settings != null ? settings.getInt(key, def) : def;
+    }
+
+    static long getLong(ConfigurationSection settings, String key, long def) {
+        return settings != null ? settings.getLong(key, def) : def;
+    }
+}
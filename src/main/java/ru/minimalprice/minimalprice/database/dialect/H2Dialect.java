@@ -0,0 +1,56 @@
+package ru.minimalprice.minimalprice.database.dialect;
+
+import java.io.File;
+import java.util.List;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import com.zaxxer.hikari.HikariConfig;
+
+import ru.minimalprice.minimalprice.database.migration.Migration;
+import ru.minimalprice.minimalprice.database.migration.Migrations;
+
+// Embedded H2 database file (database_h2.mv.db); needs no external server
+public class H2Dialect implements SqlDialect {
+
+    @Override
+    public String getName() {
+        return "h2";
+    }
+
+    @Override
+    public void configure(HikariConfig config, File dataFolder, ConfigurationSection settings) {
+        // The plugin closes the pools itself on disable; H2's own shutdown hook would race with that
+        config.setJdbcUrl("jdbc:h2:file:" + new File(dataFolder, "database_h2").getAbsolutePath() + ";DB_CLOSE_ON_EXIT=FALSE");
+        config.setDriverClassName("org.h2.Driver");
+        config.setUsername("sa");
+        config.setPassword("");
+    }
+
+    @Override
+    public List<Migration> migrations(int priceScale) {
+        return Migrations.h2(priceScale);
+    }
+
+    @Override
+    public String upsert(String table, List<String> keyColumns, List<String> columns) {
+        StringBuilder sql = new StringBuilder("MERGE INTO ").append(table)
+                .append(" (").append(String.join(", ", columns)).append(") KEY (")
+                .append(String.join(", ", keyColumns)).append(") VALUES (");
+        for (int i = 0; i < columns.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        return sql.append(')').toString();
+    }
+
+    // Through the indexed lower-case copy <column>_key (see migration 3)
+    @Override
+    public String equalsIgnoreCase(String column) {
+        return column + "_key = LOWER(?)";
+    }
+
+    @Override
+    public String forUpdate() {
+        return " FOR UPDATE";
+    }
+}
@@ -0,0 +1,101 @@
+package ru.minimalprice.minimalprice.database.dialect;
+
+import java.io.File;
+import java.util.List;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import com.zaxxer.hikari.HikariConfig;
+
+import ru.minimalprice.minimalprice.database.migration.Migration;
+import ru.minimalprice.minimalprice.database.migration.Migrations;
+
+/**
+ * Shared MySQL or MariaDB server, so several game servers can use one price list.
+ * Works with MySQL Connector/J ({@code driver: mysql}) and MariaDB Connector/J ({@code driver: mariadb}).
+ */
+public class MySqlDialect implements SqlDialect {
+
+    @Override
+    public String getName() {
+        return "mysql";
+    }
+
+    @Override
+    public void configure(HikariConfig config, File dataFolder, ConfigurationSection settings) {
+        boolean mariadb = "mariadb".equalsIgnoreCase(DialectSupport.getString(settings, "driver", "mysql"));
+        config.setJdbcUrl("jdbc:" + (mariadb ? "mariadb" : "mysql") + "://"
+                + DialectSupport.getString(settings, "host", "localhost") + ":"
+                + DialectSupport.getInt(settings, "port", 3306) + "/"
+                + DialectSupport.getString(settings, "database", "minimalprice"));
+        config.setDriverClassName(mariadb ? "org.mariadb.jdbc.Driver" : "com.mysql.cj.jdbc.Driver");
+        config.setUsername(DialectSupport.getString(settings, "username", "root"));
+        config.setPassword(DialectSupport.getString(settings, "password", ""));
+
+        // Server-side prepared statements, cached per connection, so hot statements are parsed once
+        String cacheSize = String.valueOf(DialectSupport.getInt(settings, "prepared_statement_cache_size", 250));
+        config.addDataSourceProperty("useServerPrepStmts", "true");
+        config.addDataSourceProperty("cachePrepStmts", "true");
+        config.addDataSourceProperty("prepStmtCacheSize", cacheSize);
+        if (mariadb) {
+            config.addDataSourceProperty("useBulkStmts", "true");
+        } else {
+            config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+            // Sends a JDBC batch as multi-row statements
+            config.addDataSourceProperty("rewriteBatchedStatements", "true");
+            config.addDataSourceProperty("useLocalSessionState", "true");
+            config.addDataSourceProperty("cacheServerConfiguration", "true");
+            config.addDataSourceProperty("elideSetAutoCommits", "true");
+            // Honors Statement#setFetchSize instead of buffering whole result sets (catalog load)
+            config.addDataSourceProperty("useCursorFetch", "true");
+        }
+        config.addDataSourceProperty("characterEncoding", "UTF-8");
+
+        // Anything else (useSSL, serverTimezone, ...) is passed through as is
+        ConfigurationSection extra = settings != null ? settings.getConfigurationSection("properties") : null;
+        if (extra != null) {
+            for (String key : extra.getKeys(false)) {
+                config.addDataSourceProperty(key, extra.getString(key));
+            }
+        }
+    }
+
+    @Override
+    public List<Migration> migrations(int priceScale) {
+        return Migrations.mysql(priceScale);
+    }
+
+    @Override
+    public String upsert(String table, List<String> keyColumns, List<String> columns) {
+        StringBuilder sql = DialectSupport.insertInto(table, columns);
+        List<String> updated = DialectSupport.nonKeyColumns(keyColumns, columns);
+        if (updated.isEmpty()) {
+            return sql.insert("INSERT".length(), " IGNORE").toString();
+        }
+        sql.append(" ON DUPLICATE KEY UPDATE ");
+        for (int i = 0; i < updated.size(); i++) {
+            if (i > 0) sql.append(", ");
+            // VALUES() is deprecated in MySQL 8.0.20+ but is the only form MariaDB understands
+            sql.append(updated.get(i)).append(" = VALUES(").append(updated.get(i)).append(')');
+        }
+        return sql.toString();
+    }
+
+    // Names use a binary collation (exact uniqueness, like SQLite), so case folding goes through the
+    // indexed lower-case copy <column>_key (see migration 3)
+    @Override
+    public String equalsIgnoreCase(String column) {
+        return column + "_key = LOWER(?)";
+    }
+
+    @Override
+    public boolean isShared() {
+        return true;
+    }
+
+    // Other game servers write to the same tables
+    @Override
+    public String forUpdate() {
+        return " FOR UPDATE";
+    }
+}
@@ -0,0 +1,77 @@
+package ru.minimalprice.minimalprice.database.dialect;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import com.zaxxer.hikari.HikariConfig;
+
+import ru.minimalprice.minimalprice.database.migration.Migration;
+
+/**
+ * Everything that differs between storage backends: connection setup, schema and the few
+ * statements without a portable form. Repositories write plain SQL and ask the dialect for the rest.
+ */
+public interface SqlDialect {
+
+    // Value of database.type and name of the backend's settings section
+    String getName();
+
+    /**
+     * Fills in URL, driver and driver properties shared by both pools.
+     *
+     * @param settings the backend's section (e.g. database.mysql), may be null
+     */
+    void configure(HikariConfig config, File dataFolder, ConfigurationSection settings);
+
+    // Properties only the single writer connection gets
+    default void configureWriter(HikariConfig config, ConfigurationSection settings) {
+    }
+
+    // Properties only reader connections get
+    default void configureReader(HikariConfig config, ConfigurationSection settings) {
+        config.setReadOnly(true);
+    }
+
+    List<Migration> migrations(int priceScale);
+
+    /**
+     * Insert-or-update of one row. Parameters are the columns in the given order;
+     * on a key conflict every non-key column is overwritten.
+     */
+    String upsert(String table, List<String> keyColumns, List<String> columns);
+
+    // Predicate comparing the column with one parameter, ignoring case, in a form the name index can serve
+    String equalsIgnoreCase(String column);
+
+    // Whether several game servers may use the database at once (and so need the change log)
+    default boolean isShared() {
+        return false;
+    }
+
+    // Appended to a SELECT that must lock its rows until the transaction ends ("" where writes are serialized anyway)
+    String forUpdate();
+
+    // Housekeeping on the writer before the pools are closed
+    default void beforeClose(Connection conn) throws SQLException {
+    }
+
+    // Null for an unknown database.type: silently using a local file would split a shared catalog
+    static SqlDialect byName(String name) {
+        switch (name == null ? "" : name.trim().toLowerCase(Locale.ROOT)) {
+            case "sqlite":
+                return new SqliteDialect();
+            case "mysql":
+            case "mariadb":
+                return new MySqlDialect();
+            case "h2":
+                return new H2Dialect();
+            default:
+                return null;
+        }
+    }
+}
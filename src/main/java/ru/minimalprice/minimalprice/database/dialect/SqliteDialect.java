@@ -0,0 +1,88 @@
+package ru.minimalprice.minimalprice.database.dialect;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import com.zaxxer.hikari.HikariConfig;
+
+import ru.minimalprice.minimalprice.database.migration.Migration;
+import ru.minimalprice.minimalprice.database.migration.Migrations;
+
+// Local database file (database_v2.db); the default backend
+public class SqliteDialect implements SqlDialect {
+
+    // SQLITE_OPEN_READONLY, see sqlite3_open_v2()
+    private static final String SQLITE_OPEN_READONLY = "1";
+
+    @Override
+    public String getName() {
+        return "sqlite";
+    }
+
+    @Override
+    public void configure(HikariConfig config, File dataFolder, ConfigurationSection settings) {
+        config.setJdbcUrl("jdbc:sqlite:" + new File(dataFolder, "database_v2.db").getAbsolutePath());
+        // Per-connection pragmas, applied by the SQLite driver when it opens the connection
+        config.addDataSourceProperty("foreign_keys", "true");
+        config.addDataSourceProperty("busy_timeout", String.valueOf(DialectSupport.getInt(settings, "busy_timeout_ms", 5000)));
+        config.addDataSourceProperty("cache_size", String.valueOf(DialectSupport.getInt(settings, "cache_size", -8192)));
+        config.addDataSourceProperty("mmap_size", String.valueOf(DialectSupport.getLong(settings, "mmap_size", 67108864L)));
+    }
+
+    @Override
+    public void configureWriter(HikariConfig config, ConfigurationSection settings) {
+        // The writer creates the file and switches it to WAL, which read-only connections cannot do
+        config.addDataSourceProperty("journal_mode", "WAL");
+        config.addDataSourceProperty("synchronous", DialectSupport.getString(settings, "synchronous", "NORMAL"));
+    }
+
+    @Override
+    public void configureReader(HikariConfig config, ConfigurationSection settings) {
+        config.addDataSourceProperty("open_mode", SQLITE_OPEN_READONLY);
+    }
+
+    @Override
+    public List<Migration> migrations(int priceScale) {
+        return Migrations.sqlite(priceScale);
+    }
+
+    @Override
+    public String upsert(String table, List<String> keyColumns, List<String> columns) {
+        StringBuilder sql = DialectSupport.insertInto(table, columns).append(" ON CONFLICT(").append(String.join(", ", keyColumns)).append(") DO ");
+        List<String> updated = DialectSupport.nonKeyColumns(keyColumns, columns);
+        if (updated.isEmpty()) {
+            return sql.append("NOTHING").toString();
+        }
+        sql.append("UPDATE SET ");
+        for (int i = 0; i < updated.size(); i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(updated.get(i)).append(" = excluded.").append(updated.get(i));
+        }
+        return sql.toString();
+    }
+
+    // NOCASE is served by idx_mp_items_name_nocase
+    @Override
+    public String equalsIgnoreCase(String column) {
+        return column + " = ? COLLATE NOCASE";
+    }
+
+    // One writer connection per database file: transactions are already serialized
+    @Override
+    public String forUpdate() {
+        return "";
+    }
+
+    @Override
+    public void beforeClose(Connection conn) throws SQLException {
+        // Let SQLite refresh query planner statistics for the next start
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA optimize");
+        }
+    }
+}
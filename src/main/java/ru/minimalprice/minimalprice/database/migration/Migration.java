@@ -0,0 +1,53 @@
+package ru.minimalprice.minimalprice.database.migration;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * One schema change. Versions are applied in ascending order, each inside its own
+ * transaction together with its schema_version row, so a failed migration leaves no trace.
+ */
+public interface Migration {
+
+    int getVersion();
+
+    String getDescription();
+
+    void migrate(Connection conn) throws SQLException;
+
+    // Migration consisting of plain SQL statements
+    static Migration sql(int version, String description, String... statements) {
+        return of(version, description, conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                for (String sql : statements) {
+                    stmt.execute(sql);
+                }
+            }
+        });
+    }
+
+    static Migration of(int version, String description, Step step) {
+        return new Migration() {
+            @Override
+            public int getVersion() {
+                return version;
+            }
+
+            @Override
+            public String getDescription() {
+                return description;
+            }
+
+            @Override
+            public void migrate(Connection conn) throws SQLException {
+                step.run(conn);
+            }
+        };
+    }
+
+    @FunctionalInterface
+    interface Step {
+        void run(Connection conn) throws SQLException;
+    }
+}
@@ -0,0 +1,80 @@
+package ru.minimalprice.minimalprice.database.migration;
+
+import ru.minimalprice.minimalprice.database.DatabaseManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Applies pending migrations at startup and records them in schema_version.
+ */
+public class MigrationRunner {
+
+    private final DatabaseManager databaseManager;
+    private final Logger logger;
+
+    public MigrationRunner(DatabaseManager databaseManager, Logger logger) {
+        this.databaseManager = databaseManager;
+        this.logger = logger;
+    }
+
+    // Returns the schema version after all pending migrations were applied
+    public int migrate(List<Migration> migrations) throws SQLException {
+        createVersionTable();
+
+        List<Migration> ordered = new ArrayList<>(migrations);
+        ordered.sort(Comparator.comparingInt(Migration::getVersion));
+
+        int current = getCurrentVersion();
+        for (Migration migration : ordered) {
+            if (migration.getVersion() <= current) continue;
+
+            long start = System.nanoTime();
+            databaseManager.inTransaction(conn -> {
+                migration.migrate(conn);
+                recordVersion(conn, migration);
+                return null;
+            });
+            current = migration.getVersion();
+            logger.info(String.format("Applied schema migration %d (%s) in %.1f ms",
+                    migration.getVersion(), migration.getDescription(), (System.nanoTime() - start) / 1_000_000.0));
+        }
+        return current;
+    }
+
+    private void createVersionTable() throws SQLException {
+        try (Connection conn = databaseManager.getWriteConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "version INTEGER PRIMARY KEY," +
+                    "description VARCHAR(255) NOT NULL," +
+                    "applied_at BIGINT NOT NULL" +
+                    ")");
+        }
+    }
+
+    private int getCurrentVersion() throws SQLException {
+        try (Connection conn = databaseManager.getWriteConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private void recordVersion(Connection conn, Migration migration) throws SQLException {
+        String sql = "INSERT INTO schema_version (version, description, applied_at) VALUES (?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, migration.getVersion());
+            stmt.setString(2, migration.getDescription());
+            stmt.setLong(3, System.currentTimeMillis());
+            stmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package ru.minimalprice.minimalprice.database.migration;
+
+import java.util.List;
+
+// Ordered schema history per backend. Never edit a released migration; append a new one instead,
+// with the same version number for every backend.
+public final class Migrations {
+
+    private Migrations() {
+    }
+
+    /**
+     * @param priceScale fraction digits used when prices are first converted to minor units;
+     *                   afterwards the scale recorded in mp_meta is authoritative
+     */
+    public static List<Migration> sqlite(int priceScale) {
+        return List.of(
+                // Baseline: IF NOT EXISTS keeps it a no-op on databases created before migrations existed
+                Migration.sql(1, "Create price tables",
+                        "CREATE TABLE IF NOT EXISTS mp_categories (" +
+                                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                                "name VARCHAR(255) NOT NULL UNIQUE" +
+                                ")",
+                        "CREATE TABLE IF NOT EXISTS mp_items (" +
+                                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                                "category_id INTEGER NOT NULL," +
+                                "name VARCHAR(255) NOT NULL," +
+                                "price DOUBLE NOT NULL," +
+                                "FOREIGN KEY(category_id) REFERENCES mp_categories(id) ON DELETE CASCADE ON UPDATE CASCADE," +
+                                "UNIQUE(category_id, name)" +
+                                ")"),
+
+                // Discord feature: Category Name -> Thread ID & Message ID
+                Migration.sql(2, "Create Discord sync table",
+                        "CREATE TABLE IF NOT EXISTS discord_sync (" +
+                                "category_name VARCHAR(255) PRIMARY KEY, " +
+                                "thread_id VARCHAR(255) NOT NULL, " +
+                                "message_id VARCHAR(255) NOT NULL" +
+                                ")"),
+
+                // Product lookups by name are case-insensitive (rename, commands);
+                // category listings read items of one category, optionally by price
+                Migration.sql(3, "Add item name and category/price indexes",
+                        "CREATE INDEX IF NOT EXISTS idx_mp_items_name_nocase ON mp_items (name COLLATE NOCASE)",
+                        "CREATE INDEX IF NOT EXISTS idx_mp_items_category_price ON mp_items (category_id, price)"),
+
+                // SQLite cannot change a column type in place, so mp_items is rebuilt with price as minor units
+                Migration.sql(4, "Store prices as exact integer minor units",
+                        "CREATE TABLE IF NOT EXISTS mp_meta (" +
+                                "meta_key VARCHAR(64) PRIMARY KEY," +
+                                "meta_value VARCHAR(255) NOT NULL" +
+                                ")",
+                        "INSERT OR REPLACE INTO mp_meta (meta_key, meta_value) VALUES ('price_scale', '" + priceScale + "')",
+                        "CREATE TABLE mp_items_v4 (" +
+                                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                                "category_id INTEGER NOT NULL," +
+                                "name VARCHAR(255) NOT NULL," +
+                                "price INTEGER NOT NULL," +
+                                "FOREIGN KEY(category_id) REFERENCES mp_categories(id) ON DELETE CASCADE ON UPDATE CASCADE," +
+                                "UNIQUE(category_id, name)" +
+                                ")",
+                        "INSERT INTO mp_items_v4 (id, category_id, name, price) " +
+                                "SELECT id, category_id, name, CAST(ROUND(price * " + pow10(priceScale) + ") AS INTEGER) FROM mp_items",
+                        "DROP TABLE mp_items",
+                        "ALTER TABLE mp_items_v4 RENAME TO mp_items",
+                        "CREATE INDEX idx_mp_items_name_nocase ON mp_items (name COLLATE NOCASE)",
+                        "CREATE INDEX idx_mp_items_category_price ON mp_items (category_id, price)"),
+
+                // Append-only price log plus hourly/daily aggregates. Raw rows are marked rolled_up once folded
+                // into the aggregates and only compacted after that, in whatever order rows of several servers commit.
+                // Current prices are seeded as the first sample so existing items have a starting point.
+                Migration.sql(5, "Create price history and rollup tables",
+                        "CREATE TABLE mp_price_history (" +
+                                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                                "item_id INTEGER NOT NULL," +
+                                "price INTEGER NOT NULL," +
+                                "recorded_at INTEGER NOT NULL," +
+                                "rolled_up INTEGER NOT NULL DEFAULT 0," +
+                                "FOREIGN KEY(item_id) REFERENCES mp_items(id) ON DELETE CASCADE" +
+                                ")",
+                        "CREATE INDEX idx_mp_price_history_recorded_at ON mp_price_history (recorded_at)",
+                        "CREATE INDEX idx_mp_price_history_pending ON mp_price_history (rolled_up, id)",
+                        "CREATE TABLE mp_price_rollup (" +
+                                "item_id INTEGER NOT NULL," +
+                                "resolution VARCHAR(8) NOT NULL," +
+                                "bucket_start INTEGER NOT NULL," +
+                                "min_price INTEGER NOT NULL," +
+                                "max_price INTEGER NOT NULL," +
+                                "sum_price INTEGER NOT NULL," +
+                                "sample_count INTEGER NOT NULL," +
+                                "last_price INTEGER NOT NULL," +
+                                "last_at INTEGER NOT NULL," +
+                                "PRIMARY KEY(item_id, resolution, bucket_start)," +
+                                "FOREIGN KEY(item_id) REFERENCES mp_items(id) ON DELETE CASCADE" +
+                                ") WITHOUT ROWID",
+                        "INSERT INTO mp_price_history (item_id, price, recorded_at) " +
+                                "SELECT id, price, CAST(strftime('%s', 'now') AS INTEGER) * 1000 FROM mp_items"),
+
+                // Every catalog mutation, in commit order, for servers sharing the database; pruned by age
+                Migration.sql(6, "Create catalog change log",
+                        "CREATE TABLE mp_changelog (" +
+                                "seq INTEGER PRIMARY KEY AUTOINCREMENT," +
+                                "kind VARCHAR(16) NOT NULL," +
+                                "origin VARCHAR(36) NOT NULL," +
+                                "category_id INTEGER," +
+                                "item_id INTEGER," +
+                                "name VARCHAR(255)," +
+                                "old_name VARCHAR(255)," +
+                                "price INTEGER," +
+                                "created_at INTEGER NOT NULL" +
+                                ")",
+                        "CREATE INDEX idx_mp_changelog_created_at ON mp_changelog (created_at)"),
+
+                // Price alerts per player and item (lower-cased); fired_* is set once an alert waits for delivery
+                Migration.sql(7, "Create price watch table",
+                        "CREATE TABLE mp_watch (" +
+                                "player_uuid VARCHAR(36) NOT NULL," +
+                                "item_key VARCHAR(255) NOT NULL," +
+                                "item_name VARCHAR(255) NOT NULL," +
+                                "threshold INTEGER NOT NULL," +
+                                "created_at INTEGER NOT NULL," +
+                                "fired_category VARCHAR(255)," +
+                                "fired_price INTEGER," +
+                                "fired_at INTEGER," +
+                                "PRIMARY KEY(player_uuid, item_key)" +
+                                ") WITHOUT ROWID")
+        );
+    }
+
+    public static List<Migration> mysql(int priceScale) {
+        // Binary collation keeps names case-sensitive and unique exactly as on SQLite
+        return serverSchema(priceScale, "INT AUTO_INCREMENT", "BIGINT AUTO_INCREMENT",
+                " ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_bin");
+    }
+
+    public static List<Migration> h2(int priceScale) {
+        return serverSchema(priceScale, "INTEGER GENERATED BY DEFAULT AS IDENTITY",
+                "BIGINT GENERATED BY DEFAULT AS IDENTITY", "");
+    }
+
+    /**
+     * MySQL/MariaDB and H2 start at the current layout (prices already in minor units), so their
+     * history is shorter than SQLite's but keeps the same version numbers.
+     * MySQL commits DDL implicitly: a migration that fails halfway is not rolled back there.
+     */
+    private static List<Migration> serverSchema(int priceScale, String identity, String bigIdentity, String tableOptions) {
+        return List.of(
+                Migration.sql(1, "Create price tables",
+                        "CREATE TABLE IF NOT EXISTS mp_categories (" +
+                                "id " + identity + " PRIMARY KEY," +
+                                "name VARCHAR(255) NOT NULL UNIQUE" +
+                                ")" + tableOptions,
+                        "CREATE TABLE IF NOT EXISTS mp_items (" +
+                                "id " + identity + " PRIMARY KEY," +
+                                "category_id INTEGER NOT NULL," +
+                                "name VARCHAR(255) NOT NULL," +
+                                "price BIGINT NOT NULL," +
+                                "FOREIGN KEY(category_id) REFERENCES mp_categories(id) ON DELETE CASCADE ON UPDATE CASCADE," +
+                                "UNIQUE(category_id, name)" +
+                                ")" + tableOptions),
+
+                Migration.sql(2, "Create Discord sync table",
+                        "CREATE TABLE IF NOT EXISTS discord_sync (" +
+                                "category_name VARCHAR(255) PRIMARY KEY, " +
+                                "thread_id VARCHAR(255) NOT NULL, " +
+                                "message_id VARCHAR(255) NOT NULL" +
+                                ")" + tableOptions),
+
+                // Exact name lookups (rename) use idx_mp_items_name. Case-insensitive ones (history, see the dialects)
+                // compare name_key, an indexed lower-case copy: LOWER(name) in a predicate could not use an index.
+                Migration.sql(3, "Add item name and category/price indexes",
+                        "ALTER TABLE mp_items ADD COLUMN name_key VARCHAR(255) GENERATED ALWAYS AS (LOWER(name))",
+                        "CREATE INDEX idx_mp_items_name ON mp_items (name)",
+                        "CREATE INDEX idx_mp_items_name_key ON mp_items (name_key)",
+                        "CREATE INDEX idx_mp_items_category_price ON mp_items (category_id, price)"),
+
+                Migration.sql(4, "Record the price scale",
+                        "CREATE TABLE IF NOT EXISTS mp_meta (" +
+                                "meta_key VARCHAR(64) PRIMARY KEY," +
+                                "meta_value VARCHAR(255) NOT NULL" +
+                                ")" + tableOptions,
+                        "INSERT INTO mp_meta (meta_key, meta_value) VALUES ('price_scale', '" + priceScale + "')"),
+
+                // The lock row exists up front so rollup passes of several servers can lock it with SELECT ... FOR UPDATE
+                Migration.sql(5, "Create price history and rollup tables",
+                        "CREATE TABLE IF NOT EXISTS mp_price_history (" +
+                                "id " + bigIdentity + " PRIMARY KEY," +
+                                "item_id INTEGER NOT NULL," +
+                                "price BIGINT NOT NULL," +
+                                "recorded_at BIGINT NOT NULL," +
+                                "rolled_up SMALLINT NOT NULL DEFAULT 0," +
+                                "FOREIGN KEY(item_id) REFERENCES mp_items(id) ON DELETE CASCADE" +
+                                ")" + tableOptions,
+                        "CREATE INDEX idx_mp_price_history_recorded_at ON mp_price_history (recorded_at)",
+                        "CREATE INDEX idx_mp_price_history_pending ON mp_price_history (rolled_up, id)",
+                        "CREATE TABLE IF NOT EXISTS mp_price_rollup (" +
+                                "item_id INTEGER NOT NULL," +
+                                "resolution VARCHAR(8) NOT NULL," +
+                                "bucket_start BIGINT NOT NULL," +
+                                "min_price BIGINT NOT NULL," +
+                                "max_price BIGINT NOT NULL," +
+                                "sum_price BIGINT NOT NULL," +
+                                "sample_count BIGINT NOT NULL," +
+                                "last_price BIGINT NOT NULL," +
+                                "last_at BIGINT NOT NULL," +
+                                "PRIMARY KEY(item_id, resolution, bucket_start)," +
+                                "FOREIGN KEY(item_id) REFERENCES mp_items(id) ON DELETE CASCADE" +
+                                ")" + tableOptions,
+                        "INSERT INTO mp_meta (meta_key, meta_value) VALUES ('history_rollup_lock', '0')"),
+
+                Migration.sql(6, "Create catalog change log",
+                        "CREATE TABLE IF NOT EXISTS mp_changelog (" +
+                                "seq " + bigIdentity + " PRIMARY KEY," +
+                                "kind VARCHAR(16) NOT NULL," +
+                                "origin VARCHAR(36) NOT NULL," +
+                                "category_id INTEGER," +
+                                "item_id INTEGER," +
+                                "name VARCHAR(255)," +
+                                "old_name VARCHAR(255)," +
+                                "price BIGINT," +
+                                "created_at BIGINT NOT NULL" +
+                                ")" + tableOptions,
+                        "CREATE INDEX idx_mp_changelog_created_at ON mp_changelog (created_at)"),
+
+                Migration.sql(7, "Create price watch table",
+                        "CREATE TABLE IF NOT EXISTS mp_watch (" +
+                                "player_uuid VARCHAR(36) NOT NULL," +
+                                "item_key VARCHAR(255) NOT NULL," +
+                                "item_name VARCHAR(255) NOT NULL," +
+                                "threshold BIGINT NOT NULL," +
+                                "created_at BIGINT NOT NULL," +
+                                "fired_category VARCHAR(255)," +
+                                "fired_price BIGINT," +
+                                "fired_at BIGINT," +
+                                "PRIMARY KEY(player_uuid, item_key)" +
+                                ")" + tableOptions)
+        );
+    }
+
+    private static long pow10(int scale) {
+        long value = 1;
+        for (int i = 0; i < scale; i++) {
+            value *= 10;
+        }
+        return value;
+    }
+}
@@ -3,6 +3,7 @@ package ru.minimalprice.minimalprice.features.discord;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.bukkit.Bukkit;
 import org.bukkit.event.EventHandler;
@@ -12,29 +13,41 @@ import com.google.gson.JsonObject;
 
 import github.scarsz.discordsrv.DiscordSRV;
 import ru.minimalprice.minimalprice.MinimalPrice;
+import ru.minimalprice.minimalprice.database.DatabaseManager;
+import ru.minimalprice.minimalprice.database.StorageExecutor;
 import ru.minimalprice.minimalprice.features.discord.storage.DiscordRepository;
 import ru.minimalprice.minimalprice.features.price.PriceManager;
+import ru.minimalprice.minimalprice.features.price.cache.CatalogSnapshot;
+import ru.minimalprice.minimalprice.features.price.cache.CategoryOrder;
+import ru.minimalprice.minimalprice.features.price.cache.CategoryStatistics;
+import ru.minimalprice.minimalprice.features.price.cache.ProductColumns;
+import ru.minimalprice.minimalprice.features.price.events.CatalogImportEvent;
 import ru.minimalprice.minimalprice.features.price.events.CategoryCreateEvent;
 import ru.minimalprice.minimalprice.features.price.events.CategoryRenameEvent;
 import ru.minimalprice.minimalprice.features.price.events.ProductRenameEvent;
 import ru.minimalprice.minimalprice.features.price.events.ProductUpdateEvent;
-import ru.minimalprice.minimalprice.features.price.models.Product;
+import ru.minimalprice.minimalprice.features.price.models.MoneyFormat;
+import ru.minimalprice.minimalprice.features.price.models.SortOrder;
 
 public class DiscordManager implements Listener {
 
     private final MinimalPrice plugin;
     private final DiscordRepository repository;
+    private final StorageExecutor storage;
     private final PriceManager priceManager;
     private final String forumChannelId;
     private DiscordRestUtil restUtil;
 
-    public DiscordManager(MinimalPrice plugin, PriceManager priceManager, String databasePath) {
+    public DiscordManager(MinimalPrice plugin, PriceManager priceManager, DatabaseManager databaseManager, StorageExecutor storage) {
         this.plugin = plugin;
+        this.storage = storage;
         this.priceManager = priceManager;
-        this.repository = new DiscordRepository(databasePath);
+        this.repository = new DiscordRepository(databaseManager);
         this.forumChannelId = plugin.getConfig().getString("discord_forum_channel_id");
 
         plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        // The sync mapping follows the category name in the same transaction as the rename itself
+        priceManager.addCategoryRenameHook(repository::renameSyncData);
         
         initializeDiscordSync();
     }
@@ -67,9 +80,12 @@ public class DiscordManager implements Listener {
                  priceManager.getInitFuture().thenRun(() -> {
                      plugin.getLogger().info("PriceManager ready! Initializing DiscordRestUtil...");
                      restUtil = new DiscordRestUtil(plugin);
-                     performStartupCleanup();
-                     initialized = true;
-                     initializing.set(false); // Reset just in case, though initialized=true prevents re-entry
+                     // Off the storage thread that completed the init future: the cleanup sleeps and waits for writes
+                     Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+                         performStartupCleanup();
+                         initialized = true;
+                         initializing.set(false); // Reset just in case, though initialized=true prevents re-entry
+                     });
                  });
              }
          }, 100L, 60L);
@@ -89,7 +105,7 @@ public class DiscordManager implements Listener {
                 // Using REST to delete channel (thread)
                 restUtil.deleteChannel(threadId);
                 
-                repository.deleteSyncData(entry.getKey());
+                deleteSyncData(entry.getKey()).join();
                 
                 // Rate limit prevention
                 try { Thread.sleep(200); } catch (InterruptedException ignored) {}
@@ -106,13 +122,30 @@ public class DiscordManager implements Listener {
             
             plugin.getLogger().info("Discord Forum cleanup complete.");
             
-        } catch (SQLException e) {
+        } catch (SQLException | RuntimeException e) {
             e.printStackTrace();
         }
     }
 
-    public void close() {
-        repository.close();
+    // Sync rows are written on the storage writer like every other write
+    private CompletableFuture<Void> deleteSyncData(String categoryName) {
+        return storage.runInternalWrite(() -> {
+            try {
+                repository.deleteSyncData(categoryName);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    private CompletableFuture<Void> saveSyncData(String categoryName, String threadId, String messageId) {
+        return storage.runInternalWrite(() -> {
+            try {
+                repository.saveSyncData(categoryName, threadId, messageId);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
     }
 
     @EventHandler
@@ -125,6 +158,21 @@ public class DiscordManager implements Listener {
         updateCategoryPost(event.getCategoryName());
     }
     
+    @EventHandler
+    public void onCatalogImport(CatalogImportEvent event) {
+        // One post per touched category; paced like the startup sync to stay clear of rate limits
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            for (String categoryName : event.getCreatedCategories()) {
+                createForumPostForCategory(categoryName);
+                try { Thread.sleep(1000); } catch (InterruptedException ignored) {}
+            }
+            for (String categoryName : event.getUpdatedCategories()) {
+                updateCategoryPost(categoryName);
+                try { Thread.sleep(200); } catch (InterruptedException ignored) {}
+            }
+        });
+    }
+
     @EventHandler
     public void onCategoryRename(CategoryRenameEvent event) {
          updateCategoryPostTitle(event.getOldName(), event.getNewName());
@@ -149,35 +197,30 @@ public class DiscordManager implements Listener {
             try {
                 if (repository.getSyncData(categoryName) != null) return;
 
-                // Find Category ID to get products
-                int categoryId = -1;
-                for (ru.minimalprice.minimalprice.features.price.models.Category cat : priceManager.getCategories()) {
-                    if (cat.getName().equals(categoryName)) {
-                        categoryId = cat.getId();
-                        break;
-                    }
-                }
+                // Find Category ID to get products (both from the same catalog generation)
+                CatalogSnapshot snapshot = priceManager.getSnapshot();
+                ru.minimalprice.minimalprice.features.price.models.Category category = snapshot.findCategory(categoryName);
+                int categoryId = category != null ? category.getId() : -1;
                 
-                List<Product> products = (categoryId != -1) ? priceManager.getProducts(categoryId) : List.of();
+                int productCount = snapshot.getColumns().rowEnd(categoryId) - snapshot.getColumns().rowStart(categoryId);
                 
                 // Logging for debug
-                if (products.isEmpty()) {
+                if (productCount == 0) {
                     plugin.getLogger().warning("Creating post for category '" + categoryName + "' but no products found (ID: " + categoryId + ")");
                 } else {
-                    plugin.getLogger().info("Creating post for category '" + categoryName + "' with " + products.size() + " products.");
+                    plugin.getLogger().info("Creating post for category '" + categoryName + "' with " + productCount + " products.");
                 }
 
                 JsonObject embed = null; // No embed
-                com.google.gson.JsonArray components = buildComponents(categoryName, products);
+                com.google.gson.JsonArray components = buildComponents(categoryName, snapshot, categoryId);
                 
                 restUtil.createForumPost(forumChannelId, categoryName, "", embed, components)
                     .thenAccept(result -> {
                         if (result != null) {
-                            try {
-                                repository.saveSyncData(categoryName, result.threadId, result.messageId);
-                            } catch (SQLException e) {
+                            saveSyncData(categoryName, result.threadId, result.messageId).exceptionally(e -> {
                                 e.printStackTrace();
-                            }
+                                return null;
+                            });
                         }
                     });
 
@@ -198,17 +241,13 @@ public class DiscordManager implements Listener {
                     return;
                 }
 
-                List<Product> products = null;
-                for (ru.minimalprice.minimalprice.features.price.models.Category cat : priceManager.getCategories()) {
-                    if (cat.getName().equals(categoryName)) {
-                        products = priceManager.getProducts(cat.getId());
-                        break;
-                    }
-                }
-                if (products == null) return;
+                CatalogSnapshot snapshot = priceManager.getSnapshot();
+                ru.minimalprice.minimalprice.features.price.models.Category category = snapshot.findCategory(categoryName);
+                int categoryId = category != null ? category.getId() : -1;
+                if (categoryId == -1) return;
 
                 JsonObject embed = null; // No embed
-                com.google.gson.JsonArray components = buildComponents(categoryName, products);
+                com.google.gson.JsonArray components = buildComponents(categoryName, snapshot, categoryId);
                 restUtil.updateMessage(syncData.threadId, syncData.messageId, embed, components);
 
             } catch (Exception e) {
@@ -222,14 +261,12 @@ public class DiscordManager implements Listener {
          
          Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
              try {
-                DiscordRepository.SyncData syncData = repository.getSyncData(oldName);
+                // Mapping was already moved to the new name by the rename transaction
+                DiscordRepository.SyncData syncData = repository.getSyncData(newName);
                 if (syncData == null) return;
                 
                 restUtil.updateThreadName(syncData.threadId, newName);
                 
-                repository.deleteSyncData(oldName);
-                repository.saveSyncData(newName, syncData.threadId, syncData.messageId);
-                
                 updateCategoryPost(newName);
                 
              } catch (Exception e) {
@@ -238,7 +275,13 @@ public class DiscordManager implements Listener {
          });
     }
 
-    private com.google.gson.JsonArray buildComponents(String categoryName, List<Product> products) {
+    // Reads rows straight from the snapshot's product columns
+    private com.google.gson.JsonArray buildComponents(String categoryName, CatalogSnapshot snapshot, int categoryId) {
+        ProductColumns columns = snapshot.getColumns();
+        int firstRow = columns.rowStart(categoryId);
+        int endRow = columns.rowEnd(categoryId);
+        int scale = snapshot.getPriceScale();
+
         // Root array
         com.google.gson.JsonArray components = new com.google.gson.JsonArray();
         
@@ -282,7 +325,19 @@ public class DiscordManager implements Listener {
         analysisText.addProperty("id", componentIdCounter++);
         StringBuilder analysisContent = new StringBuilder();
         analysisContent.append("## ").append(cm.getRawMessage("discord_market_analysis")).append("\n\n");
-        analysisContent.append("**").append(cm.getRawMessage("discord_total_positions").replace("%count%", String.valueOf(products.size()))).append("**");
+        analysisContent.append("**").append(cm.getRawMessage("discord_total_positions").replace("%count%", String.valueOf(endRow - firstRow))).append("**");
+        // Maintained with every catalog delta, no sorting here; same generation as the rows below
+        CategoryStatistics stats = snapshot.getStatistics(categoryId);
+        if (!stats.isEmpty()) {
+            analysisContent.append("\n").append(cm.getRawMessage("discord_price_stats")
+                    .replace("%min%", MoneyFormat.format(stats.minMinor(), scale))
+                    .replace("%p25%", MoneyFormat.format(stats.percentileMinor(25), scale))
+                    .replace("%median%", MoneyFormat.format(stats.medianMinor(), scale))
+                    .replace("%p75%", MoneyFormat.format(stats.percentileMinor(75), scale))
+                    .replace("%max%", MoneyFormat.format(stats.maxMinor(), scale))
+                    .replace("%mean%", MoneyFormat.format(stats.meanMinor(), scale))
+                    .replace("%currency%", currency));
+        }
         analysisText.addProperty("content", analysisContent.toString());
         innerComponents.add(analysisText);
         
@@ -295,7 +350,7 @@ public class DiscordManager implements Listener {
         innerComponents.add(sep2);
         
         // 6. Products
-        if (products.isEmpty()) {
+        if (firstRow == endRow) {
              JsonObject emptyText = new JsonObject();
              emptyText.addProperty("type", 10);
              emptyText.addProperty("id", componentIdCounter++);
@@ -309,23 +364,35 @@ public class DiscordManager implements Listener {
             // NOTE: max components in a container? 
             // User JSON shows flat list inside container.
             
-            for (Product p : products) {
+            // Template split once around %price% so each price is appended as digits, not as a String
+            String priceTemplate = cm.getRawMessage("discord_price_block").replace("%currency%", currency);
+            int priceAt = priceTemplate.indexOf("%price%");
+
+            // Precomputed permutation of the category's rows, no sorting per render
+            SortOrder order = SortOrder.fromKey(plugin.getConfig().getString("discord_sort", "price"));
+            if (order == null) order = SortOrder.PRICE;
+            CategoryOrder rows = snapshot.getOrder(categoryId);
+
+            for (int i = 0; i < rows.size(); i++) {
+                int row = firstRow + rows.offset(order, i);
                 // Product Text (Type 10)
                 JsonObject productText = new JsonObject();
                 productText.addProperty("type", 10);
                 productText.addProperty("id", componentIdCounter++);
                 
                 StringBuilder content = new StringBuilder();
-                content.append("**").append(p.getName()).append("**\n");
+                content.append("**").append(columns.productName(row)).append("**\n");
                 
-                String priceLine = cm.getRawMessage("discord_price_block")
-                        .replace("%price%", String.valueOf(p.getPrice()))
-                        .replace("%currency%", currency);
-                
-                // Assuming priceLine is like "Price: 20"
+                // Assuming the price block is like "Price: 20"
                 // User JSON has: "**Item**\n🟢 20.0 Cap\n🔴 20.0 Cap"
                 // Our config might just have the price.
-                content.append(priceLine);
+                if (priceAt < 0) {
+                    content.append(priceTemplate);
+                } else {
+                    content.append(priceTemplate, 0, priceAt);
+                    MoneyFormat.appendTo(content, columns.priceMinor(row), scale);
+                    content.append(priceTemplate, priceAt + "%price%".length(), priceTemplate.length());
+                }
                 
                 productText.addProperty("content", content.toString());
                 innerComponents.add(productText);
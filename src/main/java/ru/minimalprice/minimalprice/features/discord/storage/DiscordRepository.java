@@ -1,48 +1,27 @@
 package ru.minimalprice.minimalprice.features.discord.storage;
 
-import com.zaxxer.hikari.HikariConfig;
-import com.zaxxer.hikari.HikariDataSource;
+import ru.minimalprice.minimalprice.database.DatabaseManager;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.List;
 
+// Table discord_sync is created by DatabaseManager alongside the price tables
 public class DiscordRepository {
 
-    private final HikariDataSource dataSource;
+    private final DatabaseManager databaseManager;
 
-    public DiscordRepository(String databasePath) {
-        HikariConfig config = new HikariConfig();
-        config.setJdbcUrl("jdbc:sqlite:" + databasePath);
-        config.setMaximumPoolSize(5); 
-
-        this.dataSource = new HikariDataSource(config);
-        
-        createTables();
-    }
-
-    private void createTables() {
-        try (Connection conn = dataSource.getConnection();
-             Statement stmt = conn.createStatement()) {
-            
-            // Table for mapping Category Name -> Thread ID & Message ID
-            stmt.execute("CREATE TABLE IF NOT EXISTS discord_sync (" +
-                    "category_name VARCHAR(255) PRIMARY KEY, " +
-                    "thread_id VARCHAR(255) NOT NULL, " +
-                    "message_id VARCHAR(255) NOT NULL" +
-                    ")");
-                    
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+    public DiscordRepository(DatabaseManager databaseManager) {
+        this.databaseManager = databaseManager;
     }
     
     // Get sync info
     public SyncData getSyncData(String categoryName) throws SQLException {
         String sql = "SELECT thread_id, message_id FROM discord_sync WHERE category_name = ?";
-        try (Connection conn = dataSource.getConnection();
+        try (Connection conn = databaseManager.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, categoryName);
             try (ResultSet rs = pstmt.executeQuery()) {
@@ -56,9 +35,15 @@ public class DiscordRepository {
     
     // Set sync info
     public void saveSyncData(String categoryName, String threadId, String messageId) throws SQLException {
-        String sql = "INSERT OR REPLACE INTO discord_sync (category_name, thread_id, message_id) VALUES (?, ?, ?)";
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (Connection conn = databaseManager.getWriteConnection()) {
+            saveSyncData(conn, categoryName, threadId, messageId);
+        }
+    }
+
+    public void saveSyncData(Connection conn, String categoryName, String threadId, String messageId) throws SQLException {
+        String sql = databaseManager.getDialect().upsert("discord_sync",
+                List.of("category_name"), List.of("category_name", "thread_id", "message_id"));
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, categoryName);
             pstmt.setString(2, threadId);
             pstmt.setString(3, messageId);
@@ -67,18 +52,33 @@ public class DiscordRepository {
     }
     
     public void deleteSyncData(String categoryName) throws SQLException {
+        try (Connection conn = databaseManager.getWriteConnection()) {
+            deleteSyncData(conn, categoryName);
+        }
+    }
+
+    public void deleteSyncData(Connection conn, String categoryName) throws SQLException {
         String sql = "DELETE FROM discord_sync WHERE category_name = ?";
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
              pstmt.setString(1, categoryName);
              pstmt.executeUpdate();
         }
     }
+
+    // Moves the mapping to the new category name; used inside the category rename transaction
+    public void renameSyncData(Connection conn, String oldName, String newName) throws SQLException {
+        String sql = "UPDATE discord_sync SET category_name = ? WHERE category_name = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, newName);
+            pstmt.setString(2, oldName);
+            pstmt.executeUpdate();
+        }
+    }
     
     public java.util.Map<String, SyncData> getAllSyncData() throws SQLException {
         java.util.Map<String, SyncData> result = new java.util.HashMap<>();
         String sql = "SELECT category_name, thread_id, message_id FROM discord_sync";
-        try (Connection conn = dataSource.getConnection();
+        try (Connection conn = databaseManager.getConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             while (rs.next()) {
@@ -88,12 +88,6 @@ public class DiscordRepository {
         }
         return result;
     }
-    
-    public void close() {
-        if (dataSource != null) {
-            dataSource.close();
-        }
-    }
 
     public static class SyncData {
         public final String threadId;
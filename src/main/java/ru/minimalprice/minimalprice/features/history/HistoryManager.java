@@ -0,0 +1,105 @@
+package ru.minimalprice.minimalprice.features.history;
+
+import ru.minimalprice.minimalprice.MinimalPrice;
+import ru.minimalprice.minimalprice.database.StorageExecutor;
+import ru.minimalprice.minimalprice.features.history.models.HistoryResolution;
+import ru.minimalprice.minimalprice.features.history.models.PriceBucket;
+import ru.minimalprice.minimalprice.features.history.storage.HistoryRepository;
+import ru.minimalprice.minimalprice.features.price.PriceManager;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+public class HistoryManager {
+
+    // Raw rows folded per rollup transaction; keeps the writer free for price updates in between
+    private static final int ROLLUP_BATCH_SIZE = 5000;
+
+    private final MinimalPrice plugin;
+    private final HistoryRepository repository;
+    private final StorageExecutor storage;
+    private final AtomicBoolean maintaining = new AtomicBoolean();
+
+    public HistoryManager(MinimalPrice plugin, PriceManager priceManager, HistoryRepository repository, StorageExecutor storage) {
+        this.plugin = plugin;
+        this.repository = repository;
+        this.storage = storage;
+        // Every committed price write is logged in the same transaction
+        priceManager.addProductWriteHook(repository::recordPrices);
+    }
+
+    // Rolls up new raw rows, then compacts what is old enough. Every step is an internal write on the
+    // storage writer, one rollup batch at a time, so price updates get in between. Skipped while a run is going.
+    public void runMaintenance() {
+        if (!maintaining.compareAndSet(false, true)) {
+            return;
+        }
+        long start = System.nanoTime();
+        rollUp(0L).thenCompose(rolled -> storage.runInternalWrite(() -> compact(rolled, start)))
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        plugin.getLogger().log(Level.WARNING, "Price history maintenance failed", error);
+                    }
+                    maintaining.set(false);
+                });
+    }
+
+    private CompletableFuture<Long> rollUp(long rolledSoFar) {
+        return storage.supplyInternalWrite(() -> {
+            try {
+                return repository.rollUp(ROLLUP_BATCH_SIZE);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }).thenCompose(batch -> batch == ROLLUP_BATCH_SIZE
+                ? rollUp(rolledSoFar + batch)
+                : CompletableFuture.completedFuture(rolledSoFar + batch));
+    }
+
+    private void compact(long rolled, long start) {
+        try {
+            long now = System.currentTimeMillis();
+            long rawRetention = TimeUnit.HOURS.toMillis(plugin.getConfig().getLong("history.raw_retention_hours", 48L));
+            int compacted = repository.compactRaw(now - rawRetention);
+
+            long hourlyDays = plugin.getConfig().getLong("history.hourly_retention_days", 90L);
+            int expired = 0;
+            if (hourlyDays > 0) {
+                expired = repository.compactRollups(HistoryResolution.HOUR, now - TimeUnit.DAYS.toMillis(hourlyDays));
+            }
+
+            if (rolled > 0 || compacted > 0 || expired > 0) {
+                plugin.getLogger().info(String.format("Price history: rolled up %d rows, compacted %d raw rows, expired %d hourly buckets in %.2f ms",
+                        rolled, compacted, expired, (System.nanoTime() - start) / 1_000_000.0));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Buckets of the last configured period for every item with this name, oldest first.
+     * Completes with null when no such item exists.
+     */
+    public CompletableFuture<List<PriceBucket>> getHistory(String itemName, HistoryResolution resolution) {
+        return storage.supplyRead(() -> {
+            try {
+                List<Integer> itemIds = repository.findItemIds(itemName);
+                if (itemIds.isEmpty()) {
+                    return null;
+                }
+                long span = resolution == HistoryResolution.HOUR
+                        ? TimeUnit.HOURS.toMillis(plugin.getConfig().getLong("history.display_hours", 24L))
+                        : TimeUnit.DAYS.toMillis(plugin.getConfig().getLong("history.display_days", 7L));
+                long since = resolution.bucketStart(System.currentTimeMillis() - span);
+                return repository.getBuckets(itemIds, resolution, since);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+}
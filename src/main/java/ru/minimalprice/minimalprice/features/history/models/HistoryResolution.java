@@ -0,0 +1,37 @@
+package ru.minimalprice.minimalprice.features.history.models;
+
+// Width of a rollup bucket. Buckets are aligned to UTC epoch boundaries.
+public enum HistoryResolution {
+    HOUR("hour", 3_600_000L),
+    DAY("day", 86_400_000L);
+
+    private final String key;
+    private final long bucketMillis;
+
+    HistoryResolution(String key, long bucketMillis) {
+        this.key = key;
+        this.bucketMillis = bucketMillis;
+    }
+
+    // Value stored in mp_price_rollup.resolution and accepted by /minimal history
+    public String getKey() {
+        return key;
+    }
+
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+
+    public long bucketStart(long epochMillis) {
+        return Math.floorDiv(epochMillis, bucketMillis) * bucketMillis;
+    }
+
+    public static HistoryResolution fromKey(String key) {
+        for (HistoryResolution resolution : values()) {
+            if (resolution.key.equalsIgnoreCase(key)) {
+                return resolution;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,47 @@
+package ru.minimalprice.minimalprice.features.history.models;
+
+import ru.minimalprice.minimalprice.features.price.models.Money;
+
+// Aggregated prices of one product (or several merged) over one rollup bucket
+public class PriceBucket {
+    private final long bucketStart;
+    private final Money min;
+    private final Money max;
+    private final Money average;
+    private final Money last;
+    private final long sampleCount;
+
+    public PriceBucket(long bucketStart, Money min, Money max, Money average, Money last, long sampleCount) {
+        this.bucketStart = bucketStart;
+        this.min = min;
+        this.max = max;
+        this.average = average;
+        this.last = last;
+        this.sampleCount = sampleCount;
+    }
+
+    // Epoch millis of the bucket's first instant
+    public long getBucketStart() {
+        return bucketStart;
+    }
+
+    public Money getMin() {
+        return min;
+    }
+
+    public Money getMax() {
+        return max;
+    }
+
+    public Money getAverage() {
+        return average;
+    }
+
+    public Money getLast() {
+        return last;
+    }
+
+    public long getSampleCount() {
+        return sampleCount;
+    }
+}
@@ -0,0 +1,275 @@
+package ru.minimalprice.minimalprice.features.history.storage;
+
+import ru.minimalprice.minimalprice.database.DatabaseManager;
+import ru.minimalprice.minimalprice.database.dialect.SqlDialect;
+import ru.minimalprice.minimalprice.features.history.models.HistoryResolution;
+import ru.minimalprice.minimalprice.features.history.models.PriceBucket;
+import ru.minimalprice.minimalprice.features.price.models.Money;
+import ru.minimalprice.minimalprice.features.price.models.Product;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Raw price log (mp_price_history) and its hourly/daily aggregates (mp_price_rollup).
+ * <p>
+ * Raw rows are append-only. A rollup pass folds raw rows not yet marked rolled_up into the aggregates and
+ * marks them in the same transaction, so each row is counted once, whatever order rows of several servers
+ * commit in. Only marked rows are ever compacted away. Passes lock a row in mp_meta where the backend has
+ * row locks, so two servers sharing a database never merge into the same buckets at once.
+ */
+public class HistoryRepository {
+
+    // Row in mp_meta locked by every rollup pass (see migration 5)
+    private static final String LOCK_KEY = "history_rollup_lock";
+
+    private final DatabaseManager databaseManager;
+    private final SqlDialect dialect;
+    private final String upsertRollupSql;
+
+    public HistoryRepository(DatabaseManager databaseManager) {
+        this.databaseManager = databaseManager;
+        this.dialect = databaseManager.getDialect();
+        this.upsertRollupSql = dialect.upsert("mp_price_rollup", List.of("item_id", "resolution", "bucket_start"),
+                List.of("item_id", "resolution", "bucket_start", "min_price", "max_price", "sum_price", "sample_count", "last_price", "last_at"));
+    }
+
+    // Runs inside the price upsert transaction (see PriceManager#addProductWriteHook)
+    public void recordPrices(Connection conn, List<Product> stored) throws SQLException {
+        String sql = "INSERT INTO mp_price_history (item_id, price, recorded_at) VALUES (?, ?, ?)";
+        long now = System.currentTimeMillis();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (Product product : stored) {
+                stmt.setInt(1, product.getId());
+                stmt.setLong(2, product.getPrice().getMinor());
+                stmt.setLong(3, now);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    // Folds at most maxRows raw rows into every resolution. Returns the number of raw rows consumed.
+    public int rollUp(int maxRows) throws SQLException {
+        return databaseManager.inTransaction(conn -> {
+            lockRollups(conn);
+
+            Map<BucketKey, Accumulator> buckets = new LinkedHashMap<>();
+            List<Long> folded = new ArrayList<>();
+            String sql = "SELECT id, item_id, price, recorded_at FROM mp_price_history WHERE rolled_up = 0 ORDER BY id LIMIT ?";
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setInt(1, maxRows);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        int itemId = rs.getInt("item_id");
+                        long price = rs.getLong("price");
+                        long recordedAt = rs.getLong("recorded_at");
+                        for (HistoryResolution resolution : HistoryResolution.values()) {
+                            BucketKey key = new BucketKey(itemId, resolution, resolution.bucketStart(recordedAt));
+                            buckets.computeIfAbsent(key, k -> new Accumulator()).add(price, price, price, 1, price, recordedAt);
+                        }
+                        folded.add(rs.getLong("id"));
+                    }
+                }
+            }
+            if (folded.isEmpty()) {
+                return 0;
+            }
+
+            // Merging into an existing bucket keeps min/max/sum exact; the latest sample wins "last".
+            // Done in Java so the write is a plain upsert every backend can express.
+            mergeExisting(conn, buckets);
+            try (PreparedStatement stmt = conn.prepareStatement(upsertRollupSql)) {
+                for (Map.Entry<BucketKey, Accumulator> entry : buckets.entrySet()) {
+                    BucketKey key = entry.getKey();
+                    Accumulator acc = entry.getValue();
+                    stmt.setInt(1, key.itemId);
+                    stmt.setString(2, key.resolution.getKey());
+                    stmt.setLong(3, key.bucketStart);
+                    stmt.setLong(4, acc.min);
+                    stmt.setLong(5, acc.max);
+                    stmt.setLong(6, acc.sum);
+                    stmt.setLong(7, acc.count);
+                    stmt.setLong(8, acc.last);
+                    stmt.setLong(9, acc.lastAt);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+
+            try (PreparedStatement stmt = conn.prepareStatement("UPDATE mp_price_history SET rolled_up = 1 WHERE id = ?")) {
+                for (long id : folded) {
+                    stmt.setLong(1, id);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+            return folded.size();
+        });
+    }
+
+    // Deletes raw rows recorded before the cutoff that are already part of the rollups
+    public int compactRaw(long cutoffMillis) throws SQLException {
+        return databaseManager.inTransaction(conn -> {
+            String sql = "DELETE FROM mp_price_history WHERE recorded_at < ? AND rolled_up = 1";
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setLong(1, cutoffMillis);
+                return stmt.executeUpdate();
+            }
+        });
+    }
+
+    // Deletes buckets of one resolution that start before the cutoff
+    public int compactRollups(HistoryResolution resolution, long cutoffMillis) throws SQLException {
+        String sql = "DELETE FROM mp_price_rollup WHERE resolution = ? AND bucket_start < ?";
+        try (Connection conn = databaseManager.getWriteConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, resolution.getKey());
+            stmt.setLong(2, cutoffMillis);
+            return stmt.executeUpdate();
+        }
+    }
+
+    // Ids of every item with this name, in any category (case-insensitive, as defined by the dialect)
+    public List<Integer> findItemIds(String name) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        String sql = "SELECT id FROM mp_items WHERE " + dialect.equalsIgnoreCase("name");
+        try (Connection conn = databaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, name);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt("id"));
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Buckets of the given items from {@code since} on, oldest first. Reads only mp_price_rollup through its
+     * primary key, so the cost follows the number of buckets, not the number of raw samples.
+     * Buckets of several items (same name in different categories) are merged.
+     */
+    public List<PriceBucket> getBuckets(List<Integer> itemIds, HistoryResolution resolution, long since) throws SQLException {
+        Map<Long, Accumulator> merged = new LinkedHashMap<>();
+        String sql = "SELECT bucket_start, min_price, max_price, sum_price, sample_count, last_price, last_at " +
+                "FROM mp_price_rollup WHERE item_id = ? AND resolution = ? AND bucket_start >= ? ORDER BY bucket_start";
+        try (Connection conn = databaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int itemId : itemIds) {
+                stmt.setInt(1, itemId);
+                stmt.setString(2, resolution.getKey());
+                stmt.setLong(3, since);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        merged.computeIfAbsent(rs.getLong("bucket_start"), k -> new Accumulator()).add(
+                                rs.getLong("min_price"), rs.getLong("max_price"), rs.getLong("sum_price"),
+                                rs.getLong("sample_count"), rs.getLong("last_price"), rs.getLong("last_at"));
+                    }
+                }
+            }
+        }
+
+        int scale = databaseManager.getPriceScale();
+        List<PriceBucket> buckets = new ArrayList<>(merged.size());
+        for (Map.Entry<Long, Accumulator> entry : merged.entrySet()) {
+            Accumulator acc = entry.getValue();
+            long average = (acc.sum + acc.count / 2) / acc.count; // Prices are non-negative: rounds half up
+            buckets.add(new PriceBucket(entry.getKey(),
+                    Money.ofMinor(acc.min, scale),
+                    Money.ofMinor(acc.max, scale),
+                    Money.ofMinor(average, scale),
+                    Money.ofMinor(acc.last, scale),
+                    acc.count));
+        }
+        if (itemIds.size() > 1) {
+            buckets.sort((a, b) -> Long.compare(a.getBucketStart(), b.getBucketStart()));
+        }
+        return buckets;
+    }
+
+    // Adds the stored state of every touched bucket, one primary key lookup each
+    private void mergeExisting(Connection conn, Map<BucketKey, Accumulator> buckets) throws SQLException {
+        String sql = "SELECT min_price, max_price, sum_price, sample_count, last_price, last_at " +
+                "FROM mp_price_rollup WHERE item_id = ? AND resolution = ? AND bucket_start = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (Map.Entry<BucketKey, Accumulator> entry : buckets.entrySet()) {
+                BucketKey key = entry.getKey();
+                stmt.setInt(1, key.itemId);
+                stmt.setString(2, key.resolution.getKey());
+                stmt.setLong(3, key.bucketStart);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        entry.getValue().add(rs.getLong("min_price"), rs.getLong("max_price"), rs.getLong("sum_price"),
+                                rs.getLong("sample_count"), rs.getLong("last_price"), rs.getLong("last_at"));
+                    }
+                }
+            }
+        }
+    }
+
+    // Held until the transaction ends; a no-op where writes are serialized anyway (SQLite)
+    private void lockRollups(Connection conn) throws SQLException {
+        String sql = "SELECT meta_value FROM mp_meta WHERE meta_key = ?" + dialect.forUpdate();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, LOCK_KEY);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+            }
+        }
+    }
+
+    private static final class BucketKey {
+        private final int itemId;
+        private final HistoryResolution resolution;
+        private final long bucketStart;
+
+        private BucketKey(int itemId, HistoryResolution resolution, long bucketStart) {
+            this.itemId = itemId;
+            this.resolution = resolution;
+            this.bucketStart = bucketStart;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof BucketKey)) return false;
+            BucketKey other = (BucketKey) o;
+            return itemId == other.itemId && bucketStart == other.bucketStart && resolution == other.resolution;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(itemId, resolution, bucketStart);
+        }
+    }
+
+    // Running min/max/sum/count/last of one bucket, all prices in minor units
+    private static final class Accumulator {
+        private long min = Long.MAX_VALUE;
+        private long max = Long.MIN_VALUE;
+        private long sum;
+        private long count;
+        private long last;
+        private long lastAt = Long.MIN_VALUE;
+
+        private void add(long min, long max, long sum, long count, long last, long lastAt) {
+            this.min = Math.min(this.min, min);
+            this.max = Math.max(this.max, max);
+            this.sum += sum;
+            this.count += count;
+            if (lastAt >= this.lastAt) {
+                this.last = last;
+                this.lastAt = lastAt;
+            }
+        }
+    }
+}
@@ -1,28 +1,71 @@
 package ru.minimalprice.minimalprice.features.price;
 
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.jetbrains.annotations.NotNull;
 
 import net.kyori.adventure.text.Component;
 import ru.minimalprice.minimalprice.configuration.ConfigManager;
+import ru.minimalprice.minimalprice.database.StorageExecutor;
+import ru.minimalprice.minimalprice.features.history.HistoryManager;
+import ru.minimalprice.minimalprice.features.history.models.HistoryResolution;
+import ru.minimalprice.minimalprice.features.history.models.PriceBucket;
+import ru.minimalprice.minimalprice.features.price.cache.CatalogSnapshot;
 import ru.minimalprice.minimalprice.features.price.models.Category;
-import ru.minimalprice.minimalprice.features.price.models.Product;
+import ru.minimalprice.minimalprice.features.price.models.Money;
+import ru.minimalprice.minimalprice.features.price.models.MoneyFormat;
+import ru.minimalprice.minimalprice.features.price.models.SortOrder;
+import ru.minimalprice.minimalprice.features.price.storage.WriteBehindQueue;
+import ru.minimalprice.minimalprice.features.price.transfer.CatalogTransfer;
+import ru.minimalprice.minimalprice.features.price.view.CategoryPages;
+import ru.minimalprice.minimalprice.features.price.view.PriceMenu;
+import ru.minimalprice.minimalprice.features.search.SearchManager;
+import ru.minimalprice.minimalprice.features.watch.WatchManager;
+import ru.minimalprice.minimalprice.features.watch.models.PriceWatch;
+import ru.minimalprice.minimalprice.features.search.models.ProductMatch;
+import ru.minimalprice.minimalprice.features.search.models.SearchResult;
 
 public class PriceCommand implements CommandExecutor {
 
+    // Rollup buckets are UTC-aligned, so they are labelled in UTC as well
+    private static final DateTimeFormatter HOUR_LABEL = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:00").withZone(ZoneOffset.UTC);
+    private static final DateTimeFormatter DAY_LABEL = DateTimeFormatter.ofPattern("yyyy-MM-dd").withZone(ZoneOffset.UTC);
+
     private final JavaPlugin plugin;
     private final PriceManager priceManager;
     private final ConfigManager configManager;
+    private final HistoryManager historyManager;
+    private final CatalogTransfer catalogTransfer;
+    private final SearchManager searchManager;
+    private final CategoryPages categoryPages;
+    private final WatchManager watchManager;
+    private final PriceMenu priceMenu;
+    private final StorageExecutor storage;
 
-    public PriceCommand(JavaPlugin plugin, PriceManager priceManager, ConfigManager configManager) {
+    public PriceCommand(JavaPlugin plugin, PriceManager priceManager, ConfigManager configManager, HistoryManager historyManager,
+                        CatalogTransfer catalogTransfer, SearchManager searchManager, CategoryPages categoryPages,
+                        WatchManager watchManager, PriceMenu priceMenu, StorageExecutor storage) {
         this.plugin = plugin;
         this.priceManager = priceManager;
         this.configManager = configManager;
+        this.historyManager = historyManager;
+        this.catalogTransfer = catalogTransfer;
+        this.searchManager = searchManager;
+        this.categoryPages = categoryPages;
+        this.watchManager = watchManager;
+        this.priceMenu = priceMenu;
+        this.storage = storage;
     }
 
     @Override
@@ -30,10 +73,15 @@ public class PriceCommand implements CommandExecutor {
         // /price or /minimal without args
         if (command.getName().equalsIgnoreCase("price") || (args.length == 0)) {
             if (!sender.hasPermission("minimalprice.view")) {
-                sender.sendMessage(configManager.getMessage("no_permission"));
+                sender.sendMessage(configManager.getMessage(sender, "no_permission"));
                 return true;
             }
-            showCategories(sender);
+            // /price opens the chest menu for players; /minimal and the console get the chat list
+            if (command.getName().equalsIgnoreCase("price") && sender instanceof Player player && priceMenu.isEnabled()) {
+                priceMenu.open(player);
+            } else {
+                showCategories(sender);
+            }
             return true;
         }
 
@@ -43,15 +91,50 @@ public class PriceCommand implements CommandExecutor {
         // View permission check (implied by view, but distinct from edit)
         if (sub.equals("view")) {
              if (!sender.hasPermission("minimalprice.view")) {
-                sender.sendMessage(configManager.getMessage("no_permission"));
+                sender.sendMessage(configManager.getMessage(sender, "no_permission"));
                 return true;
             }
             handleView(sender, args);
             return true;
         }
 
+        if (sub.equals("history")) {
+            if (!sender.hasPermission("minimalprice.view")) {
+                sender.sendMessage(configManager.getMessage(sender, "no_permission"));
+                return true;
+            }
+            handleHistory(sender, args);
+            return true;
+        }
+
+        if (sub.equals("search")) {
+            if (!sender.hasPermission("minimalprice.view")) {
+                sender.sendMessage(configManager.getMessage(sender, "no_permission"));
+                return true;
+            }
+            handleSearch(sender, args);
+            return true;
+        }
+
+        if (sub.equals("watch") || sub.equals("unwatch")) {
+            if (!sender.hasPermission("minimalprice.view")) {
+                sender.sendMessage(configManager.getMessage(sender, "no_permission"));
+                return true;
+            }
+            if (!(sender instanceof Player)) {
+                sender.sendMessage(configManager.getMessage(sender, "watch_players_only"));
+                return true;
+            }
+            if (sub.equals("watch")) {
+                handleWatch((Player) sender, args);
+            } else {
+                handleUnwatch((Player) sender, args);
+            }
+            return true;
+        }
+
         if (!sender.hasPermission("minimalprice.edit")) {
-            sender.sendMessage(configManager.getMessage("no_permission"));
+            sender.sendMessage(configManager.getMessage(sender, "no_permission"));
             return true;
         }
 
@@ -68,69 +151,226 @@ public class PriceCommand implements CommandExecutor {
             case "reload":
                 handleReload(sender);
                 break;
+            case "stats":
+                handleStats(sender);
+                break;
+            case "import":
+                handleImport(sender, args);
+                break;
+            case "export":
+                handleExport(sender, args);
+                break;
             default:
-                sender.sendMessage(configManager.getMessage("usage"));
+                sender.sendMessage(configManager.getMessage(sender, "usage"));
         }
         return true;
     }
 
     private void showCategories(CommandSender sender) {
-        sender.sendMessage(configManager.getMessage("category_list_header"));
+        sender.sendMessage(configManager.getMessage(sender, "category_list_header"));
         
         List<Category> categories = priceManager.getCategories();
         for (Category cat : categories) {
-             sender.sendMessage(configManager.getMessage("category_item", "%category%", cat.getName()));
+             sender.sendMessage(configManager.getMessage(sender, "category_item", "%category%", cat.getName()));
         }
     }
 
     private void handleView(CommandSender sender, String[] args) {
-        // /minimal view [category]
+        // /minimal view [category] [sort] [page]
         if (args.length < 2) {
-            sender.sendMessage(configManager.getMessage("usage"));
+            sender.sendMessage(configManager.getMessage(sender, "usage"));
             return;
         }
         
         String categoryName = args[1];
-        // Find category by name
-        Category found = null;
-        for (Category cat : priceManager.getCategories()) {
-            if (cat.getName().equalsIgnoreCase(categoryName)) {
-                found = cat;
-                break;
-            }
-        }
+        // Lookup and listing must come from the same catalog generation
+        CatalogSnapshot snapshot = priceManager.getSnapshot();
+        Category found = findViewCategory(snapshot, categoryName);
         
         if (found == null) {
-            sender.sendMessage(configManager.getMessage("category_not_found"));
+            sender.sendMessage(configManager.getMessage(sender, "category_not_found"));
             return;
         }
         
-        showCategoryItems(sender, found);
+        // The sort may be left out: "/minimal view <category> 2" is page 2 in the default order
+        SortOrder order = categoryPages.getDefaultOrder();
+        int pageArg = 2;
+        if (args.length >= 3 && SortOrder.fromKey(args[2]) != null) {
+            order = SortOrder.fromKey(args[2]);
+            pageArg = 3;
+        }
+        int page = 1;
+        if (args.length > pageArg) {
+            try {
+                page = Integer.parseInt(args[pageArg]);
+            } catch (NumberFormatException e) {
+                sender.sendMessage(configManager.getMessage(sender, "view_usage"));
+                return;
+            }
+        }
+
+        // One component per page: a single chat packet, cached until the catalog changes
+        sender.sendMessage(categoryPages.page(sender, snapshot, found, order, page));
     }
 
-    private void showCategoryItems(CommandSender sender, Category category) {
-        sender.sendMessage(configManager.getMessage("category_view_header", "%category%", category.getName()));
-        
-        List<Product> products = priceManager.getProducts(category.getId());
-        for (Product prod : products) {
-            sender.sendMessage(configManager.getMessage("item_format", 
-                    "%item%", prod.getName(), 
-                    "%price%", String.valueOf(prod.getPrice())));
+    // A name, or #<id> as written by the page controls (names may contain characters a command cannot carry)
+    private Category findViewCategory(CatalogSnapshot snapshot, String arg) {
+        if (arg.length() > 1 && arg.charAt(0) == '#') {
+            try {
+                Category byId = snapshot.getCategory(Integer.parseInt(arg.substring(1)));
+                if (byId != null) return byId;
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return snapshot.findCategoryIgnoreCase(arg);
+    }
+
+    private void handleSearch(CommandSender sender, String[] args) {
+        // /minimal search [text...]
+        if (args.length < 2) {
+            sender.sendMessage(configManager.getMessage(sender, "search_usage"));
+            return;
+        }
+        String text = String.join(" ", Arrays.copyOfRange(args, 1, args.length));
+        SearchResult result = searchManager.search(text);
+        if (result.isEmpty()) {
+            sender.sendMessage(configManager.getMessage(sender, "search_empty", "%query%", text));
+            return;
+        }
+
+        sender.sendMessage(configManager.getMessage(sender, "search_header", "%query%", text));
+        for (Category category : result.getCategories()) {
+            sender.sendMessage(configManager.getMessage(sender, "search_category", "%category%", category.getName()));
+        }
+        for (ProductMatch match : result.getProducts()) {
+            sender.sendMessage(configManager.getMessage(sender, "search_item",
+                    "%item%", match.getProductName(),
+                    "%category%", match.getCategoryName(),
+                    "%price%", match.getPrice().toString()));
+        }
+    }
+
+    private void handleWatch(Player sender, String[] args) {
+        // /minimal watch [item] [price]; without arguments lists the player's watches
+        int scale = priceManager.getPriceScale();
+        if (args.length == 1) {
+            List<PriceWatch> watches = watchManager.getWatches(sender.getUniqueId());
+            if (watches.isEmpty()) {
+                sender.sendMessage(configManager.getMessage(sender, "watch_list_empty"));
+                return;
+            }
+            sender.sendMessage(configManager.getMessage(sender, "watch_list_header"));
+            for (PriceWatch watch : watches) {
+                sender.sendMessage(configManager.getMessage(sender, "watch_list_item",
+                        "%item%", watch.getItemName(),
+                        "%target%", MoneyFormat.format(watch.getThresholdMinor(), scale)));
+            }
+            return;
+        }
+        if (args.length < 3) {
+            sender.sendMessage(configManager.getMessage(sender, "watch_usage"));
+            return;
+        }
+        String itemName = args[1].replace('_', ' ');
+        Money threshold;
+        try {
+            threshold = Money.parse(args[2], scale);
+        } catch (NumberFormatException e) {
+            sender.sendMessage(configManager.getMessage(sender, "watch_usage"));
+            return;
+        }
+        Money current = watchManager.lowestPrice(itemName);
+        if (current == null) {
+            sender.sendMessage(configManager.getMessage(sender, "history_not_found", "%item%", itemName));
+            return;
+        }
+
+        watchManager.watch(sender.getUniqueId(), itemName, threshold).thenAccept(added -> {
+            if (!added) {
+                sender.sendMessage(configManager.getMessage(sender, "watch_limit",
+                        "%limit%", String.valueOf(watchManager.getLimit())));
+                return;
+            }
+            // The alert fires on a drop to the target; tell the player when the price is already there
+            String key = current.compareTo(threshold) <= 0 ? "watch_set_already_below" : "watch_set";
+            sender.sendMessage(configManager.getMessage(sender, key,
+                    "%item%", itemName,
+                    "%target%", threshold.toString(),
+                    "%price%", current.toString()));
+        }).exceptionally(e -> {
+            sendError(sender, e);
+            return null;
+        });
+    }
+
+    private void handleUnwatch(Player sender, String[] args) {
+        // /minimal unwatch [item]
+        if (args.length < 2) {
+            sender.sendMessage(configManager.getMessage(sender, "unwatch_usage"));
+            return;
         }
+        String itemName = args[1].replace('_', ' ');
+        watchManager.unwatch(sender.getUniqueId(), itemName).thenAccept(removed -> {
+            sender.sendMessage(configManager.getMessage(sender, removed ? "watch_removed" : "watch_not_found",
+                    "%item%", itemName));
+        }).exceptionally(e -> {
+            sendError(sender, e);
+            return null;
+        });
+    }
+
+    private void handleHistory(CommandSender sender, String[] args) {
+        // /minimal history [item] [hour|day]
+        if (args.length < 2) {
+            sender.sendMessage(configManager.getMessage(sender, "history_usage"));
+            return;
+        }
+        String itemName = args[1].replace('_', ' ');
+        HistoryResolution resolution = args.length >= 3 ? HistoryResolution.fromKey(args[2]) : HistoryResolution.DAY;
+        if (resolution == null) {
+            sender.sendMessage(configManager.getMessage(sender, "history_usage"));
+            return;
+        }
+
+        historyManager.getHistory(itemName, resolution).thenAccept(buckets -> {
+            if (buckets == null) {
+                sender.sendMessage(configManager.getMessage(sender, "history_not_found", "%item%", itemName));
+                return;
+            }
+            sender.sendMessage(configManager.getMessage(sender, "history_header",
+                    "%item%", itemName,
+                    "%resolution%", resolution.getKey()));
+            if (buckets.isEmpty()) {
+                sender.sendMessage(configManager.getMessage(sender, "history_empty"));
+                return;
+            }
+            DateTimeFormatter labels = resolution == HistoryResolution.HOUR ? HOUR_LABEL : DAY_LABEL;
+            for (PriceBucket bucket : buckets) {
+                sender.sendMessage(configManager.getMessage(sender, "history_row",
+                        "%bucket%", labels.format(Instant.ofEpochMilli(bucket.getBucketStart())),
+                        "%min%", bucket.getMin().toString(),
+                        "%avg%", bucket.getAverage().toString(),
+                        "%max%", bucket.getMax().toString(),
+                        "%last%", bucket.getLast().toString(),
+                        "%samples%", String.valueOf(bucket.getSampleCount())));
+            }
+        }).exceptionally(e -> {
+            sendError(sender, e);
+            return null;
+        });
     }
 
     private void handleCreate(CommandSender sender, String[] args) {
         // /minimal create kategori [name]
         if (args.length < 3 || !args[1].equalsIgnoreCase("kategori")) {
-            sender.sendMessage(configManager.getMessage("usage"));
+            sender.sendMessage(configManager.getMessage(sender, "usage"));
             return;
         }
         String name = args[2];
         priceManager.createCategory(name).thenRun(() -> {
-            sender.sendMessage(configManager.getMessage("create_category_success", "%name%", name));
+            sender.sendMessage(configManager.getMessage(sender, "create_category_success", "%name%", name));
         }).exceptionally(e -> {
-            sender.sendMessage(configManager.getMessage("error_generic"));
-            e.printStackTrace();
+            sendError(sender, e);
             return null;
         });
     }
@@ -138,34 +378,33 @@ public class PriceCommand implements CommandExecutor {
     private void handleAdd(CommandSender sender, String[] args) {
         // /minimal add price [category] [item] [price]
         if (args.length < 5 || !args[1].equalsIgnoreCase("price")) {
-             sender.sendMessage(configManager.getMessage("usage"));
+             sender.sendMessage(configManager.getMessage(sender, "usage"));
              return;
         }
         String catName = args[2];
         String itemName = args[3].replace('_', ' ');
-        double price;
+        Money price;
         try {
-            price = Double.parseDouble(args[4]);
+            price = Money.parse(args[4], priceManager.getPriceScale());
         } catch (NumberFormatException e) {
             sender.sendMessage(Component.text("Invalid price number."));
             return;
         }
 
         priceManager.addProduct(catName, itemName, price).thenRun(() -> {
-            sender.sendMessage(configManager.getMessage("add_product_success", 
+            sender.sendMessage(configManager.getMessage(sender, "add_product_success", 
                     "%category%", catName,
                     "%item%", itemName,
-                    "%price%", String.valueOf(price)));
+                    "%price%", price.toString()));
         }).exceptionally(e -> {
-            sender.sendMessage(configManager.getMessage("error_generic"));
-            e.printStackTrace();
+            sendError(sender, e);
             return null;
         });
     }
 
     private void handleSet(CommandSender sender, String[] args) {
         if (args.length < 4) {
-             sender.sendMessage(configManager.getMessage("usage"));
+             sender.sendMessage(configManager.getMessage(sender, "usage"));
              return;
         }
         
@@ -175,23 +414,127 @@ public class PriceCommand implements CommandExecutor {
 
         if (type.equals("kategori")) {
             priceManager.renameCategory(arg1, arg2).thenRun(() -> {
-                sender.sendMessage(configManager.getMessage("rename_category_success", "%old%", arg1, "%new%", arg2));
+                sender.sendMessage(configManager.getMessage(sender, "rename_category_success", "%old%", arg1, "%new%", arg2));
+            }).exceptionally(e -> {
+                sendError(sender, e);
+                return null;
             });
         } else if (type.equals("goods")) {
             priceManager.renameProduct(arg1, arg2).thenAccept(count -> {
                 if (count > 0) {
-                     sender.sendMessage(configManager.getMessage("rename_product_success", "%old%", arg1, "%new%", arg2));
+                     sender.sendMessage(configManager.getMessage(sender, "rename_product_success", "%old%", arg1, "%new%", arg2));
                 } else {
                      sender.sendMessage(Component.text("Product not found."));
                 }
+            }).exceptionally(e -> {
+                sendError(sender, e);
+                return null;
             });
         } else {
-             sender.sendMessage(configManager.getMessage("usage"));
+             sender.sendMessage(configManager.getMessage(sender, "usage"));
         }
     }
 
+    private void handleImport(CommandSender sender, String[] args) {
+        // /minimal import [file]
+        if (args.length < 2) {
+            sender.sendMessage(configManager.getMessage(sender, "import_usage"));
+            return;
+        }
+        String fileName = args[1];
+        sender.sendMessage(configManager.getMessage(sender, "import_started", "%file%", fileName));
+        catalogTransfer.importFile(fileName, rows -> {
+            sender.sendMessage(configManager.getMessage(sender, "import_progress", "%rows%", String.valueOf(rows)));
+        }).thenAccept(result -> {
+            sender.sendMessage(configManager.getMessage(sender, "import_success",
+                    "%file%", fileName,
+                    "%rows%", String.valueOf(result.getImportedRows()),
+                    "%skipped%", String.valueOf(result.getSkippedRows()),
+                    "%categories%", String.valueOf(result.getCreatedCategories()),
+                    "%time%", String.valueOf(result.getElapsedMillis())));
+        }).exceptionally(e -> {
+            sendTransferError(sender, fileName, e);
+            return null;
+        });
+    }
+
+    private void handleExport(CommandSender sender, String[] args) {
+        // /minimal export [file]
+        if (args.length < 2) {
+            sender.sendMessage(configManager.getMessage(sender, "export_usage"));
+            return;
+        }
+        String fileName = args[1];
+        catalogTransfer.exportFile(fileName).thenAccept(rows -> {
+            sender.sendMessage(configManager.getMessage(sender, "export_success",
+                    "%file%", fileName,
+                    "%rows%", String.valueOf(rows)));
+        }).exceptionally(e -> {
+            sendTransferError(sender, fileName, e);
+            return null;
+        });
+    }
+
+    private void sendTransferError(CommandSender sender, String fileName, Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof java.io.UncheckedIOException && cause.getCause() instanceof java.nio.file.NoSuchFileException) {
+            sender.sendMessage(configManager.getMessage(sender, "transfer_file_not_found", "%file%", configManager.escape(fileName)));
+        } else if (cause instanceof IllegalArgumentException || cause instanceof IllegalStateException) {
+            // The reason may quote the file's content
+            sender.sendMessage(configManager.getMessage(sender, "transfer_failed", "%reason%", configManager.escape(cause.getMessage())));
+        } else {
+            sendError(sender, e);
+        }
+    }
+
+    // Storage overload is reported as such; anything else is unexpected and logged
+    private void sendError(CommandSender sender, Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof RejectedExecutionException) {
+            sender.sendMessage(configManager.getMessage(sender, "storage_busy"));
+        } else {
+            sender.sendMessage(configManager.getMessage(sender, "error_generic"));
+            e.printStackTrace();
+        }
+    }
+
+    private void handleStats(CommandSender sender) {
+        WriteBehindQueue queue = priceManager.getWriteQueue();
+        sender.sendMessage(configManager.getMessage(sender, "stats_header"));
+        sender.sendMessage(configManager.getMessage(sender, "stats_write_behind",
+                "%pending%", String.valueOf(queue.getPendingCount()),
+                "%submitted%", String.valueOf(queue.getSubmittedCount()),
+                "%coalesced%", String.valueOf(queue.getCoalescedCount()),
+                "%rejected%", String.valueOf(queue.getRejectedCount()),
+                "%batches%", String.valueOf(queue.getBatchesFlushed()),
+                "%avg_batch%", String.format("%.1f", queue.getAverageBatchSize()),
+                "%max_batch%", String.valueOf(queue.getLargestBatch()),
+                "%avg_flush%", String.format("%.2f", queue.getAverageFlushMillis()),
+                "%max_flush%", String.format("%.2f", queue.getMaxFlushMillis())));
+        sendStorageStats(sender, "stats_storage_reads", storage.getReads());
+        sendStorageStats(sender, "stats_storage_writes", storage.getWrites());
+    }
+
+    private void sendStorageStats(CommandSender sender, String key, StorageExecutor.Lane lane) {
+        sender.sendMessage(configManager.getMessage(sender, key,
+                "%pending%", String.valueOf(lane.getPending()),
+                "%limit%", String.valueOf(lane.getLimit()),
+                "%max_pending%", String.valueOf(lane.getMaxPending()),
+                "%started%", String.valueOf(lane.getStartedCount()),
+                "%rejected%", String.valueOf(lane.getRejectedCount()),
+                "%avg_wait%", String.format("%.2f", lane.getAverageWaitMillis()),
+                "%max_wait%", String.format("%.2f", lane.getMaxWaitMillis())));
+    }
+
     private void handleReload(CommandSender sender) {
         configManager.reload();
-        sender.sendMessage(configManager.getMessage("reload_success"));
+        categoryPages.invalidate();
+        priceMenu.invalidate();
+        priceManager.reloadCache().thenRun(() -> {
+            sender.sendMessage(configManager.getMessage(sender, "reload_success"));
+        }).exceptionally(e -> {
+            sendError(sender, e);
+            return null;
+        });
     }
 }
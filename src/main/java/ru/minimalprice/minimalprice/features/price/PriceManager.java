@@ -1,72 +1,562 @@
 package ru.minimalprice.minimalprice.features.price;
 
+import ru.minimalprice.minimalprice.MinimalPrice;
+import ru.minimalprice.minimalprice.database.StorageExecutor;
+import ru.minimalprice.minimalprice.features.price.cache.CatalogSnapshot;
+import ru.minimalprice.minimalprice.features.price.cache.CatalogSnapshotFile;
+import ru.minimalprice.minimalprice.features.price.cache.CategoryStatistics;
+import ru.minimalprice.minimalprice.features.price.cache.ProductColumns;
+import ru.minimalprice.minimalprice.features.price.models.CatalogFingerprint;
 import ru.minimalprice.minimalprice.features.price.models.Category;
+import ru.minimalprice.minimalprice.features.price.models.Money;
+import ru.minimalprice.minimalprice.features.price.models.PriceChange;
 import ru.minimalprice.minimalprice.features.price.models.Product;
-import ru.minimalprice.minimalprice.features.price.storage.PriceRepository;
+import ru.minimalprice.minimalprice.features.price.storage.CatalogRowHandler;
+import ru.minimalprice.minimalprice.features.price.storage.CategoryRenameHook;
+import ru.minimalprice.minimalprice.features.price.storage.ChangeLogEntry;
+import ru.minimalprice.minimalprice.features.price.storage.PriceStorage;
+import ru.minimalprice.minimalprice.features.price.storage.ProductUpsert;
+import ru.minimalprice.minimalprice.features.price.storage.ProductWriteHook;
+import ru.minimalprice.minimalprice.features.price.storage.WriteBehindQueue;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.SQLException;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.logging.Level;
 
 public class PriceManager {
 
-    private final PriceRepository repository;
+    private static final int MAX_RELOAD_ATTEMPTS = 3;
+    private static final long CHANGELOG_PRUNE_INTERVAL_MS = 60_000L;
+
+    private final MinimalPrice plugin;
+    private final PriceStorage repository;
+    private final StorageExecutor storage;
+    private final WriteBehindQueue writeQueue;
+    private final List<CategoryRenameHook> categoryRenameHooks = new CopyOnWriteArrayList<>();
+    private final List<ProductWriteHook> productWriteHooks = new CopyOnWriteArrayList<>();
+    private final List<Consumer<CatalogSnapshot>> snapshotListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<List<PriceChange>>> priceChangeListeners = new CopyOnWriteArrayList<>();
     
-    // Cache: Category -> List of Products
-    private final List<Category> categoriesCache = new CopyOnWriteArrayList<>();
-    private final Map<Integer, List<Product>> productsCache = new ConcurrentHashMap<>();
+    // Current catalog generation. Replaced as a whole, never mutated in place.
+    private volatile CatalogSnapshot snapshot;
+    private final AtomicLong snapshotVersion = new AtomicLong();
+    private final Object publishLock = new Object();
     private final CompletableFuture<Void> initFuture = new CompletableFuture<>();
 
-    public PriceManager(PriceRepository repository) {
+    // Binary copy of the catalog, read on startup before the database load finishes
+    private final Path snapshotFile;
+    private final Object snapshotFileLock = new Object();
+    private long savedSnapshotVersion = -1L;
+
+    // Change log position: every entry up to changeSeq is reflected in the cache.
+    // Only touched by the initial load and then by one poll at a time (see polling).
+    private final AtomicBoolean polling = new AtomicBoolean();
+    private long changeSeq;
+    private long gapSince;
+    private long lastChangePrune;
+
+    public PriceManager(MinimalPrice plugin, PriceStorage repository, StorageExecutor storage) {
+        this.plugin = plugin;
         this.repository = repository;
-        reloadCache().thenRun(() -> initFuture.complete(null));
+        this.storage = storage;
+        this.snapshot = CatalogSnapshot.empty(repository.getPriceScale());
+        this.snapshotFile = new File(plugin.getDataFolder(), "catalog.snapshot").toPath();
+        restoreSnapshotFile();
+        this.writeQueue = new WriteBehindQueue(repository, storage, plugin.getLogger(),
+                plugin.getConfig().getLong("write_behind.flush_interval_ms", 250L),
+                plugin.getConfig().getInt("write_behind.max_batch_size", 500),
+                plugin.getConfig().getInt("write_behind.max_pending", 20000),
+                productWriteHooks, this::applyCommittedProducts);
+        // The init future still waits for the database: Discord sync rebuilds every post from it.
+        // The change log position is read before the load, so nothing committed in between is missed.
+        storage.supplyInternalRead(this::latestChangeSeq)
+                .thenCompose(seq -> reloadCache().thenRun(() -> changeSeq = seq))
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        plugin.getLogger().log(Level.SEVERE, "Failed to load the catalog", error);
+                    }
+                    initFuture.complete(null);
+                });
     }
 
+    // Serves the last persisted catalog until the database load completes; any problem just leaves the cache empty
+    private void restoreSnapshotFile() {
+        long start = System.nanoTime();
+        try {
+            CatalogSnapshot restored = CatalogSnapshotFile.read(snapshotFile, 1L);
+            if (restored == null) {
+                return;
+            }
+            if (restored.getPriceScale() != repository.getPriceScale()) {
+                plugin.getLogger().warning("Ignoring catalog snapshot file written with price scale " + restored.getPriceScale());
+                return;
+            }
+            synchronized (publishLock) {
+                snapshotVersion.set(restored.getVersion());
+                this.snapshot = restored;
+            }
+            synchronized (snapshotFileLock) {
+                savedSnapshotVersion = restored.getVersion();
+            }
+            plugin.getLogger().info(String.format("Catalog restored from snapshot file: %d categories, %d products in %.2f ms",
+                    restored.getCategories().size(), restored.getProductCount(), (System.nanoTime() - start) / 1_000_000.0));
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not read catalog snapshot file: " + e.getMessage());
+        }
+    }
+
+    // Persists the current snapshot unless it was already written. Called periodically and on shutdown.
+    public void saveSnapshotFile() {
+        synchronized (snapshotFileLock) {
+            CatalogSnapshot current = snapshot;
+            if (current.getVersion() == savedSnapshotVersion) {
+                return;
+            }
+            try {
+                CatalogSnapshotFile.write(snapshotFile, current);
+                savedSnapshotVersion = current.getVersion();
+            } catch (IOException e) {
+                plugin.getLogger().warning("Could not write catalog snapshot file: " + e.getMessage());
+            }
+        }
+    }
+
+    // Fails if the catalog could not be read; the current snapshot then stays in place
     public CompletableFuture<Void> reloadCache() {
-        return CompletableFuture.runAsync(() -> {
+        return storage.runInternalRead(() -> {
             try {
-                // Temporary lists to avoid clearing main cache if error occurs
-                List<Category> tempCats = repository.getAllCategories();
-                Map<Integer, List<Product>> tempProds = new ConcurrentHashMap<>();
-                
-                for (Category cat : tempCats) {
-                    List<Product> prods = repository.getProductsByCategory(cat.getId());
-                    tempProds.put(cat.getId(), prods);
+                long start = System.nanoTime();
+                long heapBefore = usedHeap();
+                CatalogSnapshot published = null;
+                CatalogSnapshot replaced = null;
+                boolean unchanged = false;
+
+                // Whole catalog in one query; the current snapshot stays untouched if this fails.
+                // A delta applied while we were reading would be lost by publishing, so read again in that case.
+                for (int attempt = 1; published == null; attempt++) {
+                    long generationBefore = snapshotVersion.get();
+                    CatalogSnapshot previous = snapshot;
+                    List<Category> categories = new ArrayList<>(previous.getCategories().size());
+                    // Previous sizes are a good guess for the new catalog and avoid most array growth
+                    ProductColumns.Builder columns = ProductColumns.builder(previous.getCategories().size(), previous.getProductCount());
+
+                    repository.loadCatalog(new CatalogRowHandler() {
+                        @Override
+                        public void category(int categoryId, String name) {
+                            categories.add(new Category(categoryId, name));
+                            columns.category(categoryId);
+                        }
+
+                        @Override
+                        public void product(int productId, String name, long priceMinor) {
+                            columns.product(productId, name, priceMinor);
+                        }
+                    });
+                    ProductColumns built = columns.build();
+
+                    synchronized (publishLock) {
+                        if (snapshotVersion.get() == generationBefore || attempt >= MAX_RELOAD_ATTEMPTS) {
+                            CatalogSnapshot loaded = CatalogSnapshot.of(snapshotVersion.get() + 1, categories, built, repository.getPriceScale());
+                            if (loaded.sameContent(snapshot)) {
+                                // Typically the catalog restored from the snapshot file; keep it and its version
+                                published = snapshot;
+                                unchanged = true;
+                            } else {
+                                snapshotVersion.incrementAndGet();
+                                replaced = snapshot;
+                                published = loaded;
+                                this.snapshot = published;
+                            }
+                        }
+                    }
                 }
-                
-                // Update main cache atomically-ish
-                categoriesCache.clear();
-                categoriesCache.addAll(tempCats);
-                productsCache.clear();
-                productsCache.putAll(tempProds);
-                
+
+                if (!unchanged) {
+                    notifyPublished();
+                    // The first load only catches up with the restored file; later ones (imports, resyncs) are real changes
+                    if (initFuture.isDone()) {
+                        notifyPriceChanges(replaced, published, null);
+                    }
+                }
+                long elapsedMicros = (System.nanoTime() - start) / 1_000L;
+                plugin.getLogger().info(String.format("Catalog %s (v%d): %d categories, %d products in %.2f ms",
+                        unchanged ? "verified, unchanged" : "reloaded",
+                        published.getVersion(), published.getCategories().size(), published.getProductCount(), elapsedMicros / 1000.0));
+                ProductColumns columns = published.getColumns();
+                plugin.getLogger().info(String.format("Catalog memory: ~%d KiB columnar (~%d KiB as objects), %d distinct names; heap used %d -> %d MiB",
+                        columns.estimateBytes() / 1024, columns.estimateObjectLayoutBytes() / 1024, columns.dictionary().size(),
+                        heapBefore / (1024 * 1024), usedHeap() / (1024 * 1024)));
             } catch (SQLException e) {
-                e.printStackTrace();
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // Compares the cache with the database and falls back to a full reload when they disagree
+    public CompletableFuture<Boolean> verifyConsistency() {
+        return storage.supplyInternalRead(() -> {
+            try {
+                CatalogFingerprint cached = snapshot.fingerprint();
+                CatalogFingerprint stored = repository.getCatalogFingerprint();
+                if (cached.matches(stored)) {
+                    return true;
+                }
+                plugin.getLogger().warning("Catalog cache drift detected (cache: " + cached + "; database: " + stored + "). Reloading.");
+                reloadCache().exceptionally(e -> {
+                    plugin.getLogger().log(Level.WARNING, "Failed to reload the cache after drift", e);
+                    return null;
+                });
+                return false;
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
             }
         });
     }
 
+    /**
+     * Applies changes other servers wrote to the shared database since the last poll, as deltas.
+     * Falls back to a full reload when too far behind, on a bulk change, or when a gap in the
+     * sequence does not close in time. No events are fired: the writing server already did.
+     * The read runs as internal storage work; the next poll starts once this one, reload included, is done.
+     */
+    public void pollChanges() {
+        if (!initFuture.isDone() || !polling.compareAndSet(false, true)) {
+            return;
+        }
+        storage.supplyInternalRead(() -> {
+            try {
+                int maxLag = Math.max(1, plugin.getConfig().getInt("sync.max_lag", 5000));
+                List<ChangeLogEntry> entries = repository.readChanges(changeSeq, maxLag + 1);
+                if (entries.size() > maxLag) {
+                    return resync("more than " + maxLag + " changes behind");
+                }
+                return entries.isEmpty() ? CompletableFuture.<Void>completedFuture(null) : applyChanges(entries);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }).thenCompose(applied -> applied).whenComplete((ignored, error) -> {
+            if (error != null) {
+                plugin.getLogger().log(Level.WARNING, "Catalog change log poll failed", error);
+            }
+            polling.set(false);
+        });
+
+        long now = System.currentTimeMillis();
+        if (now - lastChangePrune >= CHANGELOG_PRUNE_INTERVAL_MS) {
+            lastChangePrune = now;
+            long retention = TimeUnit.MINUTES.toMillis(plugin.getConfig().getLong("sync.retention_minutes", 10L));
+            storage.runInternalWrite(() -> {
+                try {
+                    repository.pruneChanges(now - retention);
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            });
+        }
+    }
+
+    // Completes once the entries are in the cache, after a reload if one was needed
+    private CompletableFuture<Void> applyChanges(List<ChangeLogEntry> entries) {
+        long gapTimeout = plugin.getConfig().getLong("sync.gap_timeout_ms", 10000L);
+        long expected = changeSeq + 1;
+        int usable = 0;
+        boolean remote = false;
+        for (ChangeLogEntry entry : entries) {
+            if (entry.getSeq() != expected) {
+                // The missing numbers belong to a transaction that has not committed yet, or rolled back
+                long now = System.currentTimeMillis();
+                if (gapSince == 0) {
+                    gapSince = now;
+                } else if (now - gapSince >= gapTimeout) {
+                    return resync("gap after change " + (expected - 1));
+                }
+                break;
+            }
+            if (!entry.isLocal()) {
+                if (entry.getKind() == ChangeLogEntry.Kind.CATALOG_RELOAD) {
+                    return resync("bulk change on another server");
+                }
+                remote = true;
+            }
+            usable++;
+            expected++;
+        }
+        if (usable == entries.size()) {
+            gapSince = 0;
+        }
+        if (usable == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        List<ChangeLogEntry> batch = entries.subList(0, usable);
+        // Our own entries are already in the cache; with remote ones in between they are replayed
+        // too, so the cache ends up in commit order.
+        if (remote) {
+            Transition published = publishChanges(batch);
+            if (published == null) {
+                return resync("change for a category missing from the cache");
+            }
+            notifyPublished();
+            List<Product> upserted = new ArrayList<>();
+            for (ChangeLogEntry entry : batch) {
+                if (entry.getKind() == ChangeLogEntry.Kind.PRODUCT_UPSERT) {
+                    upserted.add(new Product(entry.getItemId(), entry.getCategoryId(), entry.getName(),
+                            Money.ofMinor(entry.getPriceMinor(), published.after.getPriceScale())));
+                }
+            }
+            notifyPriceChanges(published.before, published.after, upserted);
+        }
+        changeSeq = batch.get(usable - 1).getSeq();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    // Folds the entries into one new generation; null (nothing published) if a product's category is unknown
+    private Transition publishChanges(List<ChangeLogEntry> batch) {
+        int scale = repository.getPriceScale();
+        synchronized (publishLock) {
+            long version = snapshotVersion.get() + 1;
+            CatalogSnapshot next = snapshot;
+            List<Product> products = new ArrayList<>();
+            for (ChangeLogEntry entry : batch) {
+                if (entry.getKind() == ChangeLogEntry.Kind.PRODUCT_UPSERT) {
+                    // Consecutive price writes become a single columns update
+                    products.add(new Product(entry.getItemId(), entry.getCategoryId(), entry.getName(),
+                            Money.ofMinor(entry.getPriceMinor(), scale)));
+                    continue;
+                }
+                next = withProducts(next, version, products);
+                if (next == null) {
+                    return null;
+                }
+                products.clear();
+                switch (entry.getKind()) {
+                    case CATEGORY_CREATE:
+                        next = next.withCategory(version, new Category(entry.getCategoryId(), entry.getName()));
+                        break;
+                    case CATEGORY_RENAME:
+                        next = next.withCategoryRenamed(version, entry.getOldName(), entry.getName());
+                        break;
+                    case PRODUCT_RENAME:
+                        next = next.withProductRenamed(version, entry.getOldName(), entry.getName());
+                        break;
+                    default:
+                        // Local bulk change: this server reloaded when it finished
+                        break;
+                }
+            }
+            next = withProducts(next, version, products);
+            if (next == null) {
+                return null;
+            }
+            Transition published = new Transition(snapshot, next);
+            snapshotVersion.set(version);
+            this.snapshot = next;
+            return published;
+        }
+    }
+
+    private static CatalogSnapshot withProducts(CatalogSnapshot base, long version, List<Product> products) {
+        if (products.isEmpty()) {
+            return base;
+        }
+        for (Product product : products) {
+            if (!base.containsCategory(product.getCategoryId())) {
+                return null;
+            }
+        }
+        return base.withProducts(version, products);
+    }
+
+    // Reloads the catalog and moves the change log position past everything the load can contain.
+    // If the reload fails the position stays where it was, so the next poll tries again.
+    private CompletableFuture<Void> resync(String reason) {
+        plugin.getLogger().info("Catalog change log: " + reason + ", reloading");
+        long seq = latestChangeSeq();
+        return reloadCache().thenRun(() -> {
+            changeSeq = seq;
+            gapSince = 0;
+        });
+    }
+
+    private long latestChangeSeq() {
+        try {
+            return repository.getLatestChangeSeq();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return changeSeq;
+        }
+    }
+
+    // Called on the storage writer with every batch the write-behind queue committed
+    private void applyCommittedProducts(List<Product> committed) {
+        CatalogSnapshot current = snapshot;
+        for (Product product : committed) {
+            if (!current.containsCategory(product.getCategoryId())) {
+                // Category was created outside of this cache; on the writer, so the reload is not waited for
+                reloadCache().exceptionally(e -> {
+                    plugin.getLogger().log(Level.WARNING, "Failed to reload the cache for a new category; the consistency check will retry", e);
+                    return null;
+                });
+                return;
+            }
+        }
+        Transition published = applyDelta((base, version) -> base.withProducts(version, committed));
+        notifyPriceChanges(published.before, published.after, committed);
+    }
+
+    private Transition applyDelta(BiFunction<CatalogSnapshot, Long, CatalogSnapshot> delta) {
+        Transition published;
+        // Versions are handed out under the lock so a newer generation is never overwritten by an older one
+        synchronized (publishLock) {
+            published = new Transition(snapshot, delta.apply(snapshot, snapshotVersion.incrementAndGet()));
+            this.snapshot = published.after;
+        }
+        notifyPublished();
+        return published;
+    }
+
+    // Outside the publish lock; a listener may see a generation newer than the one that triggered it
+    private void notifyPublished() {
+        CatalogSnapshot current = snapshot;
+        for (Consumer<CatalogSnapshot> listener : snapshotListeners) {
+            try {
+                listener.accept(current);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Prices that differ between two generations: of the changed products, or of the whole catalog when null
+    private void notifyPriceChanges(CatalogSnapshot before, CatalogSnapshot after, List<Product> changed) {
+        if (priceChangeListeners.isEmpty()) {
+            return;
+        }
+        ProductColumns columns = after.getColumns();
+        List<PriceChange> changes = new ArrayList<>();
+        if (changed != null) {
+            for (Product product : changed) {
+                addPriceChange(changes, before, after, after.findProductRowById(product.getId()));
+            }
+        } else {
+            for (int row = 0; row < columns.size(); row++) {
+                addPriceChange(changes, before, after, row);
+            }
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+        for (Consumer<List<PriceChange>> listener : priceChangeListeners) {
+            try {
+                listener.accept(changes);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static void addPriceChange(List<PriceChange> changes, CatalogSnapshot before, CatalogSnapshot after, int row) {
+        if (row < 0) {
+            return;
+        }
+        ProductColumns columns = after.getColumns();
+        long price = columns.priceMinor(row);
+        int previousRow = before.findProductRowById(columns.productId(row));
+        if (previousRow >= 0 && before.getColumns().priceMinor(previousRow) == price) {
+            return;
+        }
+        int scale = after.getPriceScale();
+        Category category = after.getCategory(columns.categoryIdOf(row));
+        changes.add(new PriceChange(category != null ? category.getName() : "", columns.productName(row),
+                previousRow >= 0 ? Money.ofMinor(before.getColumns().priceMinor(previousRow), scale) : null,
+                Money.ofMinor(price, scale)));
+    }
+
+    /**
+     * Called on the publishing thread with the prices each new generation changed, whatever the source:
+     * local writes, changes of other servers and reloads (imports). Listeners must return quickly.
+     */
+    public void addPriceChangeListener(Consumer<List<PriceChange>> listener) {
+        priceChangeListeners.add(listener);
+    }
+
+    /**
+     * Called on the publishing thread after every new catalog generation (deltas, reloads, remote changes).
+     * Listeners must return quickly; expensive work belongs on another thread.
+     */
+    public void addSnapshotListener(Consumer<CatalogSnapshot> listener) {
+        snapshotListeners.add(listener);
+    }
+
+    // Registers writes that must commit atomically with every category rename
+    public void addCategoryRenameHook(CategoryRenameHook hook) {
+        categoryRenameHooks.add(hook);
+    }
+
+    // Registers writes that must commit atomically with every batch of price updates
+    public void addProductWriteHook(ProductWriteHook hook) {
+        productWriteHooks.add(hook);
+    }
+
+    // Fraction digits every price is parsed and stored with
+    public int getPriceScale() {
+        return repository.getPriceScale();
+    }
+
+    public WriteBehindQueue getWriteQueue() {
+        return writeQueue;
+    }
+
+    // Flushes pending writes; must run before the database is closed
+    public void close() {
+        writeQueue.close();
+        saveSnapshotFile();
+    }
+
     public CompletableFuture<Void> getInitFuture() {
         return initFuture;
     }
 
+    public CatalogSnapshot getSnapshot() {
+        return snapshot;
+    }
+
     public List<Category> getCategories() {
-        return Collections.unmodifiableList(categoriesCache);
+        return snapshot.getCategories();
     }
 
     public List<Product> getProducts(int categoryId) {
-        return productsCache.getOrDefault(categoryId, Collections.emptyList());
+        return snapshot.getProducts(categoryId);
+    }
+
+    // Min/max/mean/median/percentiles of the category's current prices, kept up to date with every delta
+    public CategoryStatistics getStatistics(int categoryId) {
+        return snapshot.getStatistics(categoryId);
     }
 
     public CompletableFuture<Void> createCategory(String name) {
-        return CompletableFuture.runAsync(() -> {
+        return storage.runWrite(() -> {
             try {
-                repository.createCategory(name);
-                reloadCache();
+                int id = repository.createCategory(name);
+                Category category = new Category(id, name);
+                applyDelta((current, version) -> current.withCategory(version, category));
                 org.bukkit.Bukkit.getPluginManager().callEvent(new ru.minimalprice.minimalprice.features.price.events.CategoryCreateEvent(name));
             } catch (SQLException e) {
                 throw new RuntimeException(e);
@@ -74,23 +564,30 @@ public class PriceManager {
         });
     }
 
-    public CompletableFuture<Void> addProduct(String category, String product, double price) {
-        return CompletableFuture.runAsync(() -> {
-            try {
-                repository.upsertProduct(category, product, price);
-                reloadCache();
-                 org.bukkit.Bukkit.getPluginManager().callEvent(new ru.minimalprice.minimalprice.features.price.events.ProductUpdateEvent(category, product, price));
-            } catch (SQLException e) {
-                throw new RuntimeException(e);
-            }
+    // Queued through the write-behind batcher; completes once the batch holding this update has committed
+    public CompletableFuture<Void> addProduct(String category, String product, Money price) {
+        // Categories are matched exactly, like the storage does; a miss is left to the storage
+        Category known = snapshot.findCategory(category);
+        return writeQueue.submit(category, product, price, known != null ? known.getId() : 0).thenAccept(stored -> {
+            org.bukkit.Bukkit.getPluginManager().callEvent(new ru.minimalprice.minimalprice.features.price.events.ProductUpdateEvent(category, product, stored.getPrice()));
         });
     }
 
+    /**
+     * Writes one chunk of a bulk import in its own transaction, bypassing the write-behind queue.
+     * Does not touch the cache or fire events; the importer reloads and notifies once at the end.
+     * Returns the number of rows written.
+     */
+    public int importProducts(List<ProductUpsert> chunk, Set<String> createdCategories) throws SQLException {
+        return repository.importProducts(chunk, productWriteHooks, createdCategories).size();
+    }
+
     public CompletableFuture<Void> renameCategory(String oldName, String newName) {
-         return CompletableFuture.runAsync(() -> {
+         return storage.runWrite(() -> {
             try {
-                repository.renameCategory(oldName, newName);
-                reloadCache();
+                if (repository.renameCategory(oldName, newName, categoryRenameHooks) > 0) {
+                    applyDelta((current, version) -> current.withCategoryRenamed(version, oldName, newName));
+                }
                 org.bukkit.Bukkit.getPluginManager().callEvent(new ru.minimalprice.minimalprice.features.price.events.CategoryRenameEvent(oldName, newName));
             } catch (SQLException e) {
                 throw new RuntimeException(e);
@@ -99,12 +596,12 @@ public class PriceManager {
     }
     
     public CompletableFuture<Integer> renameProduct(String oldName, String newName) {
-        return CompletableFuture.supplyAsync(() -> {
+        return storage.supplyWrite(() -> {
             try {
                 int count = repository.renameProduct(oldName, newName);
-                reloadCache();
                 if (count > 0) {
-                     org.bukkit.Bukkit.getPluginManager().callEvent(new ru.minimalprice.minimalprice.features.price.events.ProductRenameEvent(oldName, newName));
+                    applyDelta((current, version) -> current.withProductRenamed(version, oldName, newName));
+                    org.bukkit.Bukkit.getPluginManager().callEvent(new ru.minimalprice.minimalprice.features.price.events.ProductRenameEvent(oldName, newName));
                 }
                 return count;
             } catch (SQLException e) {
@@ -112,4 +609,15 @@ public class PriceManager {
             }
         });
     }
+
+    // A published generation and the one it replaced
+    private static final class Transition {
+        private final CatalogSnapshot before;
+        private final CatalogSnapshot after;
+
+        private Transition(CatalogSnapshot before, CatalogSnapshot after) {
+            this.before = before;
+            this.after = after;
+        }
+    }
 }
@@ -11,15 +11,20 @@ import org.bukkit.command.TabCompleter;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import ru.minimalprice.minimalprice.features.price.models.Category;
-import ru.minimalprice.minimalprice.features.price.models.Product;
+import ru.minimalprice.minimalprice.MinimalPrice;
+import ru.minimalprice.minimalprice.features.price.cache.CompletionIndex;
+import ru.minimalprice.minimalprice.features.price.transfer.CatalogTransfer;
 
 public class PriceTabCompleter implements TabCompleter {
 
+    private final MinimalPrice plugin;
     private final PriceManager priceManager;
+    private final CatalogTransfer catalogTransfer;
 
-    public PriceTabCompleter(PriceManager priceManager) {
+    public PriceTabCompleter(MinimalPrice plugin, PriceManager priceManager, CatalogTransfer catalogTransfer) {
+        this.plugin = plugin;
         this.priceManager = priceManager;
+        this.catalogTransfer = catalogTransfer;
     }
 
     @Override
@@ -28,7 +33,7 @@ public class PriceTabCompleter implements TabCompleter {
 
         // /minimal [sub]
         if (args.length == 1) {
-            return filter(List.of("create", "add", "set", "reload"), args[0]);
+            return filter(List.of("create", "add", "set", "reload", "stats", "history", "search", "watch", "unwatch", "import", "export"), args[0]);
         }
         
         String sub = args[0].toLowerCase();
@@ -43,10 +48,33 @@ public class PriceTabCompleter implements TabCompleter {
             if (args.length == 2) return filter(List.of("price"), args[1]);
             if (args.length == 3) {
                 // Return categories
-                return filter(priceManager.getCategories().stream().map(Category::getName).collect(Collectors.toList()), args[2]);
+                return complete(priceManager.getSnapshot().getCategoryCompletions(), args[2]);
             }
         }
         
+        // /minimal import [file]
+        if (sub.equals("import") && args.length == 2) {
+            return filter(catalogTransfer.listFiles(), args[1]);
+        }
+
+        // /minimal history [item] [hour|day]
+        if (sub.equals("history")) {
+            if (args.length == 2) {
+                // Spaces are typed as '_' here; only the (capped) results are converted
+                List<String> names = complete(priceManager.getSnapshot().getProductCompletions(), args[1].replace('_', ' '));
+                names.replaceAll(name -> name.replace(' ', '_'));
+                return names;
+            }
+            if (args.length == 3) return filter(List.of("hour", "day"), args[2]);
+        }
+
+        // /minimal watch [item] [price], /minimal unwatch [item]
+        if ((sub.equals("watch") || sub.equals("unwatch")) && args.length == 2) {
+            List<String> names = complete(priceManager.getSnapshot().getProductCompletions(), args[1].replace('_', ' '));
+            names.replaceAll(name -> name.replace(' ', '_'));
+            return names;
+        }
+
         // /minimal set [kategori|goods]
         if (sub.equals("set")) {
             if (args.length == 2) return filter(List.of("kategori", "goods"), args[1]);
@@ -54,19 +82,12 @@ public class PriceTabCompleter implements TabCompleter {
             String type = args[1].toLowerCase();
             if (type.equals("kategori")) {
                 if (args.length == 3) {
-                     return filter(priceManager.getCategories().stream().map(Category::getName).collect(Collectors.toList()), args[2]);
+                     return complete(priceManager.getSnapshot().getCategoryCompletions(), args[2]);
                 }
             } else if (type.equals("goods")) {
                 if (args.length == 3) {
-                     // We don't have a fast "all products" lookup in cache easily without iterating all cats.
-                     // But we can iterate.
-                     List<String> allProducts = new ArrayList<>();
-                     for (Category cat : priceManager.getCategories()) {
-                         for (Product p : priceManager.getProducts(cat.getId())) {
-                             allProducts.add(p.getName());
-                         }
-                     }
-                     return filter(allProducts, args[2]);
+                     // Sorted index built with the catalog: a binary search instead of a scan per key press
+                     return complete(priceManager.getSnapshot().getProductCompletions(), args[2]);
                 }
             }
         }
@@ -74,6 +95,13 @@ public class PriceTabCompleter implements TabCompleter {
         return Collections.emptyList();
     }
     
+    private List<String> complete(CompletionIndex index, String prefix) {
+        int limit = Math.max(1, plugin.getConfig().getInt("tab_completion.limit", 50));
+        List<String> result = new ArrayList<>(Math.min(limit, index.size()));
+        index.complete(prefix, limit, result);
+        return result;
+    }
+
     private List<String> filter(List<String> src, String arg) {
         String lower = arg.toLowerCase();
         return src.stream().filter(s -> s.toLowerCase().startsWith(lower)).collect(Collectors.toList());
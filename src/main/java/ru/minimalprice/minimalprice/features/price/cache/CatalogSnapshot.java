@@ -0,0 +1,254 @@
+package ru.minimalprice.minimalprice.features.price.cache;
+
+import ru.minimalprice.minimalprice.features.price.models.CatalogFingerprint;
+import ru.minimalprice.minimalprice.features.price.models.Category;
+import ru.minimalprice.minimalprice.features.price.models.Money;
+import ru.minimalprice.minimalprice.features.price.models.Product;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable view of the whole catalog at one point in time.
+ * A new snapshot is built for every change and published as a whole, so readers
+ * never observe a half-updated catalog. Products are held in {@link ProductColumns};
+ * delta methods ({@code with...}) share every column they do not change with the previous generation.
+ * Name lookups go through a {@link NameIndex} and tab completion through {@link CompletionIndex}es, built
+ * together with each generation off the main thread, so commands never pay for a rebuild and never see an
+ * index of another generation. A delta that leaves names untouched (price updates) carries them over.
+ * Per-category {@link CategoryStatistics} and sort orders ({@link CategoryOrder}) are updated by the product
+ * deltas from the changed rows only.
+ */
+public final class CatalogSnapshot {
+
+    private final long version;
+    private final List<Category> categories;
+    private final ProductColumns columns;
+    private final int priceScale;
+    private final NameIndex nameIndex;
+    private final CompletionIndex categoryCompletions;
+    private final CompletionIndex productCompletions;
+    private final CategoryStatistics[] statistics; // per slot of the columns
+    private final CategoryOrder[] orders;          // per slot of the columns
+
+    private CatalogSnapshot(long version, List<Category> categories, ProductColumns columns, int priceScale) {
+        this(version, categories, columns, priceScale, null, CategoryStatistics.of(columns), CategoryOrder.of(columns));
+    }
+
+    // previous: the generation a delta starts from, whose indexes are reused where they still apply
+    private CatalogSnapshot(long version, List<Category> categories, ProductColumns columns, int priceScale,
+                            CatalogSnapshot previous, CategoryStatistics[] statistics, CategoryOrder[] orders) {
+        this.version = version;
+        this.categories = categories;
+        this.columns = columns;
+        this.priceScale = priceScale;
+        this.statistics = statistics;
+        this.orders = orders;
+        boolean sameCategories = previous != null && previous.categories == categories;
+        this.nameIndex = sameCategories && columns.sharesLayout(previous.columns)
+                ? previous.nameIndex : new NameIndex(categories, columns);
+        this.categoryCompletions = sameCategories ? previous.categoryCompletions : categoryCompletions(categories);
+        this.productCompletions = previous != null && columns.sharesNames(previous.columns)
+                ? previous.productCompletions : productCompletions(columns);
+    }
+
+    private static CompletionIndex categoryCompletions(List<Category> categories) {
+        List<String> names = new ArrayList<>(categories.size());
+        for (Category category : categories) {
+            names.add(category.getName());
+        }
+        return CompletionIndex.of(names);
+    }
+
+    private static CompletionIndex productCompletions(ProductColumns columns) {
+        // Names of live rows only: the dictionary also keeps names that were renamed away
+        boolean[] seen = new boolean[columns.dictionary().size()];
+        List<String> names = new ArrayList<>();
+        for (int row = 0; row < columns.size(); row++) {
+            int nameId = columns.nameId(row);
+            if (!seen[nameId]) {
+                seen[nameId] = true;
+                names.add(columns.productName(row));
+            }
+        }
+        return CompletionIndex.of(names);
+    }
+
+    // Category order must match the slot order of the columns
+    public static CatalogSnapshot of(long version, List<Category> categories, ProductColumns columns, int priceScale) {
+        return new CatalogSnapshot(version, Collections.unmodifiableList(new ArrayList<>(categories)), columns, priceScale);
+    }
+
+    public static CatalogSnapshot empty(int priceScale) {
+        return new CatalogSnapshot(0L, List.of(), ProductColumns.empty(), priceScale);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getPriceScale() {
+        return priceScale;
+    }
+
+    public List<Category> getCategories() {
+        return categories;
+    }
+
+    public ProductColumns getColumns() {
+        return columns;
+    }
+
+    // Allocation-free iteration over one category
+    public void forEachProduct(int categoryId, ProductVisitor visitor) {
+        columns.forEachProduct(categoryId, visitor);
+    }
+
+    // Materializes the category's rows; prefer forEachProduct or the row API of getColumns() on hot paths
+    public List<Product> getProducts(int categoryId) {
+        int start = columns.rowStart(categoryId);
+        int end = columns.rowEnd(categoryId);
+        if (start == end) {
+            return Collections.emptyList();
+        }
+        List<Product> products = new ArrayList<>(end - start);
+        for (int row = start; row < end; row++) {
+            products.add(new Product(columns.productId(row), categoryId, columns.productName(row),
+                    Money.ofMinor(columns.priceMinor(row), priceScale)));
+        }
+        return Collections.unmodifiableList(products);
+    }
+
+    public CompletionIndex getCategoryCompletions() {
+        return categoryCompletions;
+    }
+
+    // Distinct product names over all categories
+    public CompletionIndex getProductCompletions() {
+        return productCompletions;
+    }
+
+    // Empty statistics for an unknown category
+    public CategoryStatistics getStatistics(int categoryId) {
+        int slot = columns.slot(categoryId);
+        return slot < 0 ? CategoryStatistics.empty() : statistics[slot];
+    }
+
+    // Sort orders of the category's rows; empty for an unknown category
+    public CategoryOrder getOrder(int categoryId) {
+        int slot = columns.slot(categoryId);
+        return slot < 0 ? CategoryOrder.empty() : orders[slot];
+    }
+
+    // Null if absent
+    public Category getCategory(int categoryId) {
+        int slot = columns.slot(categoryId);
+        return slot < 0 ? null : categories.get(slot);
+    }
+
+    // Exact name, as stored; null if absent
+    public Category findCategory(String name) {
+        return nameIndex.category(name);
+    }
+
+    // Case-insensitive, for names typed in commands; null if absent
+    public Category findCategoryIgnoreCase(String name) {
+        return nameIndex.categoryIgnoreCase(name);
+    }
+
+    // Row of the product (see getColumns()) with exactly this name in the category, or -1
+    public int findProductRow(int categoryId, String name) {
+        return nameIndex.productRow(categoryId, name, false);
+    }
+
+    public int findProductRowIgnoreCase(int categoryId, String name) {
+        return nameIndex.productRow(categoryId, name, true);
+    }
+
+    // Row of the product with this id in any category, or -1; its category is getColumns().categoryIdOf(row)
+    public int findProductRowById(int productId) {
+        return nameIndex.productRowById(productId);
+    }
+
+    public boolean containsCategory(int categoryId) {
+        return columns.containsCategory(categoryId);
+    }
+
+    public int getProductCount() {
+        return columns.size();
+    }
+
+    // True when both snapshots hold the same catalog, regardless of their versions
+    public boolean sameContent(CatalogSnapshot other) {
+        if (priceScale != other.priceScale || categories.size() != other.categories.size()) {
+            return false;
+        }
+        for (int i = 0; i < categories.size(); i++) {
+            Category a = categories.get(i);
+            Category b = other.categories.get(i);
+            if (a.getId() != b.getId() || !a.getName().equals(b.getName())) return false;
+        }
+        return columns.sameContent(other.columns);
+    }
+
+    public CatalogFingerprint fingerprint() {
+        int maxProductId = 0;
+        long priceSum = 0;
+        for (int row = 0; row < columns.size(); row++) {
+            maxProductId = Math.max(maxProductId, columns.productId(row));
+            priceSum += columns.priceMinor(row);
+        }
+        return new CatalogFingerprint(categories.size(), columns.size(), maxProductId, priceSum);
+    }
+
+    // A known id keeps its position (the columns keep its slot), so list and slot order stay aligned
+    public CatalogSnapshot withCategory(long nextVersion, Category category) {
+        List<Category> nextCategories = new ArrayList<>(categories.size() + 1);
+        boolean replaced = false;
+        for (Category existing : categories) {
+            if (existing.getId() == category.getId()) {
+                nextCategories.add(category);
+                replaced = true;
+            } else {
+                nextCategories.add(existing);
+            }
+        }
+        if (!replaced) {
+            nextCategories.add(category);
+        }
+        ProductColumns nextColumns = columns.withCategory(category.getId());
+        return new CatalogSnapshot(nextVersion, Collections.unmodifiableList(nextCategories), nextColumns, priceScale, this,
+                CategoryStatistics.withSlots(statistics, nextColumns.categoryCount()),
+                CategoryOrder.withSlots(orders, nextColumns.categoryCount()));
+    }
+
+    public CatalogSnapshot withCategoryRenamed(long nextVersion, String oldName, String newName) {
+        List<Category> nextCategories = new ArrayList<>(categories.size());
+        for (Category existing : categories) {
+            nextCategories.add(existing.getName().equals(oldName) ? new Category(existing.getId(), newName) : existing);
+        }
+        return new CatalogSnapshot(nextVersion, Collections.unmodifiableList(nextCategories), columns, priceScale, this,
+                statistics, orders);
+    }
+
+    // Inserts the product or replaces the row with the same id
+    public CatalogSnapshot withProduct(long nextVersion, Product product) {
+        return withProducts(nextVersion, List.of(product));
+    }
+
+    // Applies a batch of inserted/updated rows as one generation
+    public CatalogSnapshot withProducts(long nextVersion, List<Product> changed) {
+        ProductColumns nextColumns = columns.withProducts(changed);
+        return new CatalogSnapshot(nextVersion, categories, nextColumns, priceScale, this,
+                CategoryStatistics.afterChange(statistics, columns, nextColumns, changed),
+                CategoryOrder.afterChange(orders, columns, nextColumns, changed));
+    }
+
+    // Exact names, like PriceStorage#renameProduct
+    public CatalogSnapshot withProductRenamed(long nextVersion, String oldName, String newName) {
+        ProductColumns nextColumns = columns.withProductRenamed(oldName, newName);
+        return new CatalogSnapshot(nextVersion, categories, nextColumns, priceScale, this, statistics,
+                CategoryOrder.afterRename(orders, columns, nextColumns));
+    }
+}
@@ -0,0 +1,190 @@
+package ru.minimalprice.minimalprice.features.price.cache;
+
+import ru.minimalprice.minimalprice.features.price.models.Category;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary copy of a {@link CatalogSnapshot}, used to serve the catalog right after startup
+ * while the database load runs in the background.
+ * <p>
+ * Layout (big-endian): magic, format version, price scale, category/product/name counts,
+ * categories (id, name), name dictionary, category row offsets, then the id, price and name id columns.
+ * A CRC32 of everything before it closes the file. Strings are a byte length followed by UTF-8.
+ */
+public final class CatalogSnapshotFile {
+
+    private static final int MAGIC = 0x4D50_4353; // "MPCS"
+    // Bump whenever the layout changes; files of another version are ignored
+    private static final int FORMAT_VERSION = 1;
+
+    private CatalogSnapshotFile() {
+    }
+
+    // Writes to a temporary file first, so a crash never leaves a truncated snapshot behind
+    public static void write(Path file, CatalogSnapshot snapshot) throws IOException {
+        ProductColumns columns = snapshot.getColumns();
+        List<Category> categories = snapshot.getCategories();
+        NameDictionary dictionary = columns.dictionary();
+        String[] names = dictionary.names();
+        int nameCount = dictionary.size();
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (OutputStream raw = new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024)) {
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(raw, crc));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(snapshot.getPriceScale());
+            out.writeInt(categories.size());
+            out.writeInt(columns.size());
+            out.writeInt(nameCount);
+
+            for (Category category : categories) {
+                out.writeInt(category.getId());
+                writeString(out, category.getName());
+            }
+            for (int i = 0; i < nameCount; i++) {
+                writeString(out, names[i]);
+            }
+            for (int slot = 0; slot < categories.size(); slot++) {
+                out.writeInt(columns.slotStart(slot));
+            }
+            out.writeInt(columns.size());
+            for (int row = 0; row < columns.size(); row++) {
+                out.writeInt(columns.productId(row));
+            }
+            for (int row = 0; row < columns.size(); row++) {
+                out.writeLong(columns.priceMinor(row));
+            }
+            for (int row = 0; row < columns.size(); row++) {
+                out.writeInt(columns.nameId(row));
+            }
+            out.flush();
+
+            // The checksum itself is not part of the checked range
+            new DataOutputStream(raw).writeInt((int) crc.getValue());
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads and decodes the file. Returns null when it does not exist, belongs to another format version
+     * or fails the checksum; the caller then simply waits for the database load.
+     */
+    public static CatalogSnapshot read(Path file, long version) throws IOException {
+        // Read into the heap rather than mapping: a mapping lives until GC and, on Windows,
+        // blocks the ATOMIC_MOVE in write() that replaces this file
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < 7 * Integer.BYTES || channel.size() > Integer.MAX_VALUE - 8) {
+                return null;
+            }
+            buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    return null; // Truncated while reading
+                }
+            }
+            buffer.flip();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+
+        int checkedLength = buffer.capacity() - Integer.BYTES;
+        CRC32 crc = new CRC32();
+        ByteBuffer checked = buffer.duplicate();
+        checked.limit(checkedLength);
+        crc.update(checked);
+        if ((int) crc.getValue() != buffer.getInt(checkedLength)) {
+            return null;
+        }
+
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                return null;
+            }
+            int priceScale = buffer.getInt();
+            int categoryCount = buffer.getInt();
+            int productCount = buffer.getInt();
+            int nameCount = buffer.getInt();
+
+            List<Category> categories = new ArrayList<>(categoryCount);
+            int[] categoryIds = new int[categoryCount];
+            for (int slot = 0; slot < categoryCount; slot++) {
+                int id = buffer.getInt();
+                categories.add(new Category(id, readString(buffer)));
+                categoryIds[slot] = id;
+            }
+
+            NameDictionary dictionary = new NameDictionary(nameCount);
+            for (int i = 0; i < nameCount; i++) {
+                dictionary.intern(readString(buffer));
+            }
+
+            int[] offsets = new int[categoryCount + 1];
+            buffer.asIntBuffer().get(offsets);
+            buffer.position(buffer.position() + offsets.length * Integer.BYTES);
+            int[] ids = new int[productCount];
+            buffer.asIntBuffer().get(ids);
+            buffer.position(buffer.position() + ids.length * Integer.BYTES);
+            long[] prices = new long[productCount];
+            buffer.asLongBuffer().get(prices);
+            buffer.position(buffer.position() + prices.length * Long.BYTES);
+            int[] nameIds = new int[productCount];
+            buffer.asIntBuffer().get(nameIds);
+
+            if (!isConsistent(offsets, productCount, nameIds, dictionary.size())) {
+                return null;
+            }
+            return CatalogSnapshot.of(version, categories,
+                    ProductColumns.fromArrays(categoryIds, offsets, ids, prices, nameIds, dictionary), priceScale);
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            return null;
+        }
+    }
+
+    // A matching checksum rules out corruption, not a buggy writer; cheap bounds checks keep lookups safe
+    private static boolean isConsistent(int[] offsets, int productCount, int[] nameIds, int nameCount) {
+        if (offsets[0] != 0 || offsets[offsets.length - 1] != productCount) return false;
+        for (int i = 1; i < offsets.length; i++) {
+            if (offsets[i] < offsets[i - 1]) return false;
+        }
+        for (int nameId : nameIds) {
+            if (nameId < 0 || nameId >= nameCount) return false;
+        }
+        return true;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid string length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
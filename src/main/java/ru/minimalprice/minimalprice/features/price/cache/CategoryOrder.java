@@ -0,0 +1,190 @@
+package ru.minimalprice.minimalprice.features.price.cache;
+
+import ru.minimalprice.minimalprice.features.price.models.Product;
+import ru.minimalprice.minimalprice.features.price.models.SortOrder;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Row offsets of one category sorted by price and by name; a delta merges only the rows it changed
+public final class CategoryOrder {
+
+    private static final CategoryOrder EMPTY = new CategoryOrder(new int[0], new int[0]);
+
+    private final int[] byPrice; // cheapest first; equal prices by name
+    private final int[] byName;  // case-insensitive, then exact
+
+    private CategoryOrder(int[] byPrice, int[] byName) {
+        this.byPrice = byPrice;
+        this.byName = byName;
+    }
+
+    public static CategoryOrder empty() {
+        return EMPTY;
+    }
+
+    public int size() {
+        return byPrice.length;
+    }
+
+    // Offset (add rowStart of the category for the row) of the index-th item in the order
+    public int offset(SortOrder order, int index) {
+        switch (order) {
+            case PRICE_DESC:
+                return byPrice[byPrice.length - 1 - index];
+            case NAME:
+                return byName[index];
+            default:
+                return byPrice[index];
+        }
+    }
+
+    // --- Building (package-private, driven by CatalogSnapshot) ------------------------------
+
+    static CategoryOrder[] of(ProductColumns columns) {
+        CategoryOrder[] orders = new CategoryOrder[columns.categoryCount()];
+        for (int slot = 0; slot < orders.length; slot++) {
+            orders[slot] = build(columns, slot);
+        }
+        return orders;
+    }
+
+    private static CategoryOrder build(ProductColumns columns, int slot) {
+        int start = columns.slotStart(slot);
+        int count = columns.slotStart(slot + 1) - start;
+        if (count == 0) {
+            return EMPTY;
+        }
+        Integer[] offsets = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            offsets[i] = i;
+        }
+        Arrays.sort(offsets, byPrice(columns, start));
+        int[] byPrice = unbox(offsets);
+        Arrays.sort(offsets, byName(columns, start));
+        return new CategoryOrder(byPrice, unbox(offsets));
+    }
+
+    // A slot added by ProductColumns#withCategory starts empty
+    static CategoryOrder[] withSlots(CategoryOrder[] orders, int slots) {
+        if (orders.length == slots) {
+            return orders;
+        }
+        CategoryOrder[] next = Arrays.copyOf(orders, slots);
+        Arrays.fill(next, orders.length, slots, EMPTY);
+        return next;
+    }
+
+    // Orders after ProductColumns#withProducts turned before into after
+    static CategoryOrder[] afterChange(CategoryOrder[] orders, ProductColumns before, ProductColumns after,
+                                       List<Product> changed) {
+        Map<Integer, Moved> bySlot = new HashMap<>();
+        Set<Integer> seen = new HashSet<>();
+        for (Product product : changed) {
+            if (!seen.add(product.getId())) continue;
+            int categoryId = product.getCategoryId();
+            int slot = after.slot(categoryId);
+            int newRow = after.rowOf(categoryId, product.getId());
+            int offset = newRow - after.slotStart(slot);
+            int oldRow = before.rowOf(categoryId, product.getId());
+            boolean priceMoved = oldRow < 0 || before.priceMinor(oldRow) != after.priceMinor(newRow);
+            boolean nameMoved = oldRow < 0 || before.nameId(oldRow) != after.nameId(newRow);
+            if (!priceMoved && !nameMoved) continue;
+
+            Moved moved = bySlot.computeIfAbsent(slot, s -> new Moved());
+            // A name is also the tie-break of the price order
+            moved.price.add(offset);
+            if (nameMoved) moved.name.add(offset);
+        }
+
+        CategoryOrder[] next = orders.clone();
+        for (Map.Entry<Integer, Moved> entry : bySlot.entrySet()) {
+            int slot = entry.getKey();
+            int start = after.slotStart(slot);
+            int count = after.slotStart(slot + 1) - start;
+            CategoryOrder current = next[slot];
+            Moved moved = entry.getValue();
+            int[] byPrice = merge(current.byPrice, moved.price, count, byPrice(after, start));
+            int[] byName = moved.name.isEmpty() ? current.byName : merge(current.byName, moved.name, count, byName(after, start));
+            next[slot] = new CategoryOrder(byPrice, byName);
+        }
+        return next;
+    }
+
+    // Renames touch rows anywhere in the catalog; affected categories are rebuilt (renames are rare)
+    static CategoryOrder[] afterRename(CategoryOrder[] orders, ProductColumns before, ProductColumns after) {
+        if (before.sharesNames(after)) {
+            return orders;
+        }
+        CategoryOrder[] next = orders.clone();
+        for (int slot = 0; slot < next.length; slot++) {
+            for (int row = after.slotStart(slot); row < after.slotStart(slot + 1); row++) {
+                if (before.nameId(row) != after.nameId(row)) {
+                    next[slot] = build(after, slot);
+                    break;
+                }
+            }
+        }
+        return next;
+    }
+
+    // The permutation without the moved offsets, with them merged back at their sorted positions
+    private static int[] merge(int[] order, Set<Integer> moved, int count, Comparator<Integer> comparator) {
+        Integer[] sortedMoved = moved.toArray(new Integer[0]);
+        Arrays.sort(sortedMoved, comparator);
+        boolean[] isMoved = new boolean[count];
+        for (int offset : sortedMoved) {
+            isMoved[offset] = true;
+        }
+        int[] next = new int[count];
+        int m = 0;
+        int out = 0;
+        for (int offset : order) {
+            if (isMoved[offset]) continue;
+            while (m < sortedMoved.length && comparator.compare(sortedMoved[m], offset) < 0) {
+                next[out++] = sortedMoved[m++];
+            }
+            next[out++] = offset;
+        }
+        while (m < sortedMoved.length) {
+            next[out++] = sortedMoved[m++];
+        }
+        return next;
+    }
+
+    private static Comparator<Integer> byPrice(ProductColumns columns, int start) {
+        Comparator<Integer> name = byName(columns, start);
+        return (a, b) -> {
+            int c = Long.compare(columns.priceMinor(start + a), columns.priceMinor(start + b));
+            return c != 0 ? c : name.compare(a, b);
+        };
+    }
+
+    private static Comparator<Integer> byName(ProductColumns columns, int start) {
+        return (a, b) -> {
+            String x = columns.productName(start + a);
+            String y = columns.productName(start + b);
+            int c = String.CASE_INSENSITIVE_ORDER.compare(x, y);
+            if (c == 0) c = x.compareTo(y);
+            return c != 0 ? c : Integer.compare(a, b);
+        };
+    }
+
+    private static int[] unbox(Integer[] values) {
+        int[] result = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[i];
+        }
+        return result;
+    }
+
+    private static final class Moved {
+        private final Set<Integer> price = new HashSet<>();
+        private final Set<Integer> name = new HashSet<>();
+    }
+}
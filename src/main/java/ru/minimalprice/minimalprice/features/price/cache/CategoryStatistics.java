@@ -0,0 +1,177 @@
+package ru.minimalprice.minimalprice.features.price.cache;
+
+import ru.minimalprice.minimalprice.api.PriceStatistics;
+import ru.minimalprice.minimalprice.features.price.models.Product;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Sorted prices (minor units) of one category, so min, max and percentiles are array reads; shared while untouched
+public final class CategoryStatistics implements PriceStatistics {
+
+    private static final CategoryStatistics EMPTY = new CategoryStatistics(new long[0], 0L);
+
+    private final long[] sorted;
+    private final long sum;
+
+    private CategoryStatistics(long[] sorted, long sum) {
+        this.sorted = sorted;
+        this.sum = sum;
+    }
+
+    public static CategoryStatistics empty() {
+        return EMPTY;
+    }
+
+    public int count() {
+        return sorted.length;
+    }
+
+    public boolean isEmpty() {
+        return sorted.length == 0;
+    }
+
+    public long minMinor() {
+        return sorted.length == 0 ? 0L : sorted[0];
+    }
+
+    public long maxMinor() {
+        return sorted.length == 0 ? 0L : sorted[sorted.length - 1];
+    }
+
+    // Rounded half up to a whole minor unit
+    public long meanMinor() {
+        return sorted.length == 0 ? 0L : Math.round((double) sum / sorted.length);
+    }
+
+    // Mean of the two middle prices for an even count, rounded half up
+    public long medianMinor() {
+        int n = sorted.length;
+        if (n == 0) return 0L;
+        if ((n & 1) == 1) return sorted[n / 2];
+        long low = sorted[n / 2 - 1];
+        long high = sorted[n / 2];
+        return low + (high - low + 1) / 2;
+    }
+
+    // Nearest-rank percentile (0..100): the smallest price with at least p% of the prices at or below it
+    public long percentileMinor(double percent) {
+        int n = sorted.length;
+        if (n == 0) return 0L;
+        int rank = (int) Math.ceil(Math.min(Math.max(percent, 0.0), 100.0) / 100.0 * n);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    // --- Building (package-private, driven by CatalogSnapshot) ------------------------------
+
+    // One instance per slot of the columns, in slot order
+    static CategoryStatistics[] of(ProductColumns columns) {
+        CategoryStatistics[] statistics = new CategoryStatistics[columns.categoryCount()];
+        for (int slot = 0; slot < statistics.length; slot++) {
+            int start = columns.slotStart(slot);
+            int end = columns.slotStart(slot + 1);
+            if (start == end) {
+                statistics[slot] = EMPTY;
+                continue;
+            }
+            long[] prices = new long[end - start];
+            long sum = 0L;
+            for (int row = start; row < end; row++) {
+                prices[row - start] = columns.priceMinor(row);
+                sum += prices[row - start];
+            }
+            Arrays.sort(prices);
+            statistics[slot] = new CategoryStatistics(prices, sum);
+        }
+        return statistics;
+    }
+
+    // A slot added by ProductColumns#withCategory starts empty
+    static CategoryStatistics[] withSlots(CategoryStatistics[] statistics, int slots) {
+        if (statistics.length == slots) {
+            return statistics;
+        }
+        CategoryStatistics[] next = Arrays.copyOf(statistics, slots);
+        Arrays.fill(next, statistics.length, slots, EMPTY);
+        return next;
+    }
+
+    // Statistics after changed turned before into after: an updated row swaps its old price, an inserted row adds one
+    static CategoryStatistics[] afterChange(CategoryStatistics[] statistics, ProductColumns before, ProductColumns after,
+                                            List<Product> changed) {
+        Map<Integer, Change> bySlot = new HashMap<>();
+        // A product written twice in one batch counts once, with its final price
+        Set<Integer> seen = new HashSet<>();
+        for (Product product : changed) {
+            if (!seen.add(product.getId())) continue;
+            int categoryId = product.getCategoryId();
+            int slot = after.slot(categoryId);
+            Change change = bySlot.computeIfAbsent(slot, s -> new Change());
+            int oldRow = before.rowOf(categoryId, product.getId());
+            if (oldRow >= 0) {
+                change.removed.add(before.priceMinor(oldRow));
+            }
+            change.added.add(after.priceMinor(after.rowOf(categoryId, product.getId())));
+        }
+
+        CategoryStatistics[] next = statistics.clone();
+        for (Map.Entry<Integer, Change> entry : bySlot.entrySet()) {
+            int slot = entry.getKey();
+            next[slot] = next[slot].merge(entry.getValue().removed.sorted(), entry.getValue().added.sorted());
+        }
+        return next;
+    }
+
+    // One pass over the sorted prices: drops each removed price once and interleaves the added ones
+    private CategoryStatistics merge(long[] removed, long[] added) {
+        long[] next = new long[sorted.length - removed.length + added.length];
+        long nextSum = sum;
+        int r = 0;
+        int a = 0;
+        int out = 0;
+        for (long price : sorted) {
+            if (r < removed.length && removed[r] == price) {
+                r++;
+                nextSum -= price;
+                continue;
+            }
+            while (a < added.length && added[a] < price) {
+                nextSum += added[a];
+                next[out++] = added[a++];
+            }
+            next[out++] = price;
+        }
+        while (a < added.length) {
+            nextSum += added[a];
+            next[out++] = added[a++];
+        }
+        return next.length == 0 ? EMPTY : new CategoryStatistics(next, nextSum);
+    }
+
+    private static final class Change {
+        private final LongList removed = new LongList();
+        private final LongList added = new LongList();
+    }
+
+    private static final class LongList {
+        private long[] values = new long[4];
+        private int size;
+
+        private void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private long[] sorted() {
+            long[] result = Arrays.copyOf(values, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+}
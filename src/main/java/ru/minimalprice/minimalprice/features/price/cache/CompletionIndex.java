@@ -0,0 +1,90 @@
+package ru.minimalprice.minimalprice.features.price.cache;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Distinct names sorted by their lower-cased form, for prefix completion.
+ * A lookup is a binary search for the first match plus a walk over at most {@code limit} entries;
+ * results are the stored String instances, so nothing is allocated per candidate.
+ */
+public final class CompletionIndex {
+
+    private static final CompletionIndex EMPTY = new CompletionIndex(new String[0], new String[0]);
+
+    private final String[] lowered; // sorted
+    private final String[] names;   // parallel to lowered
+
+    private CompletionIndex(String[] lowered, String[] names) {
+        this.lowered = lowered;
+        this.names = names;
+    }
+
+    public static CompletionIndex empty() {
+        return EMPTY;
+    }
+
+    // Duplicates are dropped; names differing only in case are kept, both complete the same prefix
+    public static CompletionIndex of(Collection<String> distinctNames) {
+        if (distinctNames.isEmpty()) {
+            return EMPTY;
+        }
+        int count = distinctNames.size();
+        String[] names = distinctNames.toArray(new String[0]);
+        String[] lower = new String[count];
+        for (int i = 0; i < count; i++) {
+            lower[i] = names[i].toLowerCase(Locale.ROOT);
+        }
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int c = lower[a].compareTo(lower[b]);
+            return c != 0 ? c : names[a].compareTo(names[b]);
+        });
+
+        String[] sortedLower = new String[count];
+        String[] sortedNames = new String[count];
+        int size = 0;
+        for (int index : order) {
+            if (size > 0 && sortedNames[size - 1].equals(names[index])) continue;
+            sortedLower[size] = lower[index];
+            sortedNames[size] = names[index];
+            size++;
+        }
+        return new CompletionIndex(Arrays.copyOf(sortedLower, size), Arrays.copyOf(sortedNames, size));
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    // Adds up to limit names starting with the prefix (ignoring case) to out, in sorted order
+    public void complete(String prefix, int limit, List<String> out) {
+        String lowerPrefix = prefix.toLowerCase(Locale.ROOT);
+        int added = 0;
+        for (int i = lowerBound(lowerPrefix); i < lowered.length && added < limit; i++) {
+            if (!lowered[i].startsWith(lowerPrefix)) break;
+            out.add(names[i]);
+            added++;
+        }
+    }
+
+    // First index whose lowered name is >= key
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = lowered.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (lowered[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
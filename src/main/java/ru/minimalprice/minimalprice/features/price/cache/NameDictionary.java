@@ -0,0 +1,64 @@
+package ru.minimalprice.minimalprice.features.price.cache;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Append-only table of distinct product names, shared by the snapshots of one catalog load.
+ * Rows store an int name id instead of a String reference per product.
+ * <p>
+ * Only the thread building or publishing a snapshot appends (under PriceManager's publish lock).
+ * Readers go through the array captured by their snapshot; appends never touch slots that
+ * an already published snapshot can see, and growing allocates a new array.
+ */
+public final class NameDictionary {
+
+    private String[] names;
+    private int size;
+    private final Map<String, Integer> ids;
+
+    public NameDictionary(int expectedSize) {
+        this.names = new String[Math.max(16, expectedSize)];
+        this.ids = new HashMap<>(Math.max(16, expectedSize * 2));
+    }
+
+    public int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+        }
+        names[size] = name;
+        ids.put(name, size);
+        return size++;
+    }
+
+    // Current backing array; valid for every id handed out so far
+    String[] names() {
+        return names;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Rough retained size: backing array, String objects and their Latin-1/UTF-16 payload, lookup map entries
+    long estimateBytes() {
+        long bytes = 16L + 4L * names.length;
+        for (int i = 0; i < size; i++) {
+            bytes += 24L + 16L + names[i].length() * (isLatin1(names[i]) ? 1L : 2L);
+        }
+        bytes += size * (32L + 16L); // HashMap node + boxed Integer
+        return bytes;
+    }
+
+    private static boolean isLatin1(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > 0xFF) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,106 @@
+package ru.minimalprice.minimalprice.features.price.cache;
+
+import ru.minimalprice.minimalprice.features.price.models.Category;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hash lookups for one {@link CatalogSnapshot}: category name -> category, (category id, product name) -> row
+ * and product id -> row (through the id table of the {@link ProductColumns}). Built with every snapshot, so it
+ * always matches its data.
+ * <p>
+ * Keys are hashed case-folded the way {@link String#equalsIgnoreCase} compares, so the same
+ * table answers exact and case-insensitive lookups; exact lookups just skip folded-only matches.
+ */
+final class NameIndex {
+
+    private final Map<String, Category> categoriesByName;
+    private final Map<String, Category> categoriesByFoldedName;
+    // Open addressing, row + 1 per slot (0 = empty); the length is a power of two
+    private final int[] productTable;
+    private final int mask;
+    private final ProductColumns columns;
+
+    NameIndex(List<Category> categories, ProductColumns columns) {
+        this.columns = columns;
+        this.categoriesByName = new HashMap<>(categories.size() * 2);
+        this.categoriesByFoldedName = new HashMap<>(categories.size() * 2);
+        for (Category category : categories) {
+            categoriesByName.put(category.getName(), category);
+            // First in catalog order wins, as with a linear scan
+            categoriesByFoldedName.putIfAbsent(fold(category.getName()), category);
+        }
+
+        int capacity = Integer.highestOneBit(Math.max(4, columns.size() * 2 - 1)) << 1;
+        this.productTable = new int[capacity];
+        this.mask = capacity - 1;
+        for (int slot = 0; slot < columns.categoryCount(); slot++) {
+            int categoryId = columns.categoryIdAt(slot);
+            int end = columns.slotStart(slot + 1);
+            for (int row = columns.slotStart(slot); row < end; row++) {
+                int i = hash(categoryId, columns.productName(row)) & mask;
+                while (productTable[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                productTable[i] = row + 1;
+            }
+        }
+    }
+
+    Category category(String name) {
+        return categoriesByName.get(name);
+    }
+
+    Category categoryIgnoreCase(String name) {
+        return categoriesByFoldedName.get(fold(name));
+    }
+
+    // Row of the product in the category, or -1. With ignoreCase the first row in catalog order wins.
+    int productRow(int categoryId, String name, boolean ignoreCase) {
+        int start = columns.rowStart(categoryId);
+        int end = columns.rowEnd(categoryId);
+        if (start == end) {
+            return -1;
+        }
+        int found = -1;
+        for (int i = hash(categoryId, name) & mask; productTable[i] != 0; i = (i + 1) & mask) {
+            int row = productTable[i] - 1;
+            if (row < start || row >= end) continue;
+            String candidate = columns.productName(row);
+            if (ignoreCase ? candidate.equalsIgnoreCase(name) : candidate.equals(name)) {
+                if (!ignoreCase) return row;
+                if (found == -1 || row < found) found = row;
+            }
+        }
+        return found;
+    }
+
+    // Row of the product with this id, or -1
+    int productRowById(int productId) {
+        return columns.rowOfId(productId);
+    }
+
+    private static int hash(int categoryId, String name) {
+        int h = categoryId;
+        for (int i = 0; i < name.length(); i++) {
+            h = 31 * h + foldChar(name.charAt(i));
+        }
+        // Spread the bits; the table index uses the low ones
+        return h ^ (h >>> 16);
+    }
+
+    private static String fold(String name) {
+        StringBuilder folded = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            folded.append(foldChar(name.charAt(i)));
+        }
+        return folded.toString();
+    }
+
+    // Two chars equalsIgnoreCase considers equal fold to the same char
+    private static char foldChar(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
@@ -0,0 +1,439 @@
+package ru.minimalprice.minimalprice.features.price.cache;
+
+import ru.minimalprice.minimalprice.features.price.models.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable column-oriented product table.
+ * <p>
+ * Rows are grouped by category: category slot {@code c} owns rows {@code [offsets[c], offsets[c + 1])}.
+ * Ids, prices (minor units) and name ids live in parallel primitive arrays, names in a {@link NameDictionary}.
+ * Rows are found by product id through a hash table built with the row layout.
+ * Deltas return a new instance and share every array they do not need to change.
+ */
+public final class ProductColumns {
+
+    private static final int[] NO_INTS = new int[0];
+    private static final long[] NO_LONGS = new long[0];
+
+    private final int[] categoryIds;  // category id per slot
+    private final long[] slotIndex;   // (category id << 32 | slot), sorted by id
+    private final int[] offsets;      // length = slots + 1
+    private final int[] ids;
+    private final long[] prices;
+    private final int[] nameIds;
+    private final int[] rowIndex;     // open addressing by product id, row + 1 per slot (0 = empty)
+    private final String[] names;     // dictionary array captured at build time
+    private final NameDictionary dictionary;
+
+    private ProductColumns(int[] categoryIds, int[] offsets, int[] ids, long[] prices, int[] nameIds,
+                           NameDictionary dictionary) {
+        this(categoryIds, buildSlotIndex(categoryIds), offsets, ids, prices, nameIds, buildRowIndex(ids), dictionary);
+    }
+
+    // For deltas: indexes are passed in, shared when the categories or rows they cover did not change
+    private ProductColumns(int[] categoryIds, long[] slotIndex, int[] offsets, int[] ids, long[] prices,
+                           int[] nameIds, int[] rowIndex, NameDictionary dictionary) {
+        this.categoryIds = categoryIds;
+        this.slotIndex = slotIndex;
+        this.offsets = offsets;
+        this.ids = ids;
+        this.prices = prices;
+        this.nameIds = nameIds;
+        this.rowIndex = rowIndex;
+        this.dictionary = dictionary;
+        this.names = dictionary.names();
+    }
+
+    // Sized by the number of categories, not by the largest id
+    private static long[] buildSlotIndex(int[] categoryIds) {
+        long[] index = new long[categoryIds.length];
+        for (int slot = 0; slot < categoryIds.length; slot++) {
+            index[slot] = ((long) categoryIds[slot] << 32) | slot;
+        }
+        Arrays.sort(index);
+        return index;
+    }
+
+    // Power-of-two length at least twice the row count, so probes stay short
+    private static int[] buildRowIndex(int[] ids) {
+        int[] index = new int[Integer.highestOneBit(Math.max(4, ids.length * 2 - 1)) << 1];
+        int mask = index.length - 1;
+        for (int row = 0; row < ids.length; row++) {
+            int i = hash(ids[row]) & mask;
+            while (index[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            index[i] = row + 1;
+        }
+        return index;
+    }
+
+    private static int hash(int productId) {
+        int h = productId * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    public static ProductColumns empty() {
+        return new ProductColumns(NO_INTS, new int[]{0}, NO_INTS, NO_LONGS, NO_INTS, new NameDictionary(0));
+    }
+
+    // Wraps decoded arrays as they are (see CatalogSnapshotFile); the arrays must not be modified afterwards
+    static ProductColumns fromArrays(int[] categoryIds, int[] offsets, int[] ids, long[] prices, int[] nameIds,
+                                     NameDictionary dictionary) {
+        return new ProductColumns(categoryIds, offsets, ids, prices, nameIds, dictionary);
+    }
+
+    public static Builder builder(int expectedCategories, int expectedProducts) {
+        return new Builder(expectedCategories, expectedProducts);
+    }
+
+    // --- Read API -------------------------------------------------------------------------
+
+    public int size() {
+        return ids.length;
+    }
+
+    public int categoryCount() {
+        return categoryIds.length;
+    }
+
+    public boolean containsCategory(int categoryId) {
+        return slotOf(categoryId) >= 0;
+    }
+
+    // First row of the category, or 0 if unknown (with rowEnd 0, the range is empty)
+    public int rowStart(int categoryId) {
+        int slot = slotOf(categoryId);
+        return slot < 0 ? 0 : offsets[slot];
+    }
+
+    public int rowEnd(int categoryId) {
+        int slot = slotOf(categoryId);
+        return slot < 0 ? 0 : offsets[slot + 1];
+    }
+
+    public int productId(int row) {
+        return ids[row];
+    }
+
+    public String productName(int row) {
+        return names[nameIds[row]];
+    }
+
+    public long priceMinor(int row) {
+        return prices[row];
+    }
+
+    // Category owning the row: the last slot starting at or before it (empty slots share their start)
+    public int categoryIdOf(int row) {
+        int low = 0;
+        int high = categoryIds.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (offsets[mid] <= row) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return categoryIds[low];
+    }
+
+    public void forEachProduct(int categoryId, ProductVisitor visitor) {
+        int end = rowEnd(categoryId);
+        for (int row = rowStart(categoryId); row < end; row++) {
+            visitor.visit(ids[row], names[nameIds[row]], prices[row]);
+        }
+    }
+
+    // Position of the category in slot order, which is also the snapshot's category order; -1 if absent
+    int slot(int categoryId) {
+        return slotOf(categoryId);
+    }
+
+    // Row of the product in the category, or -1
+    int rowOf(int categoryId, int productId) {
+        int slot = slotOf(categoryId);
+        return slot < 0 ? -1 : findRow(slot, productId);
+    }
+
+    // Row of the product with this id in any category, or -1
+    int rowOfId(int productId) {
+        int mask = rowIndex.length - 1;
+        for (int i = hash(productId) & mask; rowIndex[i] != 0; i = (i + 1) & mask) {
+            int row = rowIndex[i] - 1;
+            if (ids[row] == productId) return row;
+        }
+        return -1;
+    }
+
+    int nameId(int row) {
+        return nameIds[row];
+    }
+
+    int categoryIdAt(int slot) {
+        return categoryIds[slot];
+    }
+
+    int slotStart(int slot) {
+        return offsets[slot];
+    }
+
+    // Same categories and rows in the same order; dictionaries may differ
+    public boolean sameContent(ProductColumns other) {
+        if (!Arrays.equals(categoryIds, other.categoryIds) || !Arrays.equals(offsets, other.offsets)
+                || !Arrays.equals(ids, other.ids) || !Arrays.equals(prices, other.prices)) {
+            return false;
+        }
+        for (int row = 0; row < nameIds.length; row++) {
+            if (!names[nameIds[row]].equals(other.names[other.nameIds[row]])) return false;
+        }
+        return true;
+    }
+
+    // Every row has the same name in both (they share the name column)
+    boolean sharesNames(ProductColumns other) {
+        return nameIds == other.nameIds;
+    }
+
+    // Same rows at the same positions with the same names; prices may differ
+    boolean sharesLayout(ProductColumns other) {
+        return nameIds == other.nameIds && ids == other.ids && offsets == other.offsets;
+    }
+
+    public NameDictionary dictionary() {
+        return dictionary;
+    }
+
+    private int slotOf(int categoryId) {
+        int low = 0;
+        int high = slotIndex.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int id = (int) (slotIndex[mid] >> 32);
+            if (id < categoryId) {
+                low = mid + 1;
+            } else if (id > categoryId) {
+                high = mid - 1;
+            } else {
+                return (int) slotIndex[mid];
+            }
+        }
+        return -1;
+    }
+
+    // --- Deltas (callers serialize these, see PriceManager) -------------------------------
+
+    public ProductColumns withCategory(int categoryId) {
+        if (containsCategory(categoryId)) {
+            return this;
+        }
+        int[] nextCategoryIds = Arrays.copyOf(categoryIds, categoryIds.length + 1);
+        nextCategoryIds[categoryIds.length] = categoryId;
+        int[] nextOffsets = Arrays.copyOf(offsets, offsets.length + 1);
+        nextOffsets[offsets.length] = ids.length;
+        // The new slot is empty, so every row keeps its position
+        return new ProductColumns(nextCategoryIds, buildSlotIndex(nextCategoryIds), nextOffsets, ids, prices, nameIds,
+                rowIndex, dictionary);
+    }
+
+    // Updates rows with a known id in place (copy-on-write) and appends new ones to their category range
+    public ProductColumns withProducts(List<Product> changed) {
+        long[] nextPrices = prices.clone();
+        int[] nextNameIds = nameIds.clone();
+        boolean namesChanged = false;
+        // Per slot, by id: a product inserted twice in one batch gets one row with its last values
+        List<Map<Integer, Product>> inserts = null;
+
+        for (Product product : changed) {
+            int slot = slotOf(product.getCategoryId());
+            if (slot < 0) {
+                throw new IllegalArgumentException("Unknown category id: " + product.getCategoryId());
+            }
+            int row = findRow(slot, product.getId());
+            if (row >= 0) {
+                nextPrices[row] = product.getPrice().getMinor();
+                int nameId = dictionary.intern(product.getName());
+                namesChanged |= nameId != nextNameIds[row];
+                nextNameIds[row] = nameId;
+            } else {
+                if (inserts == null) {
+                    inserts = new ArrayList<>(categoryIds.length);
+                    for (int i = 0; i < categoryIds.length; i++) {
+                        inserts.add(null);
+                    }
+                }
+                Map<Integer, Product> slotInserts = inserts.get(slot);
+                if (slotInserts == null) {
+                    slotInserts = new LinkedHashMap<>();
+                    inserts.set(slot, slotInserts);
+                }
+                slotInserts.put(product.getId(), product);
+            }
+        }
+
+        if (inserts == null) {
+            // Price-only updates keep the name column, so indexes over names can be carried over
+            return new ProductColumns(categoryIds, slotIndex, offsets, ids, nextPrices, namesChanged ? nextNameIds : nameIds,
+                    rowIndex, dictionary);
+        }
+
+        int added = 0;
+        for (Map<Integer, Product> slotInserts : inserts) {
+            if (slotInserts != null) added += slotInserts.size();
+        }
+        int total = ids.length + added;
+        int[] newIds = new int[total];
+        long[] newPrices = new long[total];
+        int[] newNameIds = new int[total];
+        int[] newOffsets = new int[offsets.length];
+
+        int out = 0;
+        for (int slot = 0; slot < categoryIds.length; slot++) {
+            newOffsets[slot] = out;
+            int from = offsets[slot];
+            int length = offsets[slot + 1] - from;
+            System.arraycopy(ids, from, newIds, out, length);
+            System.arraycopy(nextPrices, from, newPrices, out, length);
+            System.arraycopy(nextNameIds, from, newNameIds, out, length);
+            out += length;
+
+            Map<Integer, Product> slotInserts = inserts.get(slot);
+            if (slotInserts == null) continue;
+            for (Product product : slotInserts.values()) {
+                newIds[out] = product.getId();
+                newPrices[out] = product.getPrice().getMinor();
+                newNameIds[out] = dictionary.intern(product.getName());
+                out++;
+            }
+        }
+        newOffsets[categoryIds.length] = out;
+        return new ProductColumns(categoryIds, slotIndex, newOffsets, newIds, newPrices, newNameIds,
+                buildRowIndex(newIds), dictionary);
+    }
+
+    // Renames every row named exactly oldName; returns this instance when nothing matched
+    public ProductColumns withProductRenamed(String oldName, String newName) {
+        int[] nextNameIds = null;
+        int newNameId = -1;
+        for (int row = 0; row < nameIds.length; row++) {
+            if (!names[nameIds[row]].equals(oldName)) continue;
+            if (nextNameIds == null) {
+                nextNameIds = nameIds.clone();
+                newNameId = dictionary.intern(newName);
+            }
+            nextNameIds[row] = newNameId;
+        }
+        if (nextNameIds == null) {
+            return this;
+        }
+        return new ProductColumns(categoryIds, slotIndex, offsets, ids, prices, nextNameIds, rowIndex, dictionary);
+    }
+
+    // Probes past rows of the same id in other categories, so the lookup stays per category
+    private int findRow(int slot, int productId) {
+        int start = offsets[slot];
+        int end = offsets[slot + 1];
+        int mask = rowIndex.length - 1;
+        for (int i = hash(productId) & mask; rowIndex[i] != 0; i = (i + 1) & mask) {
+            int row = rowIndex[i] - 1;
+            if (ids[row] == productId && row >= start && row < end) return row;
+        }
+        return -1;
+    }
+
+    // --- Footprint --------------------------------------------------------------------------
+
+    // Approximate retained heap of this table (arrays + dictionary)
+    public long estimateBytes() {
+        long arrays = 3 * 16L + 4L * ids.length + 8L * prices.length + 4L * nameIds.length
+                + 16L + 4L * categoryIds.length + 16L + 4L * offsets.length + 16L + 8L * slotIndex.length
+                + 16L + 4L * rowIndex.length;
+        return arrays + dictionary.estimateBytes();
+    }
+
+    /**
+     * Approximate retained heap of the same data in the former object layout:
+     * HashMap of boxed category ids to ArrayLists of Product + Money objects, names not shared.
+     */
+    public long estimateObjectLayoutBytes() {
+        long perProduct = 32L   // Product: header + id, categoryId, name and price references
+                + 24L           // Money: header + long + int
+                + 4L;           // ArrayList slot
+        long perCategory = 48L  // HashMap node + boxed Integer key
+                + 40L;          // ArrayList + backing array header
+        long strings = 0;
+        for (int row = 0; row < nameIds.length; row++) {
+            strings += 24L + 16L + names[nameIds[row]].length();
+        }
+        return ids.length * perProduct + categoryIds.length * perCategory + strings;
+    }
+
+    // Builds a table from rows arriving grouped by category (as PriceStorage#loadCatalog returns them)
+    public static final class Builder {
+        private final NameDictionary dictionary;
+        private int[] categoryIds;
+        private int[] offsets;
+        private int slots;
+        private int[] ids;
+        private long[] prices;
+        private int[] nameIds;
+        private int rows;
+
+        private Builder(int expectedCategories, int expectedProducts) {
+            this.dictionary = new NameDictionary(expectedProducts);
+            this.categoryIds = new int[Math.max(4, expectedCategories)];
+            this.offsets = new int[Math.max(4, expectedCategories) + 1];
+            this.ids = new int[Math.max(16, expectedProducts)];
+            this.prices = new long[ids.length];
+            this.nameIds = new int[ids.length];
+        }
+
+        public Builder category(int categoryId) {
+            if (slots == categoryIds.length) {
+                categoryIds = Arrays.copyOf(categoryIds, slots * 2);
+                offsets = Arrays.copyOf(offsets, slots * 2 + 1);
+            }
+            categoryIds[slots] = categoryId;
+            offsets[slots] = rows;
+            slots++;
+            offsets[slots] = rows;
+            return this;
+        }
+
+        // Adds a row to the category opened last
+        public Builder product(int productId, String name, long priceMinor) {
+            if (slots == 0) {
+                throw new IllegalStateException("No category opened");
+            }
+            if (rows == ids.length) {
+                int capacity = rows * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                prices = Arrays.copyOf(prices, capacity);
+                nameIds = Arrays.copyOf(nameIds, capacity);
+            }
+            ids[rows] = productId;
+            prices[rows] = priceMinor;
+            nameIds[rows] = dictionary.intern(name);
+            rows++;
+            offsets[slots] = rows;
+            return this;
+        }
+
+        public ProductColumns build() {
+            return new ProductColumns(
+                    Arrays.copyOf(categoryIds, slots),
+                    Arrays.copyOf(offsets, slots + 1),
+                    Arrays.copyOf(ids, rows),
+                    Arrays.copyOf(prices, rows),
+                    Arrays.copyOf(nameIds, rows),
+                    dictionary);
+        }
+    }
+}
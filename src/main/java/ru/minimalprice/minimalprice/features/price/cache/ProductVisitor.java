@@ -0,0 +1,7 @@
+package ru.minimalprice.minimalprice.features.price.cache;
+
+// Callback for iterating catalog rows without materializing Product objects
+@FunctionalInterface
+public interface ProductVisitor {
+    void visit(int productId, String name, long priceMinor);
+}
@@ -0,0 +1,46 @@
+package ru.minimalprice.minimalprice.features.price.events;
+
+import java.util.Set;
+
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+import org.jetbrains.annotations.NotNull;
+
+// Fired once after a bulk import instead of one ProductUpdateEvent per imported row
+public class CatalogImportEvent extends Event {
+    private static final HandlerList handlers = new HandlerList();
+    private final Set<String> createdCategories;
+    private final Set<String> updatedCategories;
+    private final long rowCount;
+
+    public CatalogImportEvent(Set<String> createdCategories, Set<String> updatedCategories, long rowCount) {
+        super(true); // Async event
+        this.createdCategories = createdCategories;
+        this.updatedCategories = updatedCategories;
+        this.rowCount = rowCount;
+    }
+
+    // Categories that did not exist before the import
+    public Set<String> getCreatedCategories() {
+        return createdCategories;
+    }
+
+    // Categories that existed before and received imported rows
+    public Set<String> getUpdatedCategories() {
+        return updatedCategories;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    @NotNull
+    @Override
+    public HandlerList getHandlers() {
+        return handlers;
+    }
+
+    public static HandlerList getHandlerList() {
+        return handlers;
+    }
+}
@@ -4,13 +4,15 @@ import org.bukkit.event.Event;
 import org.bukkit.event.HandlerList;
 import org.jetbrains.annotations.NotNull;
 
+import ru.minimalprice.minimalprice.features.price.models.Money;
+
 public class ProductUpdateEvent extends Event {
     private static final HandlerList handlers = new HandlerList();
     private final String categoryName;
     private final String productName;
-    private final double price;
+    private final Money price;
 
-    public ProductUpdateEvent(String categoryName, String productName, double price) {
+    public ProductUpdateEvent(String categoryName, String productName, Money price) {
         super(true); // Async event
         this.categoryName = categoryName;
         this.productName = productName;
@@ -25,7 +27,7 @@ public class ProductUpdateEvent extends Event {
         return productName;
     }
 
-    public double getPrice() {
+    public Money getPrice() {
         return price;
     }
 
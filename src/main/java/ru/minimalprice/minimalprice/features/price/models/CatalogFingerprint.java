@@ -0,0 +1,45 @@
+package ru.minimalprice.minimalprice.features.price.models;
+
+// Cheap aggregate over the catalog (price sum in minor units), used to detect drift between the cache and the database
+public class CatalogFingerprint {
+    private final int categoryCount;
+    private final int productCount;
+    private final int maxProductId;
+    private final long priceSum;
+
+    public CatalogFingerprint(int categoryCount, int productCount, int maxProductId, long priceSum) {
+        this.categoryCount = categoryCount;
+        this.productCount = productCount;
+        this.maxProductId = maxProductId;
+        this.priceSum = priceSum;
+    }
+
+    public int getCategoryCount() {
+        return categoryCount;
+    }
+
+    public int getProductCount() {
+        return productCount;
+    }
+
+    public int getMaxProductId() {
+        return maxProductId;
+    }
+
+    public long getPriceSum() {
+        return priceSum;
+    }
+
+    public boolean matches(CatalogFingerprint other) {
+        return categoryCount == other.categoryCount
+                && productCount == other.productCount
+                && maxProductId == other.maxProductId
+                && priceSum == other.priceSum;
+    }
+
+    @Override
+    public String toString() {
+        return "categories=" + categoryCount + ", products=" + productCount
+                + ", maxProductId=" + maxProductId + ", priceSum=" + priceSum;
+    }
+}
@@ -0,0 +1,98 @@
+package ru.minimalprice.minimalprice.features.price.models;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Exact price: an amount in minor units (e.g. cents) with a fixed number of fraction digits.
+ * Stored as INTEGER in mp_items, so no binary floating point is involved anywhere.
+ */
+public final class Money implements Comparable<Money> {
+
+    public static final int MAX_SCALE = 6;
+
+    private final long minor;
+    private final int scale;
+
+    private Money(long minor, int scale) {
+        this.minor = minor;
+        this.scale = scale;
+    }
+
+    public static Money ofMinor(long minor, int scale) {
+        checkScale(scale);
+        return new Money(minor, scale);
+    }
+
+    // Parses user input such as "19.99"; extra fraction digits are rounded half-up to the scale
+    public static Money parse(String text, int scale) {
+        checkScale(scale);
+        BigDecimal value;
+        try {
+            value = new BigDecimal(text.trim().replace(',', '.'));
+        } catch (NumberFormatException e) {
+            throw new NumberFormatException("Invalid price: " + text);
+        }
+        if (value.signum() < 0) {
+            throw new NumberFormatException("Price must not be negative: " + text);
+        }
+        try {
+            return new Money(value.setScale(scale, RoundingMode.HALF_UP).unscaledValue().longValueExact(), scale);
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Price out of range: " + text);
+        }
+    }
+
+    private static void checkScale(int scale) {
+        if (scale < 0 || scale > MAX_SCALE) {
+            throw new IllegalArgumentException("Price scale must be between 0 and " + MAX_SCALE + ": " + scale);
+        }
+    }
+
+    public long getMinor() {
+        return minor;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minor, scale);
+    }
+
+    public double toDouble() {
+        return minor / (double) MoneyFormat.pow10(scale);
+    }
+
+    // Appends the formatted amount without creating an intermediate String
+    public StringBuilder appendTo(StringBuilder sb) {
+        return MoneyFormat.appendTo(sb, minor, scale);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        if (scale == other.scale) {
+            return Long.compare(minor, other.minor);
+        }
+        return toBigDecimal().compareTo(other.toBigDecimal());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Money)) return false;
+        Money other = (Money) o;
+        return minor == other.minor && scale == other.scale;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minor) * 31 + scale;
+    }
+
+    @Override
+    public String toString() {
+        return MoneyFormat.format(minor, scale);
+    }
+}
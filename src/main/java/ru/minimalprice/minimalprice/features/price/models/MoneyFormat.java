@@ -0,0 +1,56 @@
+package ru.minimalprice.minimalprice.features.price.models;
+
+/**
+ * Allocation-free price formatting: digits are written straight into the caller's builder.
+ * Whole amounts are printed without a fraction ("20"), others with the full scale ("19.90").
+ */
+public final class MoneyFormat {
+
+    private static final long[] POW10 = new long[Money.MAX_SCALE + 1];
+    // One reusable builder per thread for callers that need a String after all
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(32));
+
+    static {
+        long value = 1;
+        for (int i = 0; i < POW10.length; i++) {
+            POW10[i] = value;
+            value *= 10;
+        }
+    }
+
+    private MoneyFormat() {
+    }
+
+    static long pow10(int scale) {
+        return POW10[scale];
+    }
+
+    public static StringBuilder appendTo(StringBuilder sb, long minor, int scale) {
+        if (minor < 0) {
+            sb.append('-');
+            minor = -minor;
+        }
+        long unit = POW10[scale];
+        long whole = minor / unit;
+        long fraction = minor % unit;
+
+        sb.append(whole);
+        if (fraction != 0) {
+            sb.append('.');
+            for (long digit = unit / 10; digit > 0; digit /= 10) {
+                sb.append((char) ('0' + (fraction / digit) % 10));
+            }
+        }
+        return sb;
+    }
+
+    public static String format(Money money) {
+        return format(money.getMinor(), money.getScale());
+    }
+
+    public static String format(long minor, int scale) {
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        return appendTo(sb, minor, scale).toString();
+    }
+}
@@ -0,0 +1,33 @@
+package ru.minimalprice.minimalprice.features.price.models;
+
+// A product's price between two published catalog generations, named as in the newer one
+public class PriceChange {
+    private final String categoryName;
+    private final String productName;
+    private final Money previousPrice;
+    private final Money price;
+
+    public PriceChange(String categoryName, String productName, Money previousPrice, Money price) {
+        this.categoryName = categoryName;
+        this.productName = productName;
+        this.previousPrice = previousPrice;
+        this.price = price;
+    }
+
+    public String getCategoryName() {
+        return categoryName;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    // Null when the product did not exist before
+    public Money getPreviousPrice() {
+        return previousPrice;
+    }
+
+    public Money getPrice() {
+        return price;
+    }
+}
@@ -4,9 +4,9 @@ public class Product {
     private final int id;
     private final int categoryId;
     private final String name;
-    private final double price;
+    private final Money price;
 
-    public Product(int id, int categoryId, String name, double price) {
+    public Product(int id, int categoryId, String name, Money price) {
         this.id = id;
         this.categoryId = categoryId;
         this.name = name;
@@ -25,7 +25,7 @@ public class Product {
         return name;
     }
 
-    public double getPrice() {
+    public Money getPrice() {
         return price;
     }
 }
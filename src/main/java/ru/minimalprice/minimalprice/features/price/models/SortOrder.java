@@ -0,0 +1,28 @@
+package ru.minimalprice.minimalprice.features.price.models;
+
+// Order of the items in a category listing. Each is kept precomputed in the catalog cache.
+public enum SortOrder {
+    PRICE("price"),
+    PRICE_DESC("price_desc"),
+    NAME("name");
+
+    private final String key;
+
+    SortOrder(String key) {
+        this.key = key;
+    }
+
+    // Value accepted by /minimal view and the view.default_sort / discord_sort settings
+    public String getKey() {
+        return key;
+    }
+
+    public static SortOrder fromKey(String key) {
+        for (SortOrder order : values()) {
+            if (order.key.equalsIgnoreCase(key)) {
+                return order;
+            }
+        }
+        return null;
+    }
+}
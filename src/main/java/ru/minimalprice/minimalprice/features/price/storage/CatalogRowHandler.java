@@ -0,0 +1,10 @@
+package ru.minimalprice.minimalprice.features.price.storage;
+
+// Receives catalog rows while they are streamed from the database, grouped by category
+public interface CatalogRowHandler {
+
+    void category(int categoryId, String name);
+
+    // Belongs to the category passed to the last category() call
+    void product(int productId, String name, long priceMinor);
+}
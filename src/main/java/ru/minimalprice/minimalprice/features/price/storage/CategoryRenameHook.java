@@ -0,0 +1,10 @@
+package ru.minimalprice.minimalprice.features.price.storage;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+// Extra bookkeeping that must commit in the same transaction as a category rename
+@FunctionalInterface
+public interface CategoryRenameHook {
+    void onRename(Connection conn, String oldName, String newName) throws SQLException;
+}
@@ -0,0 +1,155 @@
+package ru.minimalprice.minimalprice.features.price.storage;
+
+import ru.minimalprice.minimalprice.database.DatabaseManager;
+import ru.minimalprice.minimalprice.features.price.models.Product;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Append-only log of catalog mutations (mp_changelog) that lets servers sharing one database
+ * keep their caches current. Writers append inside the mutating transaction; readers poll for
+ * sequence numbers above the last one they applied.
+ */
+public class ChangeLog {
+
+    private static final String INSERT_SQL = "INSERT INTO mp_changelog " +
+            "(kind, origin, category_id, item_id, name, old_name, price, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final DatabaseManager databaseManager;
+    private final boolean enabled;
+    // Identifies this server's entries; new on every start, so nothing is skipped after a restart
+    private final String origin = UUID.randomUUID().toString();
+
+    public ChangeLog(DatabaseManager databaseManager, boolean enabled) {
+        this.databaseManager = databaseManager;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void categoryCreated(Connection conn, int categoryId, String name) throws SQLException {
+        if (!enabled) return;
+        try (PreparedStatement stmt = conn.prepareStatement(INSERT_SQL)) {
+            bind(stmt, ChangeLogEntry.Kind.CATEGORY_CREATE, categoryId, null, name, null, null);
+            stmt.executeUpdate();
+        }
+    }
+
+    public void categoryRenamed(Connection conn, String oldName, String newName) throws SQLException {
+        if (!enabled) return;
+        try (PreparedStatement stmt = conn.prepareStatement(INSERT_SQL)) {
+            bind(stmt, ChangeLogEntry.Kind.CATEGORY_RENAME, null, null, newName, oldName, null);
+            stmt.executeUpdate();
+        }
+    }
+
+    public void productsWritten(Connection conn, List<Product> stored) throws SQLException {
+        if (!enabled || stored.isEmpty()) return;
+        try (PreparedStatement stmt = conn.prepareStatement(INSERT_SQL)) {
+            for (Product product : stored) {
+                bind(stmt, ChangeLogEntry.Kind.PRODUCT_UPSERT, product.getCategoryId(), product.getId(),
+                        product.getName(), null, product.getPrice().getMinor());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    public void productRenamed(Connection conn, String oldName, String newName) throws SQLException {
+        if (!enabled) return;
+        try (PreparedStatement stmt = conn.prepareStatement(INSERT_SQL)) {
+            bind(stmt, ChangeLogEntry.Kind.PRODUCT_RENAME, null, null, newName, oldName, null);
+            stmt.executeUpdate();
+        }
+    }
+
+    // One entry instead of a row per product: readers of a bulk change reload anyway
+    public void catalogReplaced(Connection conn) throws SQLException {
+        if (!enabled) return;
+        try (PreparedStatement stmt = conn.prepareStatement(INSERT_SQL)) {
+            bind(stmt, ChangeLogEntry.Kind.CATALOG_RELOAD, null, null, null, null, null);
+            stmt.executeUpdate();
+        }
+    }
+
+    // Entries above afterSeq in sequence order; a primary key range scan
+    public List<ChangeLogEntry> readAfter(long afterSeq, int limit) throws SQLException {
+        List<ChangeLogEntry> entries = new ArrayList<>();
+        String sql = "SELECT seq, kind, origin, category_id, item_id, name, old_name, price " +
+                "FROM mp_changelog WHERE seq > ? ORDER BY seq LIMIT ?";
+        try (Connection conn = databaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setLong(1, afterSeq);
+            stmt.setInt(2, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    entries.add(new ChangeLogEntry(rs.getLong("seq"), kindOf(rs.getString("kind")),
+                            origin.equals(rs.getString("origin")), rs.getInt("category_id"), rs.getInt("item_id"),
+                            rs.getString("name"), rs.getString("old_name"), rs.getLong("price")));
+                }
+            }
+        }
+        return entries;
+    }
+
+    // Highest sequence number written so far, 0 when the log is empty
+    public long latestSeq() throws SQLException {
+        try (Connection conn = databaseManager.getConnection()) {
+            return latestSeq(conn);
+        }
+    }
+
+    /**
+     * Deletes entries created before the cutoff. The newest entry always stays, so a server that
+     * was away longer than the retention still sees a gap in the sequence and reloads.
+     */
+    public int prune(long cutoffMillis) throws SQLException {
+        return databaseManager.inTransaction(conn -> {
+            long latest = latestSeq(conn);
+            String sql = "DELETE FROM mp_changelog WHERE created_at < ? AND seq < ?";
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setLong(1, cutoffMillis);
+                stmt.setLong(2, latest);
+                return stmt.executeUpdate();
+            }
+        });
+    }
+
+    private long latestSeq(Connection conn) throws SQLException {
+        String sql = "SELECT MAX(seq) FROM mp_changelog";
+        try (PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0L;
+        }
+    }
+
+    private void bind(PreparedStatement stmt, ChangeLogEntry.Kind kind, Integer categoryId, Integer itemId,
+                      String name, String oldName, Long priceMinor) throws SQLException {
+        stmt.setString(1, kind.name());
+        stmt.setString(2, origin);
+        if (categoryId != null) stmt.setInt(3, categoryId); else stmt.setNull(3, Types.INTEGER);
+        if (itemId != null) stmt.setInt(4, itemId); else stmt.setNull(4, Types.INTEGER);
+        stmt.setString(5, name);
+        stmt.setString(6, oldName);
+        if (priceMinor != null) stmt.setLong(7, priceMinor); else stmt.setNull(7, Types.BIGINT);
+        stmt.setLong(8, System.currentTimeMillis());
+    }
+
+    // Entries of a newer plugin version are not understood here; a reload is always correct
+    private static ChangeLogEntry.Kind kindOf(String name) {
+        try {
+            return ChangeLogEntry.Kind.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return ChangeLogEntry.Kind.CATALOG_RELOAD;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package ru.minimalprice.minimalprice.features.price.storage;
+
+// One row of mp_changelog. Which fields are set depends on the kind.
+public class ChangeLogEntry {
+
+    public enum Kind {
+        // categoryId, name
+        CATEGORY_CREATE,
+        // oldName, name
+        CATEGORY_RENAME,
+        // itemId, categoryId, name, priceMinor
+        PRODUCT_UPSERT,
+        // oldName, name (exact match in every category)
+        PRODUCT_RENAME,
+        // Bulk change (import); readers reload the whole catalog
+        CATALOG_RELOAD
+    }
+
+    private final long seq;
+    private final Kind kind;
+    private final boolean local;
+    private final int categoryId;
+    private final int itemId;
+    private final String name;
+    private final String oldName;
+    private final long priceMinor;
+
+    public ChangeLogEntry(long seq, Kind kind, boolean local, int categoryId, int itemId,
+                          String name, String oldName, long priceMinor) {
+        this.seq = seq;
+        this.kind = kind;
+        this.local = local;
+        this.categoryId = categoryId;
+        this.itemId = itemId;
+        this.name = name;
+        this.oldName = oldName;
+        this.priceMinor = priceMinor;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    // Written by this server since it started
+    public boolean isLocal() {
+        return local;
+    }
+
+    public int getCategoryId() {
+        return categoryId;
+    }
+
+    public int getItemId() {
+        return itemId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getOldName() {
+        return oldName;
+    }
+
+    public long getPriceMinor() {
+        return priceMinor;
+    }
+}
@@ -0,0 +1,59 @@
+package ru.minimalprice.minimalprice.features.price.storage;
+
+import ru.minimalprice.minimalprice.features.price.models.CatalogFingerprint;
+import ru.minimalprice.minimalprice.features.price.models.Category;
+import ru.minimalprice.minimalprice.features.price.models.Money;
+import ru.minimalprice.minimalprice.features.price.models.Product;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Persistent catalog as used by PriceManager. Writes that take hooks run them on the same
+ * {@link Connection} before commit, so related state commits atomically with the catalog change.
+ * Every mutation also appends to the change log in its transaction, for other servers on the same database.
+ */
+public interface PriceStorage {
+
+    // Fraction digits of every stored price
+    int getPriceScale();
+
+    // Returns the id of the new category
+    int createCategory(String name) throws SQLException;
+
+    // Returns the stored row, so callers can apply it to the cache without re-reading the catalog
+    Product upsertProduct(String categoryName, String productName, Money price) throws SQLException;
+
+    // One transaction for all rows. The result is parallel to the input; rows of unknown categories are null.
+    List<Product> upsertProducts(List<ProductUpsert> upserts, List<ProductWriteHook> hooks) throws SQLException;
+
+    // Like upsertProducts, but missing categories are created and added to createdCategories
+    List<Product> importProducts(List<ProductUpsert> upserts, List<ProductWriteHook> hooks,
+                                 Set<String> createdCategories) throws SQLException;
+
+    // Returns the number of renamed categories (0 or 1)
+    int renameCategory(String oldName, String newName, List<CategoryRenameHook> hooks) throws SQLException;
+
+    // Renames products with exactly this name in every category; returns the number of renamed rows
+    int renameProduct(String oldName, String newName) throws SQLException;
+
+    // Change log entries above afterSeq, oldest first, at most limit of them
+    List<ChangeLogEntry> readChanges(long afterSeq, int limit) throws SQLException;
+
+    // Sequence number of the newest change log entry, 0 when there is none
+    long getLatestChangeSeq() throws SQLException;
+
+    // Deletes change log entries created before the cutoff; returns the number deleted
+    int pruneChanges(long cutoffMillis) throws SQLException;
+
+    List<Category> getAllCategories() throws SQLException;
+
+    List<Product> getProductsByCategory(int categoryId) throws SQLException;
+
+    // Streams every category with its products, ordered by category id, then product id
+    void loadCatalog(CatalogRowHandler handler) throws SQLException;
+
+    CatalogFingerprint getCatalogFingerprint() throws SQLException;
+}
@@ -0,0 +1,40 @@
+package ru.minimalprice.minimalprice.features.price.storage;
+
+import ru.minimalprice.minimalprice.features.price.models.Money;
+
+// One pending "set price" write, addressed by names as typed in commands
+public class ProductUpsert {
+    private final String categoryName;
+    private final String productName;
+    private final Money price;
+    // Category id already resolved from the cache (0 = unknown), sparing the storage a lookup by name.
+    // Safe to trust: category ids are never reassigned and a rename keeps the id.
+    private final int knownCategoryId;
+
+    public ProductUpsert(String categoryName, String productName, Money price) {
+        this(categoryName, productName, price, 0);
+    }
+
+    public ProductUpsert(String categoryName, String productName, Money price, int knownCategoryId) {
+        this.categoryName = categoryName;
+        this.productName = productName;
+        this.price = price;
+        this.knownCategoryId = knownCategoryId;
+    }
+
+    public String getCategoryName() {
+        return categoryName;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public Money getPrice() {
+        return price;
+    }
+
+    public int getKnownCategoryId() {
+        return knownCategoryId;
+    }
+}
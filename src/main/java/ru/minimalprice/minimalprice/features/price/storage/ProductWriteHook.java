@@ -0,0 +1,13 @@
+package ru.minimalprice.minimalprice.features.price.storage;
+
+import ru.minimalprice.minimalprice.features.price.models.Product;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+// Extra bookkeeping that must commit in the same transaction as a batch of price upserts
+@FunctionalInterface
+public interface ProductWriteHook {
+    void onWrite(Connection conn, List<Product> stored) throws SQLException;
+}
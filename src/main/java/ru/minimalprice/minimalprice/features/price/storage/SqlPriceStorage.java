@@ -0,0 +1,323 @@
+package ru.minimalprice.minimalprice.features.price.storage;
+
+import ru.minimalprice.minimalprice.database.DatabaseManager;
+import ru.minimalprice.minimalprice.database.dialect.SqlDialect;
+import ru.minimalprice.minimalprice.features.price.models.CatalogFingerprint;
+import ru.minimalprice.minimalprice.features.price.models.Category;
+import ru.minimalprice.minimalprice.features.price.models.Money;
+import ru.minimalprice.minimalprice.features.price.models.Product;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link PriceStorage} over JDBC. Statements are portable SQL; the upsert and the case-insensitive
+ * name match come from the configured {@link SqlDialect} (SQLite, MySQL/MariaDB or H2).
+ */
+public class SqlPriceStorage implements PriceStorage {
+
+    // Rows pulled per round trip while streaming the catalog join
+    private static final int CATALOG_FETCH_SIZE = 1000;
+
+    private final DatabaseManager databaseManager;
+    private final SqlDialect dialect;
+    // Built once: the dialect decides the syntax, the statement itself never changes
+    private final String upsertItemSql;
+    private final String renameProductSql;
+    private final ChangeLog changeLog;
+
+    public SqlPriceStorage(DatabaseManager databaseManager, ChangeLog changeLog) {
+        this.databaseManager = databaseManager;
+        this.changeLog = changeLog;
+        this.dialect = databaseManager.getDialect();
+        this.upsertItemSql = dialect.upsert("mp_items", List.of("category_id", "name"), List.of("category_id", "name", "price"));
+        // The case-insensitive term only narrows the scan to idx_mp_items_name_nocase; the exact term decides
+        this.renameProductSql = "UPDATE mp_items SET name = ? WHERE " + dialect.equalsIgnoreCase("name") + " AND name = ?";
+    }
+
+    @Override
+    public int getPriceScale() {
+        return databaseManager.getPriceScale();
+    }
+
+    @Override
+    public int createCategory(String name) throws SQLException {
+        return databaseManager.inTransaction(conn -> {
+            int id = insertCategory(conn, name);
+            changeLog.categoryCreated(conn, id, name);
+            return id;
+        });
+    }
+
+    private int insertCategory(Connection conn, String name) throws SQLException {
+        String sql = "INSERT INTO mp_categories (name) VALUES (?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setString(1, name);
+            stmt.executeUpdate();
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                if (keys.next()) {
+                    return keys.getInt(1);
+                }
+            }
+        }
+        throw new SQLException("No id generated for category: " + name);
+    }
+
+    @Override
+    public Product upsertProduct(String categoryName, String productName, Money price) throws SQLException {
+        Product stored = upsertProducts(List.of(new ProductUpsert(categoryName, productName, price)), List.of()).get(0);
+        if (stored == null) {
+            throw new SQLException("Category not found: " + categoryName);
+        }
+        return stored;
+    }
+
+    // Writes all upserts in one transaction using a JDBC batch; the hooks see the stored rows before commit
+    @Override
+    public List<Product> upsertProducts(List<ProductUpsert> upserts, List<ProductWriteHook> hooks) throws SQLException {
+        return databaseManager.inTransaction(conn -> upsertProducts(conn, upserts, hooks, null));
+    }
+
+    // Bulk import variant: categories that do not exist yet are created in the same transaction
+    @Override
+    public List<Product> importProducts(List<ProductUpsert> upserts, List<ProductWriteHook> hooks,
+                                        Set<String> createdCategories) throws SQLException {
+        return databaseManager.inTransaction(conn -> upsertProducts(conn, upserts, hooks, createdCategories));
+    }
+
+    private List<Product> upsertProducts(Connection conn, List<ProductUpsert> upserts, List<ProductWriteHook> hooks,
+                                         Set<String> createdCategories) throws SQLException {
+        // On conflict the generated key is not the updated row, so ids are read back inside the transaction
+        String idSql = "SELECT id FROM mp_items WHERE category_id = ? AND name = ?";
+
+        List<Product> results = new ArrayList<>(upserts.size());
+        Map<String, Integer> categoryIds = new HashMap<>();
+        int[] resolved = new int[upserts.size()];
+        for (int i = 0; i < upserts.size(); i++) {
+            ProductUpsert upsert = upserts.get(i);
+            if (upsert.getKnownCategoryId() > 0) {
+                resolved[i] = upsert.getKnownCategoryId();
+                continue;
+            }
+            String categoryName = upsert.getCategoryName();
+            Integer id = categoryIds.get(categoryName);
+            if (id == null) {
+                id = getCategoryId(conn, categoryName);
+                if (id == -1 && createdCategories != null) {
+                    id = insertCategory(conn, categoryName);
+                    createdCategories.add(categoryName);
+                }
+                categoryIds.put(categoryName, id);
+            }
+            resolved[i] = id;
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(upsertItemSql)) {
+            for (int i = 0; i < upserts.size(); i++) {
+                if (resolved[i] == -1) continue;
+                ProductUpsert upsert = upserts.get(i);
+                stmt.setInt(1, resolved[i]);
+                stmt.setString(2, upsert.getProductName());
+                stmt.setLong(3, upsert.getPrice().getMinor());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(idSql)) {
+            for (int i = 0; i < upserts.size(); i++) {
+                if (resolved[i] == -1) {
+                    results.add(null);
+                    continue;
+                }
+                ProductUpsert upsert = upserts.get(i);
+                stmt.setInt(1, resolved[i]);
+                stmt.setString(2, upsert.getProductName());
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new SQLException("Product not found after upsert: " + upsert.getProductName());
+                    }
+                    results.add(new Product(rs.getInt("id"), resolved[i], upsert.getProductName(), upsert.getPrice()));
+                }
+            }
+        }
+
+        List<Product> stored = new ArrayList<>(results.size());
+        for (Product product : results) {
+            if (product != null) stored.add(product);
+        }
+        if (!stored.isEmpty()) {
+            for (ProductWriteHook hook : hooks) {
+                hook.onWrite(conn, stored);
+            }
+            if (createdCategories != null) {
+                changeLog.catalogReplaced(conn);
+            } else {
+                changeLog.productsWritten(conn, stored);
+            }
+        }
+        return results;
+    }
+
+    // Renames the category and runs the hooks in the same transaction, so related state commits with it
+    @Override
+    public int renameCategory(String oldName, String newName, List<CategoryRenameHook> hooks) throws SQLException {
+        return databaseManager.inTransaction(conn -> {
+            int count = renameCategory(conn, oldName, newName);
+            if (count > 0) {
+                for (CategoryRenameHook hook : hooks) {
+                    hook.onRename(conn, oldName, newName);
+                }
+                changeLog.categoryRenamed(conn, oldName, newName);
+            }
+            return count;
+        });
+    }
+
+    private int renameCategory(Connection conn, String oldName, String newName) throws SQLException {
+        String sql = "UPDATE mp_categories SET name = ? WHERE name = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, newName);
+            stmt.setString(2, oldName);
+            return stmt.executeUpdate();
+        }
+    }
+
+    // Renames a product across ALL categories (if multiple exist) or finds the specific one.
+    // Only the exact name is renamed: "Sword" and "SWORD" may both exist in one category.
+    @Override
+    public int renameProduct(String oldName, String newName) throws SQLException {
+        return databaseManager.inTransaction(conn -> {
+            int count;
+            try (PreparedStatement stmt = conn.prepareStatement(renameProductSql)) {
+                stmt.setString(1, newName);
+                stmt.setString(2, oldName);
+                stmt.setString(3, oldName);
+                count = stmt.executeUpdate(); // Returns number of affected rows
+            }
+            if (count > 0) {
+                changeLog.productRenamed(conn, oldName, newName);
+            }
+            return count;
+        });
+    }
+
+    @Override
+    public List<ChangeLogEntry> readChanges(long afterSeq, int limit) throws SQLException {
+        return changeLog.readAfter(afterSeq, limit);
+    }
+
+    @Override
+    public long getLatestChangeSeq() throws SQLException {
+        return changeLog.latestSeq();
+    }
+
+    @Override
+    public int pruneChanges(long cutoffMillis) throws SQLException {
+        return changeLog.prune(cutoffMillis);
+    }
+
+    @Override
+    public List<Category> getAllCategories() throws SQLException {
+        List<Category> categories = new ArrayList<>();
+        String sql = "SELECT id, name FROM mp_categories";
+        try (Connection conn = databaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                categories.add(new Category(rs.getInt("id"), rs.getString("name")));
+            }
+        }
+        return categories;
+    }
+
+    @Override
+    public List<Product> getProductsByCategory(int categoryId) throws SQLException {
+        List<Product> products = new ArrayList<>();
+        String sql = "SELECT id, name, price FROM mp_items WHERE category_id = ?";
+        try (Connection conn = databaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, categoryId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    products.add(new Product(
+                            rs.getInt("id"),
+                            categoryId,
+                            rs.getString("name"),
+                            Money.ofMinor(rs.getLong("price"), databaseManager.getPriceScale())
+                    ));
+                }
+            }
+        }
+        return products;
+    }
+
+    // Streams every category together with its products to the handler using a single LEFT JOIN.
+    // Categories without products are reported too; order follows category id, then product id.
+    @Override
+    public void loadCatalog(CatalogRowHandler handler) throws SQLException {
+        String sql = "SELECT c.id AS category_id, c.name AS category_name, " +
+                "i.id AS item_id, i.name AS item_name, i.price AS item_price " +
+                "FROM mp_categories c LEFT JOIN mp_items i ON i.category_id = c.id " +
+                "ORDER BY c.id, i.id";
+        try (Connection conn = databaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setFetchSize(CATALOG_FETCH_SIZE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                int currentCategory = 0;
+                boolean first = true;
+                while (rs.next()) {
+                    int categoryId = rs.getInt("category_id");
+                    if (first || currentCategory != categoryId) {
+                        handler.category(categoryId, rs.getString("category_name"));
+                        currentCategory = categoryId;
+                        first = false;
+                    }
+
+                    int itemId = rs.getInt("item_id");
+                    if (rs.wasNull()) continue; // Category without products
+
+                    handler.product(itemId, rs.getString("item_name"), rs.getLong("item_price"));
+                }
+            }
+        }
+    }
+
+    @Override
+    public CatalogFingerprint getCatalogFingerprint() throws SQLException {
+        String sql = "SELECT (SELECT COUNT(*) FROM mp_categories) AS category_count, " +
+                "COUNT(*) AS product_count, COALESCE(MAX(id), 0) AS max_id, COALESCE(SUM(price), 0) AS price_sum " +
+                "FROM mp_items";
+        try (Connection conn = databaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            return new CatalogFingerprint(
+                    rs.getInt("category_count"),
+                    rs.getInt("product_count"),
+                    rs.getInt("max_id"),
+                    rs.getLong("price_sum"));
+        }
+    }
+
+    private int getCategoryId(Connection conn, String name) throws SQLException {
+        String sql = "SELECT id FROM mp_categories WHERE name = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, name);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt("id");
+                }
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,312 @@
+package ru.minimalprice.minimalprice.features.price.storage;
+
+import ru.minimalprice.minimalprice.database.StorageExecutor;
+import ru.minimalprice.minimalprice.features.price.models.Money;
+import ru.minimalprice.minimalprice.features.price.models.Product;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Collects price upserts and writes them in batched transactions.
+ * Updates to the same (category, product) that are still pending are coalesced, so only
+ * the last price is written; every caller's future completes once its batch has committed.
+ * A batch is flushed when the flush window elapses or when max batch size is reached.
+ * Flushes run as internal writes on the storage writer, so they are serialized with every other write.
+ */
+public class WriteBehindQueue {
+
+    private final PriceStorage repository;
+    private final StorageExecutor storage;
+    private final Logger logger;
+    private final int maxBatchSize;
+    private final int maxPending;
+    private final Consumer<List<Product>> onCommitted;
+    private final List<ProductWriteHook> writeHooks;
+    // Only times the flush window; the writes themselves run on the storage writer
+    private final ScheduledExecutorService timer;
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+
+    private final Object lock = new Object();
+    private Map<Key, Pending> pending = new LinkedHashMap<>();
+    private boolean closed = false;
+
+    // Metrics
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong batchesFlushed = new AtomicLong();
+    private final AtomicLong rowsFlushed = new AtomicLong();
+    private final AtomicLong largestBatch = new AtomicLong();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+
+    /**
+     * @param maxPending  distinct products that may wait for a flush; new ones beyond it are rejected
+     * @param writeHooks  run inside every batch transaction; the list is read on each flush, so it may grow later
+     * @param onCommitted called on the storage writer with the stored rows of every committed batch,
+     *                    before the callers' futures complete
+     */
+    public WriteBehindQueue(PriceStorage repository, StorageExecutor storage, Logger logger, long flushIntervalMs, int maxBatchSize,
+                            int maxPending, List<ProductWriteHook> writeHooks, Consumer<List<Product>> onCommitted) {
+        this.repository = repository;
+        this.storage = storage;
+        this.logger = logger;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxPending = Math.max(this.maxBatchSize, maxPending);
+        this.writeHooks = writeHooks;
+        this.onCommitted = onCommitted;
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "MinimalPrice-FlushTimer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long interval = Math.max(1L, flushIntervalMs);
+        timer.scheduleWithFixedDelay(this::queueFlush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public CompletableFuture<Product> submit(String categoryName, String productName, Money price) {
+        return submit(categoryName, productName, price, 0);
+    }
+
+    // knownCategoryId: the category's id if the caller already has it, else 0 (see ProductUpsert)
+    public CompletableFuture<Product> submit(String categoryName, String productName, Money price, int knownCategoryId) {
+        CompletableFuture<Product> future = new CompletableFuture<>();
+        boolean full;
+        synchronized (lock) {
+            if (closed) {
+                future.completeExceptionally(new IllegalStateException("Write-behind queue is closed"));
+                return future;
+            }
+            Key key = new Key(categoryName, productName);
+            Pending entry = pending.get(key);
+            if (entry == null && pending.size() >= maxPending) {
+                // Coalescing into a waiting product is still fine; a new one waits for the backlog to drain
+                rejected.incrementAndGet();
+                future.completeExceptionally(new RejectedExecutionException(
+                        "Write-behind queue is full: " + maxPending + " products waiting"));
+                return future;
+            }
+            if (entry == null) {
+                entry = new Pending(categoryName, productName);
+                pending.put(key, entry);
+            } else {
+                coalesced.incrementAndGet();
+            }
+            entry.price = price; // Last price wins
+            if (knownCategoryId > 0) {
+                entry.knownCategoryId = knownCategoryId;
+            }
+            entry.waiters.add(future);
+            full = pending.size() >= maxBatchSize;
+        }
+        submitted.incrementAndGet();
+
+        if (full) {
+            queueFlush();
+        }
+        return future;
+    }
+
+    // At most one flush waits on the writer; it takes everything pending when it starts
+    private CompletableFuture<Void> queueFlush() {
+        if (!flushQueued.compareAndSet(false, true)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return storage.runInternalWrite(this::flush).whenComplete((ignored, error) -> {
+            if (error != null) {
+                flushQueued.set(false);
+                logger.log(Level.WARNING, "Could not queue a write-behind flush; retrying with the next window", error);
+            }
+        });
+    }
+
+    // Always runs on the storage writer, so batches commit in submission order
+    private void flush() {
+        flushQueued.set(false);
+        Map<Key, Pending> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) return;
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        }
+
+        List<Pending> entries = new ArrayList<>(batch.values());
+        for (int from = 0; from < entries.size(); from += maxBatchSize) {
+            writeChunk(entries.subList(from, Math.min(entries.size(), from + maxBatchSize)));
+        }
+    }
+
+    private void writeChunk(List<Pending> chunk) {
+        List<ProductUpsert> upserts = new ArrayList<>(chunk.size());
+        for (Pending entry : chunk) {
+            upserts.add(new ProductUpsert(entry.categoryName, entry.productName, entry.price, entry.knownCategoryId));
+        }
+
+        long start = System.nanoTime();
+        List<Product> stored;
+        try {
+            stored = repository.upsertProducts(upserts, writeHooks);
+        } catch (SQLException e) {
+            if (chunk.size() > 1) {
+                // The batch rolled back as a whole; retry row by row so only the bad rows fail
+                logger.warning("Failed to write batch of " + chunk.size() + " price updates, retrying one by one: " + e.getMessage());
+                for (Pending entry : chunk) {
+                    writeChunk(List.of(entry));
+                }
+                return;
+            }
+            logger.log(Level.WARNING, "Failed to write price update " + chunk.get(0).categoryName + " / "
+                    + chunk.get(0).productName, e);
+            for (Pending entry : chunk) {
+                entry.waiters.forEach(f -> f.completeExceptionally(e));
+            }
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+
+        batchesFlushed.incrementAndGet();
+        rowsFlushed.addAndGet(chunk.size());
+        largestBatch.accumulateAndGet(chunk.size(), Math::max);
+        totalFlushNanos.addAndGet(elapsed);
+        maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+
+        List<Product> committed = new ArrayList<>(stored.size());
+        for (Product product : stored) {
+            if (product != null) committed.add(product);
+        }
+        try {
+            if (!committed.isEmpty()) {
+                onCommitted.accept(committed);
+            }
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Failed to apply committed price batch to the cache", e);
+        }
+
+        for (int i = 0; i < chunk.size(); i++) {
+            Product product = stored.get(i);
+            Pending entry = chunk.get(i);
+            if (product == null) {
+                SQLException missing = new SQLException("Category not found: " + entry.categoryName);
+                entry.waiters.forEach(f -> f.completeExceptionally(missing));
+            } else {
+                entry.waiters.forEach(f -> f.complete(product));
+            }
+        }
+    }
+
+    // Stops the timer and writes everything still pending; must run before the storage executor is closed
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+        }
+        timer.shutdownNow();
+        flushQueued.set(false);
+        try {
+            queueFlush().get(10, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            logger.warning("Timed out while flushing pending price updates");
+        } catch (ExecutionException e) {
+            logger.log(Level.WARNING, "Failed to flush pending price updates", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getBatchesFlushed() {
+        return batchesFlushed.get();
+    }
+
+    public long getRowsFlushed() {
+        return rowsFlushed.get();
+    }
+
+    public long getLargestBatch() {
+        return largestBatch.get();
+    }
+
+    public double getAverageBatchSize() {
+        long batches = batchesFlushed.get();
+        return batches == 0 ? 0 : (double) rowsFlushed.get() / batches;
+    }
+
+    public double getAverageFlushMillis() {
+        long batches = batchesFlushed.get();
+        return batches == 0 ? 0 : totalFlushNanos.get() / 1_000_000.0 / batches;
+    }
+
+    public double getMaxFlushMillis() {
+        return maxFlushNanos.get() / 1_000_000.0;
+    }
+
+    private static final class Key {
+        private final String categoryName;
+        private final String productName;
+
+        private Key(String categoryName, String productName) {
+            this.categoryName = categoryName;
+            this.productName = productName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return categoryName.equals(other.categoryName) && productName.equals(other.productName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(categoryName, productName);
+        }
+    }
+
+    private static final class Pending {
+        private final String categoryName;
+        private final String productName;
+        private Money price;
+        private int knownCategoryId;
+        private final List<CompletableFuture<Product>> waiters = new ArrayList<>(1);
+
+        private Pending(String categoryName, String productName) {
+            this.categoryName = categoryName;
+            this.productName = productName;
+        }
+    }
+}
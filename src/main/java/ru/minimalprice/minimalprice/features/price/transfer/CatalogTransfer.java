@@ -0,0 +1,246 @@
+package ru.minimalprice.minimalprice.features.price.transfer;
+
+import ru.minimalprice.minimalprice.MinimalPrice;
+import ru.minimalprice.minimalprice.database.StorageExecutor;
+import ru.minimalprice.minimalprice.features.price.PriceManager;
+import ru.minimalprice.minimalprice.features.price.cache.CatalogSnapshot;
+import ru.minimalprice.minimalprice.features.price.cache.ProductColumns;
+import ru.minimalprice.minimalprice.features.price.events.CatalogImportEvent;
+import ru.minimalprice.minimalprice.features.price.models.Category;
+import ru.minimalprice.minimalprice.features.price.models.Money;
+import ru.minimalprice.minimalprice.features.price.storage.ProductUpsert;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongConsumer;
+import java.util.logging.Level;
+
+/**
+ * Bulk import/export of the catalog from/to files in the plugin data folder.
+ * Files are streamed line by line; imports are written in chunked transactions.
+ */
+public class CatalogTransfer {
+
+    // Invalid lines logged per import; the rest are only counted
+    private static final int MAX_LOGGED_ERRORS = 10;
+
+    private final MinimalPrice plugin;
+    private final PriceManager priceManager;
+    private final StorageExecutor storage;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public CatalogTransfer(MinimalPrice plugin, PriceManager priceManager, StorageExecutor storage) {
+        this.plugin = plugin;
+        this.priceManager = priceManager;
+        this.storage = storage;
+    }
+
+    /**
+     * Upserts every row of the file. Missing categories are created on the fly.
+     * The cache is reloaded and one {@link CatalogImportEvent} fired at the end, with partial counts
+     * if a chunk failed (the chunks before it stay committed).
+     *
+     * @param progress called with the number of rows written so far, about every {@code transfer.progress_interval} rows
+     */
+    public CompletableFuture<ImportResult> importFile(String fileName, LongConsumer progress) {
+        ImportProgress done = new ImportProgress();
+        // On the writer: other writes queue behind the import instead of competing with its chunks
+        CompletableFuture<ImportResult> written = storage.supplyWrite(() -> {
+            Path file = resolve(fileName);
+            TransferFormat format = formatOf(fileName);
+            if (!running.compareAndSet(false, true)) {
+                throw new IllegalStateException("Another import or export is running");
+            }
+            try {
+                return runImport(file, format, progress, done);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            } finally {
+                running.set(false);
+            }
+        });
+        // Also after a failed chunk: the chunks before it have committed. The reload is queued once the
+        // write task has finished, so the writer never waits for the read lane.
+        return written.handle((result, error) -> done)
+                .thenCompose(this::reloadAfterImport)
+                .thenCompose(ignored -> written);
+    }
+
+    // One reload instead of a delta per chunk: the import may have created any number of categories
+    private CompletableFuture<Void> reloadAfterImport(ImportProgress done) {
+        if (done.imported == 0 && done.createdCategories.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return priceManager.reloadCache().handle((ignored, error) -> {
+            if (error != null) {
+                plugin.getLogger().log(Level.WARNING, "Failed to reload the cache after an import", error);
+            }
+            done.touchedCategories.removeAll(done.createdCategories);
+            org.bukkit.Bukkit.getPluginManager().callEvent(new CatalogImportEvent(
+                    Collections.unmodifiableSet(done.createdCategories), Collections.unmodifiableSet(done.touchedCategories), done.imported));
+            return null;
+        });
+    }
+
+    private ImportResult runImport(Path file, TransferFormat format, LongConsumer progress, ImportProgress done) throws IOException, SQLException {
+        long start = System.currentTimeMillis();
+        int chunkSize = Math.max(1, plugin.getConfig().getInt("transfer.chunk_size", 1000));
+        long progressInterval = Math.max(1L, plugin.getConfig().getLong("transfer.progress_interval", 10000L));
+
+        TransferFormat.LineParser parser = format.newParser(priceManager.getPriceScale());
+        List<ProductUpsert> chunk = new ArrayList<>(chunkSize);
+        long skipped = 0;
+        long nextProgress = progressInterval;
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (lineNumber == 1 && !line.isEmpty() && line.charAt(0) == '\uFEFF') {
+                    line = line.substring(1); // Byte order mark written by spreadsheet programs
+                }
+                if (line.isBlank()) continue;
+
+                ProductUpsert row;
+                try {
+                    row = parser.parse(line);
+                } catch (RuntimeException e) {
+                    if (skipped++ < MAX_LOGGED_ERRORS) {
+                        plugin.getLogger().warning("Import " + file.getFileName() + ", line " + lineNumber + " skipped: " + e.getMessage());
+                    }
+                    continue;
+                }
+                if (row == null) continue;
+
+                chunk.add(row);
+                if (chunk.size() >= chunkSize) {
+                    writeChunk(chunk, done);
+                    chunk.clear();
+                    if (done.imported >= nextProgress) {
+                        progress.accept(done.imported);
+                        nextProgress = done.imported + progressInterval;
+                    }
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            writeChunk(chunk, done);
+        }
+
+        long elapsed = System.currentTimeMillis() - start;
+        plugin.getLogger().info(String.format("Imported %d rows from %s (%d skipped, %d new categories) in %d ms",
+                done.imported, file.getFileName(), skipped, done.createdCategories.size(), elapsed));
+        return new ImportResult(done.imported, skipped, done.createdCategories.size(), elapsed);
+    }
+
+    // Categories are only counted once their chunk has committed
+    private void writeChunk(List<ProductUpsert> chunk, ImportProgress done) throws SQLException {
+        Set<String> created = new LinkedHashSet<>();
+        done.imported += priceManager.importProducts(chunk, created);
+        done.createdCategories.addAll(created);
+        for (ProductUpsert row : chunk) {
+            done.touchedCategories.add(row.getCategoryName());
+        }
+    }
+
+    // Writes the current catalog snapshot; completes with the number of rows written
+    public CompletableFuture<Long> exportFile(String fileName) {
+        return storage.supplyRead(() -> {
+            Path file = resolve(fileName);
+            TransferFormat format = formatOf(fileName);
+            if (!running.compareAndSet(false, true)) {
+                throw new IllegalStateException("Another import or export is running");
+            }
+            try {
+                return runExport(file, format);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    private long runExport(Path file, TransferFormat format) throws IOException {
+        CatalogSnapshot snapshot = priceManager.getSnapshot();
+        ProductColumns columns = snapshot.getColumns();
+        int scale = snapshot.getPriceScale();
+
+        // Written next to the target and moved into place, so a failed export never leaves half a file
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        long rows = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            format.writeHeader(writer);
+            for (Category category : snapshot.getCategories()) {
+                int end = columns.rowEnd(category.getId());
+                for (int row = columns.rowStart(category.getId()); row < end; row++) {
+                    format.writeRow(writer, category.getName(), columns.productName(row),
+                            Money.ofMinor(columns.priceMinor(row), scale));
+                    rows++;
+                }
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        plugin.getLogger().info("Exported " + rows + " rows to " + file.getFileName());
+        return rows;
+    }
+
+    // Importable files directly inside the data folder, for tab completion
+    public List<String> listFiles() {
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(plugin.getDataFolder().toPath())) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (Files.isRegularFile(path) && TransferFormat.fromFileName(name) != null) {
+                    names.add(name);
+                }
+            }
+        } catch (IOException e) {
+            return Collections.emptyList();
+        }
+        return names;
+    }
+
+    // Keeps file names inside the data folder
+    private Path resolve(String fileName) {
+        Path folder = plugin.getDataFolder().toPath().toAbsolutePath().normalize();
+        Path file = folder.resolve(fileName).normalize();
+        if (!file.startsWith(folder) || file.equals(folder)) {
+            throw new IllegalArgumentException("File must be inside the plugin folder: " + fileName);
+        }
+        return file;
+    }
+
+    private TransferFormat formatOf(String fileName) {
+        TransferFormat format = TransferFormat.fromFileName(fileName);
+        if (format == null) {
+            throw new IllegalArgumentException("Unsupported file type (use .csv or .jsonl): " + fileName);
+        }
+        return format;
+    }
+
+    // What the committed chunks of one import wrote; handed from the write task to the reload after it
+    private static final class ImportProgress {
+        private final Set<String> createdCategories = new LinkedHashSet<>();
+        private final Set<String> touchedCategories = new LinkedHashSet<>();
+        private long imported;
+    }
+}
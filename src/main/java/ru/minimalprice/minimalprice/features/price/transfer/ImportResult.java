@@ -0,0 +1,32 @@
+package ru.minimalprice.minimalprice.features.price.transfer;
+
+public class ImportResult {
+    private final long importedRows;
+    private final long skippedRows;
+    private final int createdCategories;
+    private final long elapsedMillis;
+
+    public ImportResult(long importedRows, long skippedRows, int createdCategories, long elapsedMillis) {
+        this.importedRows = importedRows;
+        this.skippedRows = skippedRows;
+        this.createdCategories = createdCategories;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getImportedRows() {
+        return importedRows;
+    }
+
+    // Lines that could not be parsed (wrong column count, invalid price, ...)
+    public long getSkippedRows() {
+        return skippedRows;
+    }
+
+    public int getCreatedCategories() {
+        return createdCategories;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
@@ -0,0 +1,179 @@
+package ru.minimalprice.minimalprice.features.price.transfer;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+import ru.minimalprice.minimalprice.features.price.models.Money;
+import ru.minimalprice.minimalprice.features.price.storage.ProductUpsert;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Line-oriented file formats for bulk import/export. Both carry the columns category, item, price.
+ * Every row is exactly one line, so files are read and written as a stream.
+ */
+public enum TransferFormat {
+
+    // Spreadsheet export: "category,item,price" with optional header; ';' is accepted as delimiter too
+    CSV {
+        @Override
+        public LineParser newParser(int priceScale) {
+            return new LineParser() {
+                private char delimiter;
+
+                @Override
+                public ProductUpsert parse(String line) {
+                    if (delimiter == 0) {
+                        // Decided by the first row: spreadsheets in comma-decimal locales write ';'
+                        delimiter = count(line, ';') > count(line, ',') ? ';' : ',';
+                        List<String> header = split(line, delimiter);
+                        if (header.size() == 3 && header.get(0).trim().equalsIgnoreCase("category")) {
+                            return null;
+                        }
+                    }
+                    List<String> fields = split(line, delimiter);
+                    if (fields.size() != 3) {
+                        throw new IllegalArgumentException("Expected 3 columns, got " + fields.size());
+                    }
+                    return row(fields.get(0), fields.get(1), fields.get(2), priceScale);
+                }
+            };
+        }
+
+        @Override
+        public void writeHeader(Writer out) throws IOException {
+            out.write("category,item,price\n");
+        }
+
+        @Override
+        public void writeRow(Writer out, String category, String item, Money price) throws IOException {
+            writeField(out, category);
+            out.write(',');
+            writeField(out, item);
+            out.write(',');
+            out.write(price.toString());
+            out.write('\n');
+        }
+    },
+
+    // One JSON object per line: {"category": "...", "item": "...", "price": 12.5}
+    JSONL {
+        @Override
+        public LineParser newParser(int priceScale) {
+            return line -> {
+                JsonObject object = JsonParser.parseString(line).getAsJsonObject();
+                return row(string(object, "category"), string(object, "item"), string(object, "price"), priceScale);
+            };
+        }
+
+        @Override
+        public void writeHeader(Writer out) {
+        }
+
+        @Override
+        public void writeRow(Writer out, String category, String item, Money price) throws IOException {
+            JsonObject object = new JsonObject();
+            object.addProperty("category", category);
+            object.addProperty("item", item);
+            object.add("price", new JsonPrimitive(price.toBigDecimal()));
+            out.write(object.toString());
+            out.write('\n');
+        }
+
+        private String string(JsonObject object, String key) {
+            JsonElement element = object.get(key);
+            if (element == null || !element.isJsonPrimitive()) {
+                throw new IllegalArgumentException("Missing field: " + key);
+            }
+            return element.getAsString();
+        }
+    };
+
+    // Parses one line; returns null for lines that carry no row (e.g. a header)
+    @FunctionalInterface
+    public interface LineParser {
+        ProductUpsert parse(String line);
+    }
+
+    public abstract LineParser newParser(int priceScale);
+
+    public abstract void writeHeader(Writer out) throws IOException;
+
+    public abstract void writeRow(Writer out, String category, String item, Money price) throws IOException;
+
+    public static TransferFormat fromFileName(String fileName) {
+        String lower = fileName.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".csv")) return CSV;
+        if (lower.endsWith(".jsonl") || lower.endsWith(".ndjson")) return JSONL;
+        return null;
+    }
+
+    private static ProductUpsert row(String category, String item, String price, int priceScale) {
+        category = category.trim();
+        item = item.trim();
+        if (category.isEmpty() || item.isEmpty()) {
+            throw new IllegalArgumentException("Empty category or item name");
+        }
+        return new ProductUpsert(category, item, Money.parse(price, priceScale));
+    }
+
+    private static int count(String line, char c) {
+        int n = 0;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == c) n++;
+        }
+        return n;
+    }
+
+    // RFC 4180 fields on a single line: quoted fields may contain the delimiter and doubled quotes
+    private static List<String> split(String line, char delimiter) {
+        List<String> fields = new ArrayList<>(3);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static void writeField(Writer out, String value) throws IOException {
+        boolean quote = value.indexOf(',') >= 0 || value.indexOf(';') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!quote) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+}
@@ -0,0 +1,144 @@
+package ru.minimalprice.minimalprice.features.price.view;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.JoinConfiguration;
+import ru.minimalprice.minimalprice.configuration.ConfigManager;
+import ru.minimalprice.minimalprice.features.price.cache.CatalogSnapshot;
+import ru.minimalprice.minimalprice.features.price.cache.CategoryOrder;
+import ru.minimalprice.minimalprice.features.price.cache.CategoryStatistics;
+import ru.minimalprice.minimalprice.features.price.cache.ProductColumns;
+import ru.minimalprice.minimalprice.features.price.models.Category;
+import ru.minimalprice.minimalprice.features.price.models.MoneyFormat;
+import ru.minimalprice.minimalprice.features.price.models.SortOrder;
+
+/**
+ * Renders category views one page at a time into a single joined component, so a page is one chat packet.
+ * Rendered pages are cached per locale for one catalog version; the first view of a newer version
+ * starts a new generation and the old pages are dropped.
+ */
+public class CategoryPages {
+
+    private final JavaPlugin plugin;
+    private final ConfigManager configManager;
+    private volatile Generation generation = new Generation(-1);
+
+    public CategoryPages(JavaPlugin plugin, ConfigManager configManager) {
+        this.plugin = plugin;
+        this.configManager = configManager;
+    }
+
+    public int getPageSize() {
+        return Math.max(1, plugin.getConfig().getInt("view.page_size", 10));
+    }
+
+    // view.default_sort, price (cheapest first) when missing or unknown
+    public SortOrder getDefaultOrder() {
+        SortOrder order = SortOrder.fromKey(plugin.getConfig().getString("view.default_sort", "price"));
+        return order != null ? order : SortOrder.PRICE;
+    }
+
+    public int pageCount(CatalogSnapshot snapshot, Category category) {
+        ProductColumns columns = snapshot.getColumns();
+        int items = columns.rowEnd(category.getId()) - columns.rowStart(category.getId());
+        return Math.max(1, (items + getPageSize() - 1) / getPageSize());
+    }
+
+    /**
+     * The page (1-based, clamped to the existing pages) of the category as it is in the snapshot,
+     * in the sender's language.
+     */
+    public Component page(CommandSender sender, CatalogSnapshot snapshot, Category category, SortOrder order, int page) {
+        int pages = pageCount(snapshot, category);
+        int clamped = Math.min(Math.max(page, 1), pages);
+
+        Generation current = generation;
+        if (current.version != snapshot.getVersion()) {
+            if (snapshot.getVersion() < current.version) {
+                // A caller holding an older snapshot must not evict the newer pages
+                return render(sender, snapshot, category, order, clamped, pages);
+            }
+            current = new Generation(snapshot.getVersion());
+            generation = current;
+        }
+        Map<Long, Component> pagesOfLocale = current.byLocale.computeIfAbsent(configManager.getLocale(sender),
+                locale -> new ConcurrentHashMap<>());
+        long key = ((long) category.getId() << 32) | ((long) order.ordinal() << 24) | clamped;
+        return pagesOfLocale.computeIfAbsent(key, k -> render(sender, snapshot, category, order, clamped, pages));
+    }
+
+    // Drops every rendered page; messages or the page size may have changed
+    public void invalidate() {
+        generation = new Generation(-1);
+    }
+
+    private Component render(CommandSender sender, CatalogSnapshot snapshot, Category category, SortOrder order,
+                             int page, int pages) {
+        ProductColumns columns = snapshot.getColumns();
+        CategoryOrder rows = snapshot.getOrder(category.getId());
+        int rowStart = columns.rowStart(category.getId());
+        int pageSize = getPageSize();
+        int first = (page - 1) * pageSize;
+        int end = Math.min(rows.size(), first + pageSize);
+        int scale = snapshot.getPriceScale();
+
+        List<Component> lines = new ArrayList<>(end - first + 3);
+        lines.add(configManager.getMessage(sender, "category_view_header", "%category%", category.getName()));
+        CategoryStatistics stats = snapshot.getStatistics(category.getId());
+        if (!stats.isEmpty()) {
+            lines.add(configManager.getLine(sender, "category_view_stats",
+                    "%min%", MoneyFormat.format(stats.minMinor(), scale),
+                    "%p25%", MoneyFormat.format(stats.percentileMinor(25), scale),
+                    "%median%", MoneyFormat.format(stats.medianMinor(), scale),
+                    "%p75%", MoneyFormat.format(stats.percentileMinor(75), scale),
+                    "%max%", MoneyFormat.format(stats.maxMinor(), scale),
+                    "%mean%", MoneyFormat.format(stats.meanMinor(), scale)));
+        }
+        for (int i = first; i < end; i++) {
+            int row = rowStart + rows.offset(order, i);
+            lines.add(configManager.getLine(sender, "item_format",
+                    "%item%", columns.productName(row),
+                    "%price%", MoneyFormat.format(columns.priceMinor(row), scale)));
+        }
+        if (pages > 1) {
+            lines.add(footer(sender, category, order, page, pages));
+        }
+        return Component.join(JoinConfiguration.newlines(), lines);
+    }
+
+    private Component footer(CommandSender sender, Category category, SortOrder order, int page, int pages) {
+        String previous = page > 1 ? control(sender, "category_view_previous", category, order, page - 1) : "";
+        String next = page < pages ? control(sender, "category_view_next", category, order, page + 1) : "";
+        return configManager.getLine(sender, "category_view_footer",
+                "%previous%", previous,
+                "%next%", next,
+                "%page%", String.valueOf(page),
+                "%pages%", String.valueOf(pages));
+    }
+
+    // Raw MiniMessage of a page control, spliced into the footer before it is parsed.
+    // The command addresses the category by id: a name may hold spaces, quotes or tags.
+    private String control(CommandSender sender, String key, Category category, SortOrder order, int targetPage) {
+        return configManager.getRawMessage(sender, key)
+                .replace("%category%", "#" + category.getId())
+                .replace("%sort%", order.getKey())
+                .replace("%page%", String.valueOf(targetPage));
+    }
+
+    private static final class Generation {
+        private final long version;
+        // locale -> (category id << 32 | sort << 24 | page) -> rendered page
+        private final Map<String, Map<Long, Component>> byLocale = new ConcurrentHashMap<>();
+
+        private Generation(long version) {
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package ru.minimalprice.minimalprice.features.price.view;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.jetbrains.annotations.NotNull;
+
+import net.kyori.adventure.text.Component;
+import ru.minimalprice.minimalprice.configuration.ConfigManager;
+import ru.minimalprice.minimalprice.features.price.PriceManager;
+import ru.minimalprice.minimalprice.features.price.cache.CatalogSnapshot;
+import ru.minimalprice.minimalprice.features.price.cache.CategoryOrder;
+import ru.minimalprice.minimalprice.features.price.cache.CategoryStatistics;
+import ru.minimalprice.minimalprice.features.price.cache.ProductColumns;
+import ru.minimalprice.minimalprice.features.price.models.Category;
+import ru.minimalprice.minimalprice.features.price.models.MoneyFormat;
+import ru.minimalprice.minimalprice.features.price.models.SortOrder;
+
+// Chest menu of /price. Rendered pages are cached per locale and shared by viewers; after a catalog change
+// a page is rendered again only if its content differs. Main thread only.
+public class PriceMenu implements Listener {
+
+    private static final int SIZE = 54;
+    private static final int PAGE_ITEMS = 45;
+    private static final int PREVIOUS_SLOT = 45;
+    private static final int SORT_SLOT = 47;
+    private static final int BACK_SLOT = 49;
+    private static final int NEXT_SLOT = 53;
+    private static final int CATEGORY_LIST = -1;
+    private static final int MAX_CACHED_PAGES = 1024;
+
+    private final JavaPlugin plugin;
+    private final PriceManager priceManager;
+    private final ConfigManager configManager;
+    private final CategoryPages categoryPages;
+    // locale/category/sort/page -> rendered page, least recently opened dropped first
+    private final Map<String, Page> cache = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Page> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+
+    public PriceMenu(JavaPlugin plugin, PriceManager priceManager, ConfigManager configManager, CategoryPages categoryPages) {
+        this.plugin = plugin;
+        this.priceManager = priceManager;
+        this.configManager = configManager;
+        this.categoryPages = categoryPages;
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+    }
+
+    // menu.enabled: /price opens the menu for players instead of the chat list
+    public boolean isEnabled() {
+        return plugin.getConfig().getBoolean("menu.enabled", true);
+    }
+
+    public void open(Player player) {
+        open(player, CATEGORY_LIST, SortOrder.PRICE, 1);
+    }
+
+    // Drops every rendered page; messages may have changed
+    public void invalidate() {
+        cache.clear();
+    }
+
+    private void open(Player player, int categoryId, SortOrder order, int page) {
+        CatalogSnapshot snapshot = priceManager.getSnapshot();
+        Category category = categoryId == CATEGORY_LIST ? null : snapshot.getCategory(categoryId);
+        if (category == null) {
+            categoryId = CATEGORY_LIST;
+            order = SortOrder.PRICE;
+        }
+        int entries = category == null ? snapshot.getCategories().size()
+                : snapshot.getColumns().rowEnd(categoryId) - snapshot.getColumns().rowStart(categoryId);
+        int pages = Math.max(1, (entries + PAGE_ITEMS - 1) / PAGE_ITEMS);
+        int clamped = Math.min(Math.max(page, 1), pages);
+
+        String key = configManager.getLocale(player) + "/" + categoryId + "/" + order.ordinal() + "/" + clamped;
+        Page cached = cache.get(key);
+        if (cached == null || cached.version != snapshot.getVersion()) {
+            Content content = category == null ? categoryList(snapshot, clamped, pages)
+                    : categoryPage(snapshot, category, order, clamped, pages);
+            if (cached == null || !cached.content.sameAs(content)) {
+                cached = render(player, category, order, content, snapshot.getPriceScale());
+                cache.put(key, cached);
+            }
+            cached.version = snapshot.getVersion();
+        }
+
+        MenuHolder holder = new MenuHolder(categoryId, order, cached.content);
+        Inventory inventory = Bukkit.createInventory(holder, SIZE, cached.title);
+        holder.inventory = inventory;
+        // The inventory keeps copies of the stacks, so the cached ones are never modified
+        inventory.setContents(cached.items);
+        player.openInventory(inventory);
+    }
+
+    private Content categoryList(CatalogSnapshot snapshot, int page, int pages) {
+        List<Category> categories = snapshot.getCategories();
+        int first = (page - 1) * PAGE_ITEMS;
+        int count = Math.max(0, Math.min(categories.size(), first + PAGE_ITEMS) - first);
+        String[] names = new String[count];
+        long[] values = new long[count * Content.CATEGORY_STRIDE];
+        for (int i = 0; i < count; i++) {
+            Category category = categories.get(first + i);
+            CategoryStatistics stats = snapshot.getStatistics(category.getId());
+            names[i] = category.getName();
+            values[i * Content.CATEGORY_STRIDE] = category.getId();
+            values[i * Content.CATEGORY_STRIDE + 1] = stats.count();
+            values[i * Content.CATEGORY_STRIDE + 2] = stats.isEmpty() ? 0 : stats.minMinor();
+        }
+        return new Content("", page, pages, names, values);
+    }
+
+    private Content categoryPage(CatalogSnapshot snapshot, Category category, SortOrder order, int page, int pages) {
+        ProductColumns columns = snapshot.getColumns();
+        CategoryOrder rows = snapshot.getOrder(category.getId());
+        int rowStart = columns.rowStart(category.getId());
+        int first = (page - 1) * PAGE_ITEMS;
+        int count = Math.max(0, Math.min(rows.size(), first + PAGE_ITEMS) - first);
+        String[] names = new String[count];
+        long[] values = new long[count * Content.PRODUCT_STRIDE];
+        for (int i = 0; i < count; i++) {
+            int row = rowStart + rows.offset(order, first + i);
+            names[i] = columns.productName(row);
+            values[i * Content.PRODUCT_STRIDE] = columns.productId(row);
+            values[i * Content.PRODUCT_STRIDE + 1] = columns.priceMinor(row);
+        }
+        return new Content(category.getName(), page, pages, names, values);
+    }
+
+    private Page render(Player player, Category category, SortOrder order, Content content, int scale) {
+        ItemStack[] items = new ItemStack[SIZE];
+        for (int i = 0; i < content.names.length; i++) {
+            if (category == null) {
+                long count = content.values[i * Content.CATEGORY_STRIDE + 1];
+                Component lore = count == 0 ? configManager.getLine(player, "menu_category_lore_empty")
+                        : configManager.getLine(player, "menu_category_lore",
+                                "%count%", String.valueOf(count),
+                                "%min%", MoneyFormat.format(content.values[i * Content.CATEGORY_STRIDE + 2], scale));
+                items[i] = icon(Material.CHEST,
+                        configManager.getLine(player, "menu_category_name", "%category%", content.names[i]),
+                        List.of(lore, configManager.getLine(player, "menu_category_hint")));
+            } else {
+                items[i] = icon(itemMaterial(content.names[i]),
+                        configManager.getLine(player, "menu_item_name", "%item%", content.names[i]),
+                        List.of(configManager.getLine(player, "menu_item_lore",
+                                "%price%", MoneyFormat.format(content.values[i * Content.PRODUCT_STRIDE + 1], scale))));
+            }
+        }
+
+        ItemStack filler = icon(Material.GRAY_STAINED_GLASS_PANE, Component.text(" "), List.of());
+        for (int slot = PAGE_ITEMS; slot < SIZE; slot++) {
+            items[slot] = filler;
+        }
+        if (content.page > 1) {
+            items[PREVIOUS_SLOT] = icon(Material.ARROW, configManager.getLine(player, "menu_previous"), List.of());
+        }
+        if (content.page < content.pages) {
+            items[NEXT_SLOT] = icon(Material.ARROW, configManager.getLine(player, "menu_next"), List.of());
+        }
+        Component title;
+        if (category == null) {
+            title = configManager.getLine(player, "menu_title_categories",
+                    "%page%", String.valueOf(content.page),
+                    "%pages%", String.valueOf(content.pages));
+        } else {
+            items[SORT_SLOT] = icon(Material.HOPPER,
+                    configManager.getLine(player, "menu_sort", "%sort%", order.getKey()),
+                    List.of(configManager.getLine(player, "menu_sort_hint")));
+            items[BACK_SLOT] = icon(Material.BOOK, configManager.getLine(player, "menu_back"), List.of());
+            title = configManager.getLine(player, "menu_title_category",
+                    "%category%", content.title,
+                    "%page%", String.valueOf(content.page),
+                    "%pages%", String.valueOf(content.pages));
+        }
+        return new Page(content, title, items);
+    }
+
+    // Items named like a material ("Diamond", "oak_log") show as that item
+    private static Material itemMaterial(String name) {
+        Material material = Material.matchMaterial(name.trim().replace(' ', '_'));
+        return material != null && material.isItem() && !material.isAir() ? material : Material.PAPER;
+    }
+
+    private static ItemStack icon(Material material, Component name, List<Component> lore) {
+        ItemStack item = new ItemStack(material);
+        ItemMeta meta = item.getItemMeta();
+        meta.displayName(name);
+        meta.lore(lore);
+        item.setItemMeta(meta);
+        return item;
+    }
+
+    @EventHandler
+    public void onClick(InventoryClickEvent event) {
+        if (!(event.getInventory().getHolder() instanceof MenuHolder holder)) {
+            return;
+        }
+        event.setCancelled(true);
+        int slot = event.getRawSlot();
+        if (!(event.getWhoClicked() instanceof Player player) || slot < 0 || slot >= SIZE) {
+            return;
+        }
+
+        Content content = holder.content;
+        if (slot < PAGE_ITEMS) {
+            if (holder.categoryId == CATEGORY_LIST && slot < content.names.length) {
+                int categoryId = (int) content.values[slot * Content.CATEGORY_STRIDE];
+                reopen(player, categoryId, categoryPages.getDefaultOrder(), 1);
+            }
+            return;
+        }
+        if (slot == PREVIOUS_SLOT && content.page > 1) {
+            reopen(player, holder.categoryId, holder.order, content.page - 1);
+        } else if (slot == NEXT_SLOT && content.page < content.pages) {
+            reopen(player, holder.categoryId, holder.order, content.page + 1);
+        } else if (holder.categoryId != CATEGORY_LIST && slot == SORT_SLOT) {
+            SortOrder[] orders = SortOrder.values();
+            reopen(player, holder.categoryId, orders[(holder.order.ordinal() + 1) % orders.length], 1);
+        } else if (holder.categoryId != CATEGORY_LIST && slot == BACK_SLOT) {
+            reopen(player, CATEGORY_LIST, SortOrder.PRICE, 1);
+        }
+    }
+
+    @EventHandler
+    public void onDrag(InventoryDragEvent event) {
+        if (event.getInventory().getHolder() instanceof MenuHolder) {
+            event.setCancelled(true);
+        }
+    }
+
+    // An inventory must not be replaced from inside its own click event
+    private void reopen(Player player, int categoryId, SortOrder order, int page) {
+        Bukkit.getScheduler().runTask(plugin, () -> {
+            if (player.isOnline()) open(player, categoryId, order, page);
+        });
+    }
+
+    // What a page shows, independent of language: compared to decide whether a cached page is still current
+    private static final class Content {
+        private static final int CATEGORY_STRIDE = 3; // id, item count, lowest price
+        private static final int PRODUCT_STRIDE = 2;  // id, price
+
+        private final String title; // category name, empty for the category list
+        private final int page;
+        private final int pages;
+        private final String[] names;
+        private final long[] values;
+
+        private Content(String title, int page, int pages, String[] names, long[] values) {
+            this.title = title;
+            this.page = page;
+            this.pages = pages;
+            this.names = names;
+            this.values = values;
+        }
+
+        private boolean sameAs(Content other) {
+            return page == other.page && pages == other.pages && title.equals(other.title)
+                    && Arrays.equals(values, other.values) && Arrays.equals(names, other.names);
+        }
+    }
+
+    private static final class Page {
+        private final Content content;
+        private final Component title;
+        private final ItemStack[] items;
+        private long version = -1; // newest catalog version the content was confirmed against
+
+        private Page(Content content, Component title, ItemStack[] items) {
+            this.content = content;
+            this.title = title;
+            this.items = items;
+        }
+    }
+
+    // Identifies menu inventories in click events and remembers what the viewer is looking at
+    private static final class MenuHolder implements InventoryHolder {
+        private final int categoryId;
+        private final SortOrder order;
+        private final Content content;
+        private Inventory inventory;
+
+        private MenuHolder(int categoryId, SortOrder order, Content content) {
+            this.categoryId = categoryId;
+            this.order = order;
+            this.content = content;
+        }
+
+        @Override
+        public @NotNull Inventory getInventory() {
+            return inventory;
+        }
+    }
+}
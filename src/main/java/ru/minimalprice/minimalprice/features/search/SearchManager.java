@@ -0,0 +1,143 @@
+package ru.minimalprice.minimalprice.features.search;
+
+import ru.minimalprice.minimalprice.MinimalPrice;
+import ru.minimalprice.minimalprice.features.price.PriceManager;
+import ru.minimalprice.minimalprice.features.price.cache.CatalogSnapshot;
+import ru.minimalprice.minimalprice.features.price.cache.ProductColumns;
+import ru.minimalprice.minimalprice.features.price.models.Category;
+import ru.minimalprice.minimalprice.features.price.models.Money;
+import ru.minimalprice.minimalprice.features.search.index.SearchIndex;
+import ru.minimalprice.minimalprice.features.search.models.ProductMatch;
+import ru.minimalprice.minimalprice.features.search.models.SearchResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Substring and fuzzy search over product and category names.
+ * The index is rebuilt on a background thread whenever a new catalog generation changes names,
+ * and swapped in as a whole; searches meanwhile use the previous one against the current prices.
+ */
+public class SearchManager {
+
+    private final MinimalPrice plugin;
+    private final PriceManager priceManager;
+    private volatile SearchIndex index = SearchIndex.empty();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    public SearchManager(MinimalPrice plugin, PriceManager priceManager) {
+        this.plugin = plugin;
+        this.priceManager = priceManager;
+        priceManager.addSnapshotListener(this::onPublished);
+        onPublished(priceManager.getSnapshot());
+    }
+
+    private void onPublished(CatalogSnapshot snapshot) {
+        if (!index.isBuiltFrom(snapshot) && rebuilding.compareAndSet(false, true)) {
+            CompletableFuture.runAsync(this::rebuild);
+        }
+    }
+
+    // Builds until the index matches the latest generation; publishes arriving meanwhile are coalesced
+    private void rebuild() {
+        try {
+            do {
+                index = SearchIndex.build(priceManager.getSnapshot());
+            } while (!index.isBuiltFrom(priceManager.getSnapshot()));
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            rebuilding.set(false);
+            return;
+        }
+        rebuilding.set(false);
+        // A publish between the last check and the release found the flag still set
+        onPublished(priceManager.getSnapshot());
+    }
+
+    /**
+     * Best categories and products for the text, ranked by similarity, then by price (cheapest first).
+     * Runs on the caller's thread; lookups only, no rebuild.
+     */
+    public SearchResult search(String text) {
+        CatalogSnapshot snapshot = priceManager.getSnapshot();
+        SearchIndex current = index;
+        int limit = Math.max(1, plugin.getConfig().getInt("search.limit", 10));
+        float minScore = (float) plugin.getConfig().getDouble("search.min_similarity", 0.3);
+        ProductColumns columns = snapshot.getColumns();
+
+        TopMatches topCategories = new TopMatches(Math.min(limit, 3));
+        current.getCategories().search(text, minScore,
+                (term, score) -> topCategories.offer(score, 0L, current.categoryId(term), -1));
+
+        TopMatches topProducts = new TopMatches(limit);
+        current.getProducts().search(text, minScore, (term, score) -> {
+            String name = current.term(term);
+            for (int i = current.occurrenceStart(term); i < current.occurrenceEnd(term); i++) {
+                int categoryId = current.occurrenceCategoryId(i);
+                // The index may be a generation behind; resolve against the snapshot being read
+                int row = snapshot.findProductRow(categoryId, name);
+                if (row >= 0) {
+                    topProducts.offer(score, columns.priceMinor(row), categoryId, row);
+                }
+            }
+        });
+
+        List<Category> categories = new ArrayList<>(topCategories.size);
+        for (int i = 0; i < topCategories.size; i++) {
+            Category category = snapshot.getCategory(topCategories.categoryIds[i]);
+            if (category != null) categories.add(category);
+        }
+        List<ProductMatch> products = new ArrayList<>(topProducts.size);
+        for (int i = 0; i < topProducts.size; i++) {
+            Category category = snapshot.getCategory(topProducts.categoryIds[i]);
+            int row = topProducts.rows[i];
+            products.add(new ProductMatch(category.getName(), columns.productName(row),
+                    Money.ofMinor(columns.priceMinor(row), snapshot.getPriceScale()), topProducts.scores[i]));
+        }
+        return new SearchResult(categories, products);
+    }
+
+    // Bounded, sorted by score descending, then price ascending; insertion keeps it allocation-free
+    private static final class TopMatches {
+        private final float[] scores;
+        private final long[] prices;
+        private final int[] categoryIds;
+        private final int[] rows;
+        private int size;
+
+        private TopMatches(int capacity) {
+            scores = new float[capacity];
+            prices = new long[capacity];
+            categoryIds = new int[capacity];
+            rows = new int[capacity];
+        }
+
+        private void offer(float score, long price, int categoryId, int row) {
+            int pos = size;
+            while (pos > 0 && ranksBefore(score, price, scores[pos - 1], prices[pos - 1])) {
+                pos--;
+            }
+            if (pos >= scores.length) {
+                return;
+            }
+            int last = Math.min(size, scores.length - 1);
+            for (int i = last; i > pos; i--) {
+                scores[i] = scores[i - 1];
+                prices[i] = prices[i - 1];
+                categoryIds[i] = categoryIds[i - 1];
+                rows[i] = rows[i - 1];
+            }
+            scores[pos] = score;
+            prices[pos] = price;
+            categoryIds[pos] = categoryId;
+            rows[pos] = row;
+            if (size < scores.length) size++;
+        }
+
+        private static boolean ranksBefore(float score, long price, float otherScore, long otherPrice) {
+            return score > otherScore || (score == otherScore && price < otherPrice);
+        }
+    }
+}
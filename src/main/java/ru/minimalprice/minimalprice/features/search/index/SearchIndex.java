@@ -0,0 +1,127 @@
+package ru.minimalprice.minimalprice.features.search.index;
+
+import ru.minimalprice.minimalprice.features.price.cache.CatalogSnapshot;
+import ru.minimalprice.minimalprice.features.price.cache.CompletionIndex;
+import ru.minimalprice.minimalprice.features.price.cache.ProductColumns;
+import ru.minimalprice.minimalprice.features.price.models.Category;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trigram indexes over the product and category names of one catalog generation.
+ * <p>
+ * Only names are indexed, never rows or prices: a match is resolved against the current snapshot
+ * through its name index, so price updates never require a rebuild. Each product term keeps the
+ * ids of the categories it occurs in ({@code termCategories[termStart[t] .. termStart[t + 1])}).
+ */
+public final class SearchIndex {
+
+    private static final SearchIndex EMPTY = new SearchIndex(null, null, List.of(),
+            TrigramIndex.build(List.of()), new int[]{0}, new int[0], TrigramIndex.build(List.of()), new int[0]);
+
+    // The name sets this index was built from; a snapshot with other ones needs a rebuild
+    private final CompletionIndex productNames;
+    private final CompletionIndex categoryNames;
+
+    private final List<String> terms;
+    private final TrigramIndex products;
+    private final int[] termStart;
+    private final int[] termCategories;
+    private final TrigramIndex categories;
+    private final int[] categoryIds;
+
+    private SearchIndex(CompletionIndex productNames, CompletionIndex categoryNames, List<String> terms,
+                        TrigramIndex products, int[] termStart, int[] termCategories,
+                        TrigramIndex categories, int[] categoryIds) {
+        this.productNames = productNames;
+        this.categoryNames = categoryNames;
+        this.terms = terms;
+        this.products = products;
+        this.termStart = termStart;
+        this.termCategories = termCategories;
+        this.categories = categories;
+        this.categoryIds = categoryIds;
+    }
+
+    public static SearchIndex empty() {
+        return EMPTY;
+    }
+
+    public static SearchIndex build(CatalogSnapshot snapshot) {
+        ProductColumns columns = snapshot.getColumns();
+        Map<String, List<Integer>> occurrences = new LinkedHashMap<>();
+        for (Category category : snapshot.getCategories()) {
+            int end = columns.rowEnd(category.getId());
+            for (int row = columns.rowStart(category.getId()); row < end; row++) {
+                occurrences.computeIfAbsent(columns.productName(row), name -> new ArrayList<>(1)).add(category.getId());
+            }
+        }
+
+        List<String> terms = new ArrayList<>(occurrences.keySet());
+        int[] termStart = new int[terms.size() + 1];
+        int total = 0;
+        for (int t = 0; t < terms.size(); t++) {
+            termStart[t] = total;
+            total += occurrences.get(terms.get(t)).size();
+        }
+        termStart[terms.size()] = total;
+        int[] termCategories = new int[total];
+        int out = 0;
+        for (String term : terms) {
+            for (int categoryId : occurrences.get(term)) {
+                termCategories[out++] = categoryId;
+            }
+        }
+
+        List<String> categoryNames = new ArrayList<>(snapshot.getCategories().size());
+        int[] categoryIds = new int[snapshot.getCategories().size()];
+        for (int i = 0; i < categoryIds.length; i++) {
+            Category category = snapshot.getCategories().get(i);
+            categoryNames.add(category.getName());
+            categoryIds[i] = category.getId();
+        }
+
+        return new SearchIndex(snapshot.getProductCompletions(), snapshot.getCategoryCompletions(), terms,
+                TrigramIndex.build(terms), termStart, termCategories, TrigramIndex.build(categoryNames), categoryIds);
+    }
+
+    // True when the snapshot has the same product and category names as the one this was built from
+    public boolean isBuiltFrom(CatalogSnapshot snapshot) {
+        return productNames == snapshot.getProductCompletions() && categoryNames == snapshot.getCategoryCompletions();
+    }
+
+    public TrigramIndex getProducts() {
+        return products;
+    }
+
+    public TrigramIndex getCategories() {
+        return categories;
+    }
+
+    public String term(int termId) {
+        return terms.get(termId);
+    }
+
+    public int occurrenceStart(int termId) {
+        return termStart[termId];
+    }
+
+    public int occurrenceEnd(int termId) {
+        return termStart[termId + 1];
+    }
+
+    public int occurrenceCategoryId(int occurrence) {
+        return termCategories[occurrence];
+    }
+
+    public int categoryId(int categoryTermId) {
+        return categoryIds[categoryTermId];
+    }
+
+    public int getProductTermCount() {
+        return terms.size();
+    }
+}
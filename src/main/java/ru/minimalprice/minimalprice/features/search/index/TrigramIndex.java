@@ -0,0 +1,196 @@
+package ru.minimalprice.minimalprice.features.search.index;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable trigram index over a fixed list of terms.
+ * <p>
+ * Terms are case-folded and padded ("  iron ingot "), then split into overlapping 3-char grams.
+ * Grams are packed into longs and kept sorted, each with a posting list of term ids
+ * (compressed row layout: {@code postings[postingStart[g] .. postingStart[g + 1])}).
+ * A query looks up its own grams by binary search and counts shared grams per term in a
+ * per-thread scratch array, so a match costs no allocation per candidate.
+ */
+public final class TrigramIndex {
+
+    // Receives every term that passed the similarity threshold
+    @FunctionalInterface
+    public interface MatchVisitor {
+        void match(int termId, float score);
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final String[] folded;      // per term
+    private final int[] gramCounts;     // distinct grams per term
+    private final long[] grams;         // sorted
+    private final int[] postingStart;   // length = grams.length + 1
+    private final int[] postings;
+
+    private TrigramIndex(String[] folded, int[] gramCounts, long[] grams, int[] postingStart, int[] postings) {
+        this.folded = folded;
+        this.gramCounts = gramCounts;
+        this.grams = grams;
+        this.postingStart = postingStart;
+        this.postings = postings;
+    }
+
+    public static TrigramIndex build(List<String> terms) {
+        int count = terms.size();
+        String[] folded = new String[count];
+        int[] gramCounts = new int[count];
+        Map<Long, IntList> byGram = new HashMap<>();
+        for (int term = 0; term < count; term++) {
+            folded[term] = fold(terms.get(term));
+            long[] termGrams = gramsOf(folded[term]);
+            gramCounts[term] = termGrams.length;
+            for (long gram : termGrams) {
+                byGram.computeIfAbsent(gram, g -> new IntList()).add(term);
+            }
+        }
+
+        long[] grams = new long[byGram.size()];
+        int i = 0;
+        for (Long gram : byGram.keySet()) {
+            grams[i++] = gram;
+        }
+        Arrays.sort(grams);
+        int[] postingStart = new int[grams.length + 1];
+        int total = 0;
+        for (int g = 0; g < grams.length; g++) {
+            postingStart[g] = total;
+            total += byGram.get(grams[g]).size;
+        }
+        postingStart[grams.length] = total;
+        int[] postings = new int[total];
+        for (int g = 0; g < grams.length; g++) {
+            IntList list = byGram.get(grams[g]);
+            System.arraycopy(list.values, 0, postings, postingStart[g], list.size);
+        }
+        return new TrigramIndex(folded, gramCounts, grams, postingStart, postings);
+    }
+
+    public int size() {
+        return folded.length;
+    }
+
+    /**
+     * Scores every term sharing a gram with the query and reports those at or above minScore.
+     * The score is the Jaccard similarity of both gram sets; a term containing the query as a
+     * substring scores above 1 instead (more so the closer its length is to the query's),
+     * so substring hits always rank ahead of fuzzy ones.
+     * Returns the number of terms reported.
+     */
+    public int search(String query, float minScore, MatchVisitor visitor) {
+        String foldedQuery = fold(query);
+        if (foldedQuery.isEmpty() || folded.length == 0) {
+            return 0;
+        }
+        long[] queryGrams = gramsOf(foldedQuery);
+        Scratch scratch = SCRATCH.get();
+        int[] counts = scratch.counts(folded.length);
+        int[] touched = scratch.touched;
+        int touchedSize = 0;
+
+        for (long gram : queryGrams) {
+            int g = Arrays.binarySearch(grams, gram);
+            if (g < 0) continue;
+            for (int p = postingStart[g]; p < postingStart[g + 1]; p++) {
+                int term = postings[p];
+                if (counts[term]++ == 0) {
+                    if (touchedSize == touched.length) {
+                        touched = scratch.growTouched();
+                    }
+                    touched[touchedSize++] = term;
+                }
+            }
+        }
+
+        int reported = 0;
+        for (int i = 0; i < touchedSize; i++) {
+            int term = touched[i];
+            int shared = counts[term];
+            counts[term] = 0; // Leaves the scratch clean for the next query
+            float score;
+            if (folded[term].contains(foldedQuery)) {
+                score = 1f + (float) foldedQuery.length() / folded[term].length();
+            } else {
+                score = (float) shared / (queryGrams.length + gramCounts[term] - shared);
+            }
+            if (score >= minScore) {
+                visitor.match(term, score);
+                reported++;
+            }
+        }
+        return reported;
+    }
+
+    // Folds like String#equalsIgnoreCase compares; whitespace runs become one space
+    static String fold(String text) {
+        StringBuilder out = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c) || c == '_') {
+                space = out.length() > 0;
+                continue;
+            }
+            if (space) {
+                out.append(' ');
+                space = false;
+            }
+            out.append(Character.toLowerCase(Character.toUpperCase(c)));
+        }
+        return out.toString();
+    }
+
+    // Distinct grams of "  text ", so word starts and short queries still produce grams
+    private static long[] gramsOf(String foldedText) {
+        String padded = "  " + foldedText + " ";
+        long[] result = new long[padded.length() - 2];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+        }
+        Arrays.sort(result);
+        int distinct = 0;
+        for (int i = 0; i < result.length; i++) {
+            if (i == 0 || result[i] != result[i - 1]) {
+                result[distinct++] = result[i];
+            }
+        }
+        return distinct == result.length ? result : Arrays.copyOf(result, distinct);
+    }
+
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    // Reused per thread; counts is all zeros between queries
+    private static final class Scratch {
+        private int[] counts = new int[0];
+        private int[] touched = new int[256];
+
+        private int[] counts(int size) {
+            if (counts.length < size) {
+                counts = new int[size];
+            }
+            return counts;
+        }
+
+        private int[] growTouched() {
+            touched = Arrays.copyOf(touched, touched.length * 2);
+            return touched;
+        }
+    }
+}
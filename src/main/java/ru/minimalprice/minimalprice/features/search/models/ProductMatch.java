@@ -0,0 +1,35 @@
+package ru.minimalprice.minimalprice.features.search.models;
+
+import ru.minimalprice.minimalprice.features.price.models.Money;
+
+// One product found by a search, with the price of the catalog generation it was resolved against
+public class ProductMatch {
+    private final String categoryName;
+    private final String productName;
+    private final Money price;
+    private final float score;
+
+    public ProductMatch(String categoryName, String productName, Money price, float score) {
+        this.categoryName = categoryName;
+        this.productName = productName;
+        this.price = price;
+        this.score = score;
+    }
+
+    public String getCategoryName() {
+        return categoryName;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public Money getPrice() {
+        return price;
+    }
+
+    // Above 1 for substring matches, otherwise the trigram similarity (0..1)
+    public float getScore() {
+        return score;
+    }
+}
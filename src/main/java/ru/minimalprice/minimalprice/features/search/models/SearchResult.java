@@ -0,0 +1,28 @@
+package ru.minimalprice.minimalprice.features.search.models;
+
+import ru.minimalprice.minimalprice.features.price.models.Category;
+
+import java.util.List;
+
+// Best matching categories and products of one search, best first
+public class SearchResult {
+    private final List<Category> categories;
+    private final List<ProductMatch> products;
+
+    public SearchResult(List<Category> categories, List<ProductMatch> products) {
+        this.categories = categories;
+        this.products = products;
+    }
+
+    public List<Category> getCategories() {
+        return categories;
+    }
+
+    public List<ProductMatch> getProducts() {
+        return products;
+    }
+
+    public boolean isEmpty() {
+        return categories.isEmpty() && products.isEmpty();
+    }
+}
@@ -0,0 +1,106 @@
+package ru.minimalprice.minimalprice.features.watch;
+
+import ru.minimalprice.minimalprice.features.watch.models.PriceWatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Active watches, per item sorted by threshold.
+ * <p>
+ * A price moving from {@code previous} down to {@code price} fires exactly the watches with a threshold in
+ * {@code [price, previous)}: a range view of the item's map. An update costs a lookup plus the watches it
+ * fires, however many other watches exist. Fired watches are removed (alerts are one-shot).
+ * All methods are synchronized; changes arrive on the threads that publish catalog generations.
+ */
+public class WatchIndex {
+
+    // item key -> threshold -> player -> watch
+    private final Map<String, NavigableMap<Long, Map<UUID, PriceWatch>>> byItem = new HashMap<>();
+    // player -> item key -> watch, for replacing, listing and the per-player limit
+    private final Map<UUID, Map<String, PriceWatch>> byPlayer = new HashMap<>();
+
+    // Replaces the player's watch on the same item
+    public synchronized void add(PriceWatch watch) {
+        remove(watch.getPlayerId(), watch.getItemKey());
+        byItem.computeIfAbsent(watch.getItemKey(), key -> new TreeMap<>())
+                .computeIfAbsent(watch.getThresholdMinor(), threshold -> new LinkedHashMap<>())
+                .put(watch.getPlayerId(), watch);
+        byPlayer.computeIfAbsent(watch.getPlayerId(), id -> new LinkedHashMap<>()).put(watch.getItemKey(), watch);
+    }
+
+    // The removed watch, or null
+    public synchronized PriceWatch remove(UUID playerId, String itemKey) {
+        Map<String, PriceWatch> ofPlayer = byPlayer.get(playerId);
+        PriceWatch watch = ofPlayer != null ? ofPlayer.remove(itemKey) : null;
+        if (watch == null) {
+            return null;
+        }
+        if (ofPlayer.isEmpty()) {
+            byPlayer.remove(playerId);
+        }
+        NavigableMap<Long, Map<UUID, PriceWatch>> thresholds = byItem.get(itemKey);
+        Map<UUID, PriceWatch> atThreshold = thresholds.get(watch.getThresholdMinor());
+        atThreshold.remove(playerId);
+        if (atThreshold.isEmpty()) {
+            thresholds.remove(watch.getThresholdMinor());
+            if (thresholds.isEmpty()) byItem.remove(itemKey);
+        }
+        return watch;
+    }
+
+    public synchronized List<PriceWatch> of(UUID playerId) {
+        Map<String, PriceWatch> ofPlayer = byPlayer.get(playerId);
+        return ofPlayer == null ? Collections.emptyList() : new ArrayList<>(ofPlayer.values());
+    }
+
+    public synchronized boolean contains(UUID playerId, String itemKey) {
+        Map<String, PriceWatch> ofPlayer = byPlayer.get(playerId);
+        return ofPlayer != null && ofPlayer.containsKey(itemKey);
+    }
+
+    public synchronized int count(UUID playerId) {
+        Map<String, PriceWatch> ofPlayer = byPlayer.get(playerId);
+        return ofPlayer == null ? 0 : ofPlayer.size();
+    }
+
+    /**
+     * Removes and returns the watches on the item crossed by the move; previous is null for a new item,
+     * which fires every threshold at or above the price. A rise or an unchanged price fires nothing.
+     */
+    public synchronized List<PriceWatch> takeCrossed(String itemKey, Long previousMinor, long priceMinor) {
+        NavigableMap<Long, Map<UUID, PriceWatch>> thresholds = byItem.get(itemKey);
+        if (thresholds == null || (previousMinor != null && priceMinor >= previousMinor)) {
+            return Collections.emptyList();
+        }
+        NavigableMap<Long, Map<UUID, PriceWatch>> crossed = previousMinor == null
+                ? thresholds.tailMap(priceMinor, true)
+                : thresholds.subMap(priceMinor, true, previousMinor, false);
+        if (crossed.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<PriceWatch> fired = new ArrayList<>();
+        for (Iterator<Map<UUID, PriceWatch>> it = crossed.values().iterator(); it.hasNext(); ) {
+            for (PriceWatch watch : it.next().values()) {
+                fired.add(watch);
+                Map<String, PriceWatch> ofPlayer = byPlayer.get(watch.getPlayerId());
+                ofPlayer.remove(itemKey);
+                if (ofPlayer.isEmpty()) byPlayer.remove(watch.getPlayerId());
+            }
+            it.remove(); // Removes from the item's map through the view
+        }
+        if (thresholds.isEmpty()) {
+            byItem.remove(itemKey);
+        }
+        return fired;
+    }
+}
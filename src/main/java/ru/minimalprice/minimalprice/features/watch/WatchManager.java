@@ -0,0 +1,242 @@
+package ru.minimalprice.minimalprice.features.watch;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.JoinConfiguration;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import ru.minimalprice.minimalprice.MinimalPrice;
+import ru.minimalprice.minimalprice.configuration.ConfigManager;
+import ru.minimalprice.minimalprice.database.StorageExecutor;
+import ru.minimalprice.minimalprice.features.price.PriceManager;
+import ru.minimalprice.minimalprice.features.price.cache.CatalogSnapshot;
+import ru.minimalprice.minimalprice.features.price.models.Category;
+import ru.minimalprice.minimalprice.features.price.models.Money;
+import ru.minimalprice.minimalprice.features.price.models.MoneyFormat;
+import ru.minimalprice.minimalprice.features.price.models.PriceChange;
+import ru.minimalprice.minimalprice.features.watch.models.PriceAlert;
+import ru.minimalprice.minimalprice.features.watch.models.PriceWatch;
+import ru.minimalprice.minimalprice.features.watch.storage.WatchRepository;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+
+/**
+ * Price alerts: /minimal watch subscriptions matched against every committed price change through a {@link WatchIndex}.
+ * Fired alerts are stored first, then handed to a once-per-tick delivery that sends each online player
+ * one message for all their alerts of that tick. Alerts of offline players stay stored until they join.
+ */
+public class WatchManager implements Listener {
+
+    private static final long RETRY_DELAY_TICKS = 20L;
+
+    private final MinimalPrice plugin;
+    private final PriceManager priceManager;
+    private final ConfigManager configManager;
+    private final WatchRepository repository;
+    private final StorageExecutor storage;
+    private final WatchIndex index = new WatchIndex();
+    private final Queue<PriceAlert> outbox = new ConcurrentLinkedQueue<>();
+
+    public WatchManager(MinimalPrice plugin, PriceManager priceManager, ConfigManager configManager, WatchRepository repository,
+                        StorageExecutor storage) {
+        this.plugin = plugin;
+        this.priceManager = priceManager;
+        this.configManager = configManager;
+        this.repository = repository;
+        this.storage = storage;
+        try {
+            for (PriceWatch watch : repository.loadActive()) {
+                index.add(watch);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        priceManager.addPriceChangeListener(this::onPriceChanges);
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        plugin.getServer().getScheduler().runTaskTimer(plugin, this::deliver, 1L, 1L);
+    }
+
+    public int getLimit() {
+        return Math.max(1, plugin.getConfig().getInt("watch.max_per_player", 20));
+    }
+
+    public List<PriceWatch> getWatches(UUID playerId) {
+        return index.of(playerId);
+    }
+
+    // Completes with false when the player is at the limit (replacing an existing watch is always allowed).
+    // The check runs on the writer, so concurrent calls for one player cannot both pass it.
+    public CompletableFuture<Boolean> watch(UUID playerId, String itemName, Money threshold) {
+        PriceWatch watch = new PriceWatch(playerId, itemName, threshold.getMinor());
+        return storage.supplyWrite(() -> {
+            if (!index.contains(playerId, watch.getItemKey()) && index.count(playerId) >= getLimit()) {
+                return false;
+            }
+            try {
+                repository.save(watch);
+                index.add(watch);
+                return true;
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    // Completes with false when there was no such watch; the index changes only after the row is deleted
+    public CompletableFuture<Boolean> unwatch(UUID playerId, String itemName) {
+        String itemKey = PriceWatch.keyOf(itemName);
+        return storage.supplyWrite(() -> {
+            if (!index.contains(playerId, itemKey)) {
+                return false;
+            }
+            try {
+                repository.delete(playerId, itemKey);
+                index.remove(playerId, itemKey);
+                return true;
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    // Lowest cached price of the item over all categories, or null if no category has it
+    public Money lowestPrice(String itemName) {
+        CatalogSnapshot snapshot = priceManager.getSnapshot();
+        long lowest = Long.MAX_VALUE;
+        for (Category category : snapshot.getCategories()) {
+            int row = snapshot.findProductRowIgnoreCase(category.getId(), itemName);
+            if (row >= 0) lowest = Math.min(lowest, snapshot.getColumns().priceMinor(row));
+        }
+        return lowest == Long.MAX_VALUE ? null : Money.ofMinor(lowest, snapshot.getPriceScale());
+    }
+
+    // On the publishing thread, for every committed price change of any source; only crossed watches are touched.
+    // Storing the fired alerts is queued as a write of its own, so the batch that fired them is not held up.
+    private void onPriceChanges(List<PriceChange> changes) {
+        List<PriceAlert> alerts = new ArrayList<>();
+        for (PriceChange change : changes) {
+            Money previous = change.getPreviousPrice();
+            long price = change.getPrice().getMinor();
+            for (PriceWatch watch : index.takeCrossed(PriceWatch.keyOf(change.getProductName()),
+                    previous != null ? previous.getMinor() : null, price)) {
+                alerts.add(new PriceAlert(watch.getPlayerId(), watch.getItemName(), change.getCategoryName(),
+                        price, watch.getThresholdMinor()));
+            }
+        }
+        if (alerts.isEmpty()) {
+            return;
+        }
+        // Stored on the writer, so the delete after delivery always comes after it; delivered even if storing failed
+        storage.runInternalWrite(() -> {
+            try {
+                repository.markFired(alerts);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }).whenComplete((ignored, error) -> {
+            if (error != null) {
+                plugin.getLogger().log(Level.WARNING, "Failed to store " + alerts.size() + " price alerts", error);
+            }
+            outbox.addAll(alerts);
+        });
+    }
+
+    @EventHandler
+    public void onJoin(PlayerJoinEvent event) {
+        loadFired(event.getPlayer().getUniqueId());
+    }
+
+    private void loadFired(UUID playerId) {
+        storage.runInternalRead(() -> {
+            try {
+                outbox.addAll(repository.findFired(playerId));
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }).exceptionally(error -> {
+            if (StorageExecutor.isRejected(error)) {
+                retryLater(() -> {
+                    Player player = Bukkit.getPlayer(playerId);
+                    if (player != null && player.isOnline()) loadFired(playerId);
+                });
+            }
+            return null;
+        });
+    }
+
+    // Main thread, every tick: one message per online player; the rest stay stored for their next join
+    private void deliver() {
+        if (outbox.isEmpty()) {
+            return;
+        }
+        Map<UUID, List<PriceAlert>> byPlayer = new LinkedHashMap<>();
+        Set<String> queued = new HashSet<>();
+        PriceAlert alert;
+        while ((alert = outbox.poll()) != null) {
+            // The same alert may arrive from the update and from a join load in one tick
+            if (queued.add(alert.getPlayerId() + "/" + PriceWatch.keyOf(alert.getItemName()))) {
+                byPlayer.computeIfAbsent(alert.getPlayerId(), id -> new ArrayList<>()).add(alert);
+            }
+        }
+
+        int scale = priceManager.getPriceScale();
+        List<PriceAlert> delivered = new ArrayList<>();
+        for (Map.Entry<UUID, List<PriceAlert>> entry : byPlayer.entrySet()) {
+            Player player = Bukkit.getPlayer(entry.getKey());
+            if (player == null || !player.isOnline()) continue;
+
+            List<PriceAlert> alerts = entry.getValue();
+            List<Component> lines = new ArrayList<>(alerts.size() + 1);
+            lines.add(configManager.getMessage(player, "watch_alert_header", "%count%", String.valueOf(alerts.size())));
+            for (PriceAlert a : alerts) {
+                lines.add(configManager.getLine(player, "watch_alert",
+                        "%item%", a.getItemName(),
+                        "%category%", a.getCategoryName(),
+                        "%price%", MoneyFormat.format(a.getPriceMinor(), scale),
+                        "%target%", MoneyFormat.format(a.getThresholdMinor(), scale)));
+            }
+            player.sendMessage(Component.join(JoinConfiguration.newlines(), lines));
+            delivered.addAll(alerts);
+        }
+
+        if (!delivered.isEmpty()) {
+            deleteDelivered(delivered);
+        }
+    }
+
+    // Left stored, they would be sent again on the next join
+    private void deleteDelivered(List<PriceAlert> delivered) {
+        storage.runInternalWrite(() -> {
+            try {
+                repository.deleteDelivered(delivered);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }).exceptionally(error -> {
+            if (StorageExecutor.isRejected(error)) {
+                retryLater(() -> deleteDelivered(delivered));
+            }
+            return null;
+        });
+    }
+
+    // Main thread, a second later; nothing is retried once the plugin is disabled
+    private void retryLater(Runnable task) {
+        if (plugin.isEnabled()) {
+            Bukkit.getScheduler().runTaskLater(plugin, task, RETRY_DELAY_TICKS);
+        }
+    }
+}
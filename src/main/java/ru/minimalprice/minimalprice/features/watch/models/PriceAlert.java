@@ -0,0 +1,40 @@
+package ru.minimalprice.minimalprice.features.watch.models;
+
+import java.util.UUID;
+
+// A watch that fired: the price it was crossed by, waiting to be delivered to the player
+public class PriceAlert {
+    private final UUID playerId;
+    private final String itemName;
+    private final String categoryName;
+    private final long priceMinor;
+    private final long thresholdMinor;
+
+    public PriceAlert(UUID playerId, String itemName, String categoryName, long priceMinor, long thresholdMinor) {
+        this.playerId = playerId;
+        this.itemName = itemName;
+        this.categoryName = categoryName;
+        this.priceMinor = priceMinor;
+        this.thresholdMinor = thresholdMinor;
+    }
+
+    public UUID getPlayerId() {
+        return playerId;
+    }
+
+    public String getItemName() {
+        return itemName;
+    }
+
+    public String getCategoryName() {
+        return categoryName;
+    }
+
+    public long getPriceMinor() {
+        return priceMinor;
+    }
+
+    public long getThresholdMinor() {
+        return thresholdMinor;
+    }
+}
@@ -0,0 +1,38 @@
+package ru.minimalprice.minimalprice.features.watch.models;
+
+import java.util.Locale;
+import java.util.UUID;
+
+// A player's request to be told when an item's price drops to the threshold or below
+public class PriceWatch {
+    private final UUID playerId;
+    private final String itemName;
+    private final long thresholdMinor;
+
+    public PriceWatch(UUID playerId, String itemName, long thresholdMinor) {
+        this.playerId = playerId;
+        this.itemName = itemName;
+        this.thresholdMinor = thresholdMinor;
+    }
+
+    // Item names are matched ignoring case, like product names in commands
+    public static String keyOf(String itemName) {
+        return itemName.toLowerCase(Locale.ROOT);
+    }
+
+    public UUID getPlayerId() {
+        return playerId;
+    }
+
+    public String getItemName() {
+        return itemName;
+    }
+
+    public String getItemKey() {
+        return keyOf(itemName);
+    }
+
+    public long getThresholdMinor() {
+        return thresholdMinor;
+    }
+}
@@ -0,0 +1,126 @@
+package ru.minimalprice.minimalprice.features.watch.storage;
+
+import ru.minimalprice.minimalprice.database.DatabaseManager;
+import ru.minimalprice.minimalprice.features.watch.models.PriceAlert;
+import ru.minimalprice.minimalprice.features.watch.models.PriceWatch;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Price watches (mp_watch). A row is active while fired_at is null; once its alert fires the row keeps the
+ * alert until it has been shown to the player, then it is deleted.
+ */
+public class WatchRepository {
+
+    private final DatabaseManager databaseManager;
+    private final String upsertWatchSql;
+
+    public WatchRepository(DatabaseManager databaseManager) {
+        this.databaseManager = databaseManager;
+        this.upsertWatchSql = databaseManager.getDialect().upsert("mp_watch", List.of("player_uuid", "item_key"),
+                List.of("player_uuid", "item_key", "item_name", "threshold", "created_at", "fired_category", "fired_price", "fired_at"));
+    }
+
+    public List<PriceWatch> loadActive() throws SQLException {
+        List<PriceWatch> watches = new ArrayList<>();
+        String sql = "SELECT player_uuid, item_name, threshold FROM mp_watch WHERE fired_at IS NULL";
+        try (Connection conn = databaseManager.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                watches.add(new PriceWatch(UUID.fromString(rs.getString("player_uuid")),
+                        rs.getString("item_name"), rs.getLong("threshold")));
+            }
+        }
+        return watches;
+    }
+
+    // Replaces the player's watch on the item, including an undelivered alert of it
+    public void save(PriceWatch watch) throws SQLException {
+        try (Connection conn = databaseManager.getWriteConnection();
+             PreparedStatement pstmt = conn.prepareStatement(upsertWatchSql)) {
+            pstmt.setString(1, watch.getPlayerId().toString());
+            pstmt.setString(2, watch.getItemKey());
+            pstmt.setString(3, watch.getItemName());
+            pstmt.setLong(4, watch.getThresholdMinor());
+            pstmt.setLong(5, System.currentTimeMillis());
+            pstmt.setNull(6, Types.VARCHAR);
+            pstmt.setNull(7, Types.BIGINT);
+            pstmt.setNull(8, Types.BIGINT);
+            pstmt.executeUpdate();
+        }
+    }
+
+    public void delete(UUID playerId, String itemKey) throws SQLException {
+        String sql = "DELETE FROM mp_watch WHERE player_uuid = ? AND item_key = ? AND fired_at IS NULL";
+        try (Connection conn = databaseManager.getWriteConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, playerId.toString());
+            pstmt.setString(2, itemKey);
+            pstmt.executeUpdate();
+        }
+    }
+
+    // Stores the alerts on their watches, so players offline now get them on their next join
+    public void markFired(List<PriceAlert> alerts) throws SQLException {
+        String sql = "UPDATE mp_watch SET fired_category = ?, fired_price = ?, fired_at = ? " +
+                "WHERE player_uuid = ? AND item_key = ? AND fired_at IS NULL";
+        long now = System.currentTimeMillis();
+        databaseManager.inTransaction(conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (PriceAlert alert : alerts) {
+                    pstmt.setString(1, alert.getCategoryName());
+                    pstmt.setLong(2, alert.getPriceMinor());
+                    pstmt.setLong(3, now);
+                    pstmt.setString(4, alert.getPlayerId().toString());
+                    pstmt.setString(5, PriceWatch.keyOf(alert.getItemName()));
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+            return null;
+        });
+    }
+
+    // Alerts fired while the player was away, oldest first
+    public List<PriceAlert> findFired(UUID playerId) throws SQLException {
+        List<PriceAlert> alerts = new ArrayList<>();
+        String sql = "SELECT item_name, fired_category, fired_price, threshold FROM mp_watch " +
+                "WHERE player_uuid = ? AND fired_at IS NOT NULL ORDER BY fired_at";
+        try (Connection conn = databaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, playerId.toString());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    alerts.add(new PriceAlert(playerId, rs.getString("item_name"), rs.getString("fired_category"),
+                            rs.getLong("fired_price"), rs.getLong("threshold")));
+                }
+            }
+        }
+        return alerts;
+    }
+
+    // Drops alerts once shown; a watch set again in the meantime (fired_at reset) is kept
+    public void deleteDelivered(List<PriceAlert> alerts) throws SQLException {
+        String sql = "DELETE FROM mp_watch WHERE player_uuid = ? AND item_key = ? AND fired_at IS NOT NULL";
+        databaseManager.inTransaction(conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (PriceAlert alert : alerts) {
+                    pstmt.setString(1, alert.getPlayerId().toString());
+                    pstmt.setString(2, PriceWatch.keyOf(alert.getItemName()));
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+            return null;
+        });
+    }
+}
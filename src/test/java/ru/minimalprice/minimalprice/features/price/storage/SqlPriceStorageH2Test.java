@@ -0,0 +1,199 @@
+package ru.minimalprice.minimalprice.features.price.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.minimalprice.minimalprice.database.DatabaseManager;
+import ru.minimalprice.minimalprice.database.dialect.H2Dialect;
+import ru.minimalprice.minimalprice.features.history.models.HistoryResolution;
+import ru.minimalprice.minimalprice.features.history.models.PriceBucket;
+import ru.minimalprice.minimalprice.features.history.storage.HistoryRepository;
+import ru.minimalprice.minimalprice.features.price.models.Category;
+import ru.minimalprice.minimalprice.features.price.models.Money;
+import ru.minimalprice.minimalprice.features.price.models.Product;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// PriceStorage contract against an embedded H2 database, migrated from scratch for every test
+class SqlPriceStorageH2Test {
+
+    private static final int SCALE = 2;
+
+    @TempDir
+    File dataFolder;
+
+    private DatabaseManager databaseManager;
+    private SqlPriceStorage storage;
+    private HistoryRepository history;
+
+    @BeforeEach
+    void setUp() {
+        databaseManager = new DatabaseManager(new H2Dialect(), dataFolder, null, SCALE, Logger.getLogger("SqlPriceStorageH2Test"));
+        databaseManager.initDatabase();
+        storage = new SqlPriceStorage(databaseManager, new ChangeLog(databaseManager, true));
+        history = new HistoryRepository(databaseManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        databaseManager.close();
+    }
+
+    @Test
+    void upsertInsertsThenUpdatesTheSameRow() throws SQLException {
+        int categoryId = storage.createCategory("Ores");
+
+        Product inserted = storage.upsertProduct("Ores", "Iron", price(150));
+        Product updated = storage.upsertProduct("Ores", "Iron", price(175));
+
+        assertEquals(categoryId, inserted.getCategoryId());
+        assertEquals(inserted.getId(), updated.getId());
+        List<Product> stored = storage.getProductsByCategory(categoryId);
+        assertEquals(1, stored.size());
+        assertEquals(175, stored.get(0).getPrice().getMinor());
+    }
+
+    @Test
+    void batchUpsertLeavesUnknownCategoriesNull() throws SQLException {
+        storage.createCategory("Ores");
+
+        List<Product> stored = storage.upsertProducts(List.of(
+                new ProductUpsert("Ores", "Iron", price(150)),
+                new ProductUpsert("Missing", "Gold", price(900))), List.of());
+
+        assertEquals(2, stored.size());
+        assertNotNull(stored.get(0));
+        assertNull(stored.get(1));
+    }
+
+    @Test
+    void renameMatchesTheExactNameOnly() throws SQLException {
+        int categoryId = storage.createCategory("Weapons");
+        storage.upsertProduct("Weapons", "Sword", price(100));
+        storage.upsertProduct("Weapons", "SWORD", price(200));
+
+        assertEquals(1, storage.renameProduct("Sword", "Blade"));
+
+        Set<String> names = new LinkedHashSet<>();
+        for (Product product : storage.getProductsByCategory(categoryId)) {
+            names.add(product.getName());
+        }
+        assertEquals(Set.of("Blade", "SWORD"), names);
+        assertEquals(0, storage.renameProduct("sword", "Dagger"));
+    }
+
+    @Test
+    void importCreatesMissingCategories() throws SQLException {
+        storage.createCategory("Ores");
+        Set<String> created = new LinkedHashSet<>();
+
+        List<Product> stored = storage.importProducts(List.of(
+                new ProductUpsert("Ores", "Iron", price(150)),
+                new ProductUpsert("Food", "Bread", price(20)),
+                new ProductUpsert("Food", "Apple", price(15))), List.of(), created);
+
+        assertEquals(3, stored.size());
+        assertEquals(Set.of("Food"), created);
+        Set<String> categories = new LinkedHashSet<>();
+        for (Category category : storage.getAllCategories()) {
+            categories.add(category.getName());
+        }
+        assertEquals(Set.of("Ores", "Food"), categories);
+    }
+
+    @Test
+    void changeLogRecordsMutationsInCommitOrder() throws SQLException {
+        int categoryId = storage.createCategory("Ores");
+        Product iron = storage.upsertProduct("Ores", "Iron", price(150));
+        storage.renameProduct("Iron", "Iron Ingot");
+
+        List<ChangeLogEntry> changes = storage.readChanges(0, 100);
+        assertEquals(3, changes.size());
+        assertEquals(ChangeLogEntry.Kind.CATEGORY_CREATE, changes.get(0).getKind());
+        assertEquals(categoryId, changes.get(0).getCategoryId());
+        assertEquals(ChangeLogEntry.Kind.PRODUCT_UPSERT, changes.get(1).getKind());
+        assertEquals(iron.getId(), changes.get(1).getItemId());
+        assertEquals(150, changes.get(1).getPriceMinor());
+        assertEquals(ChangeLogEntry.Kind.PRODUCT_RENAME, changes.get(2).getKind());
+        assertEquals("Iron", changes.get(2).getOldName());
+        assertTrue(changes.get(0).isLocal());
+
+        assertEquals(changes.get(2).getSeq(), storage.getLatestChangeSeq());
+        assertEquals(1, storage.readChanges(changes.get(1).getSeq(), 100).size());
+        // The newest entry survives, so the sequence never goes backwards
+        assertEquals(2, storage.pruneChanges(System.currentTimeMillis() + 1));
+        assertEquals(changes.get(2).getSeq(), storage.readChanges(0, 100).get(0).getSeq());
+    }
+
+    @Test
+    void historyFindsItemsIgnoringCaseThroughTheNameIndex() throws SQLException {
+        storage.createCategory("Weapons");
+        storage.createCategory("Loot");
+        Product sword = storage.upsertProduct("Weapons", "Sword", price(100));
+        Product loot = storage.upsertProduct("Loot", "SWORD", price(50));
+        storage.upsertProduct("Loot", "Shield", price(70));
+
+        assertEquals(Set.of(sword.getId(), loot.getId()), new HashSet<>(history.findItemIds("sword")));
+
+        String sql = "EXPLAIN SELECT id FROM mp_items WHERE " + databaseManager.getDialect().equalsIgnoreCase("name");
+        try (Connection conn = databaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, "sword");
+            try (ResultSet rs = stmt.executeQuery()) {
+                assertTrue(rs.next());
+                assertTrue(rs.getString(1).toUpperCase().contains("IDX_MP_ITEMS_NAME_KEY"), rs.getString(1));
+            }
+        }
+    }
+
+    @Test
+    void rollupFoldsEveryRawRowOnceAndCompactsOnlyFoldedRows() throws SQLException {
+        storage.createCategory("Ores");
+        List<ProductWriteHook> hooks = List.of(history::recordPrices);
+        Product iron = storage.upsertProducts(List.of(new ProductUpsert("Ores", "Iron", price(100))), hooks).get(0);
+        storage.upsertProducts(List.of(new ProductUpsert("Ores", "Iron", price(300))), hooks);
+        long future = System.currentTimeMillis() + 60_000L;
+
+        // Nothing is compacted before it is part of the rollups
+        assertEquals(0, history.compactRaw(future));
+
+        assertEquals(2, history.rollUp(1000));
+        assertEquals(0, history.rollUp(1000));
+
+        storage.upsertProducts(List.of(new ProductUpsert("Ores", "Iron", price(200))), hooks);
+        assertEquals(2, history.compactRaw(future));
+        assertEquals(1, history.rollUp(1000));
+
+        List<PriceBucket> buckets = history.getBuckets(List.of(iron.getId()), HistoryResolution.DAY, 0);
+        long samples = 0;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (PriceBucket bucket : buckets) {
+            samples += bucket.getSampleCount();
+            min = Math.min(min, bucket.getMin().getMinor());
+            max = Math.max(max, bucket.getMax().getMinor());
+        }
+        assertEquals(3, samples);
+        assertEquals(100, min);
+        assertEquals(300, max);
+    }
+
+    private static Money price(long minor) {
+        return Money.ofMinor(minor, SCALE);
+    }
+}